@@ -0,0 +1,228 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * <p>
+ * Counts and times the calls made to a {@link MockupContainer}, to find out
+ * how a UI component accesses its data. Every {@link ContainerOperation} has
+ * a latency histogram that includes the simulated delay, and the distinct
+ * items touched are tracked in a bitmap.
+ * </p>
+ * 
+ * <p>
+ * Recording is lock-free and cheap enough to leave on: a call costs two
+ * reads of the system timer and a few atomic increments, spread over striped
+ * cells so that concurrent threads don't contend. The metrics can be read
+ * with {@link #snapshot()} or, after {@link #registerMBean(String)}, through
+ * JMX.
+ * </p>
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * @see MockupContainer#setMetricsEnabled(boolean)
+ */
+public final class AccessMetrics implements AccessMetricsMXBean, Serializable {
+
+    private static final long serialVersionUID = 6652522426722409398L;
+
+    private final LatencyHistogram[] histograms;
+
+    private volatile AtomicLongArray touchedRows;
+
+    private final StripedCounter distinctRows = new StripedCounter();
+
+    private transient ObjectName objectName;
+
+    AccessMetrics(int itemCount) {
+        histograms = new LatencyHistogram[ContainerOperation.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        resize(itemCount);
+    }
+
+    /**
+     * @param operation
+     * @param startNanos
+     *            the value of {@link System#nanoTime()} when the call started
+     */
+    void record(ContainerOperation operation, long startNanos) {
+        histograms[operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Marks a row as touched. Only the first touch of each row is counted.
+     * 
+     * @param row
+     */
+    void touch(int row) {
+        AtomicLongArray words = touchedRows;
+        int word = row >>> 6;
+        if (row < 0 || word >= words.length()) {
+            return;
+        }
+        long bit = 1L << row;
+        long old = words.get(word);
+        while ((old & bit) == 0) {
+            if (words.compareAndSet(word, old, old | bit)) {
+                distinctRows.increment();
+                return;
+            }
+            old = words.get(word);
+        }
+    }
+
+    /**
+     * Starts tracking the touched rows anew, for a container whose contents
+     * have been regenerated.
+     * 
+     * @param itemCount
+     */
+    void resize(int itemCount) {
+        touchedRows = new AtomicLongArray((itemCount + 63) >>> 6);
+        distinctRows.reset();
+    }
+
+    /**
+     * Makes room for the rows of a container that has grown, keeping the
+     * rows touched so far. Rows that have been removed stay counted.
+     * 
+     * @param itemCount
+     */
+    void grow(int itemCount) {
+        AtomicLongArray words = touchedRows;
+        int required = (itemCount + 63) >>> 6;
+        if (required > words.length()) {
+            AtomicLongArray grown = new AtomicLongArray(Math.max(required,
+                    words.length() + (words.length() >>> 1)));
+            for (int i = 0; i < words.length(); i++) {
+                grown.set(i, words.get(i));
+            }
+            touchedRows = grown;
+        }
+    }
+
+    /**
+     * @return a copy of the current metrics
+     */
+    public MetricsSnapshot snapshot() {
+        long[][] counts = new long[histograms.length][];
+        long[] sums = new long[histograms.length];
+        for (int i = 0; i < histograms.length; i++) {
+            counts[i] = histograms[i].copyCounts();
+            sums[i] = histograms[i].sum();
+        }
+        return new MetricsSnapshot(counts, sums, distinctRows.sum());
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        resize(touchedRows.length() << 6);
+    }
+
+    @Override
+    public Map<String, Long> getCallCounts() {
+        MetricsSnapshot snapshot = snapshot();
+        Map<String, Long> counts = new LinkedHashMap<String, Long>();
+        for (ContainerOperation operation : ContainerOperation.values()) {
+            if (snapshot.getCallCount(operation) > 0) {
+                counts.put(operation.name(), snapshot.getCallCount(operation));
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getMedianLatencyNanos() {
+        return getLatencies(50);
+    }
+
+    @Override
+    public Map<String, Long> getP99LatencyNanos() {
+        return getLatencies(99);
+    }
+
+    @Override
+    public Map<String, Long> getMaxLatencyNanos() {
+        return getLatencies(100);
+    }
+
+    private Map<String, Long> getLatencies(double percentile) {
+        MetricsSnapshot snapshot = snapshot();
+        Map<String, Long> latencies = new LinkedHashMap<String, Long>();
+        for (ContainerOperation operation : ContainerOperation.values()) {
+            if (snapshot.getCallCount(operation) > 0) {
+                latencies.put(operation.name(), snapshot
+                        .getLatencyAtPercentile(operation, percentile));
+            }
+        }
+        return latencies;
+    }
+
+    @Override
+    public long getTotalCallCount() {
+        return snapshot().getTotalCallCount();
+    }
+
+    @Override
+    public long getDistinctRowsTouched() {
+        return distinctRows.sum();
+    }
+
+    /**
+     * Registers these metrics in the platform MBean server as
+     * <code>org.vaadin.risto.mockupcontainer:type=AccessMetrics,name=</code>
+     * <i>name</i>.
+     * 
+     * @param name
+     *            a name that identifies the container
+     */
+    public synchronized void registerMBean(String name) {
+        unregisterMBean();
+        try {
+            ObjectName newName = new ObjectName(
+                    "org.vaadin.risto.mockupcontainer:type=AccessMetrics,name="
+                            + ObjectName.quote(name));
+            getMBeanServer().registerMBean(this, newName);
+            objectName = newName;
+        } catch (JMException e) {
+            throw new IllegalStateException(
+                    "Could not register the access metrics", e);
+        }
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server, if registered.
+     */
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            getMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            // already unregistered
+        }
+        objectName = null;
+    }
+
+    private static MBeanServer getMBeanServer() {
+        return ManagementFactory.getPlatformMBeanServer();
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+}
@@ -0,0 +1,31 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link AccessMetrics} of a container. The maps are keyed by
+ * the names of the {@link ContainerOperation ContainerOperations} that have
+ * been called.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * @see AccessMetrics#registerMBean(String)
+ */
+public interface AccessMetricsMXBean {
+
+    Map<String, Long> getCallCounts();
+
+    Map<String, Long> getMedianLatencyNanos();
+
+    Map<String, Long> getP99LatencyNanos();
+
+    Map<String, Long> getMaxLatencyNanos();
+
+    long getTotalCallCount();
+
+    long getDistinctRowsTouched();
+
+    /**
+     * Clears all the counters and histograms.
+     */
+    void reset();
+}
@@ -0,0 +1,92 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * <p>
+ * The binary format of an access trace. The file starts with a header of the
+ * magic number, the format version and the wall clock time of the start of
+ * the recording in milliseconds. Each call is then written as
+ * </p>
+ * 
+ * <ul>
+ * <li>the ordinal of its {@link ContainerOperation}, as a byte</li>
+ * <li>the nanoseconds since the previous call, as a variable length long</li>
+ * <li>the arguments of the operation, each as a variable length int</li>
+ * </ul>
+ * 
+ * <p>
+ * Integer arguments are zigzag encoded, so that small negative values stay
+ * short. An item id is written as zero for null or any other non-integer id,
+ * and as the encoded id plus one otherwise. A property id is an index to the
+ * property ids seen so far; an index equal to the number of known property
+ * ids is followed by the new property id as a UTF string. A sort is written
+ * as the number of sort properties followed by each property id and a one
+ * for ascending or a zero for descending order.
+ * </p>
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+final class AccessTraceFormat {
+
+    static final int MAGIC = 0x4d435452;
+
+    static final int VERSION = 1;
+
+    private AccessTraceFormat() {
+        // for static use only
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length number in trace");
+    }
+
+    static void writeInt(DataOutput out, int value) throws IOException {
+        writeVarLong(out, zigzag(value));
+    }
+
+    static int readInt(DataInput in) throws IOException {
+        return unzigzag(readVarLong(in));
+    }
+
+    static void writeItemId(DataOutput out, Object itemId) throws IOException {
+        if (itemId instanceof Integer) {
+            writeVarLong(out, zigzag((Integer) itemId) + 1);
+        } else {
+            writeVarLong(out, 0);
+        }
+    }
+
+    static Integer readItemId(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        return value == 0 ? null : unzigzag(value - 1);
+    }
+
+    private static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xffffffffL;
+    }
+
+    private static int unzigzag(long value) {
+        int encoded = (int) value;
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+}
@@ -0,0 +1,256 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Records the calls made to a {@link MockupContainer} with their timestamps
+ * into a compact binary trace, typically a few bytes per call. The trace can
+ * then be replayed against any container with an {@link AccessTraceReplayer},
+ * to benchmark it with the exact access pattern of a real UI component.
+ * </p>
+ * 
+ * <p>
+ * The calls are recorded by
+ * {@link MockupContainer#setTraceRecorder(AccessTraceRecorder)}. Every
+ * {@link ContainerOperation} is recorded with its arguments, except that the
+ * filters given to {@link ContainerOperation#ADD_CONTAINER_FILTER} and
+ * {@link ContainerOperation#REMOVE_CONTAINER_FILTER} are arbitrary objects
+ * and are left out, so those calls cannot be replayed. Recording is
+ * synchronized, so calls from several threads are serialized in the order
+ * they started. An I/O error stops the recording instead of failing the
+ * container call, and is thrown from {@link #close()}.
+ * </p>
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public final class AccessTraceRecorder implements Closeable, Flushable {
+
+    private final DataOutputStream out;
+
+    private final Map<Object, Integer> propertyIds = new HashMap<Object, Integer>();
+
+    private long previousNanos;
+
+    private long eventCount;
+
+    private IOException error;
+
+    private boolean closed;
+
+    /**
+     * @param out
+     *            the stream to write the trace to, closed with the recorder
+     * @throws IOException
+     *             if the header cannot be written
+     */
+    public AccessTraceRecorder(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.writeInt(AccessTraceFormat.MAGIC);
+        this.out.writeByte(AccessTraceFormat.VERSION);
+        this.out.writeLong(System.currentTimeMillis());
+        previousNanos = System.nanoTime();
+    }
+
+    /**
+     * @param file
+     *            the file to write the trace to
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    public AccessTraceRecorder(File file) throws IOException {
+        this(new FileOutputStream(file));
+    }
+
+    /**
+     * @return the number of calls recorded
+     */
+    public synchronized long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Records a call without arguments.
+     */
+    synchronized void recordCall(ContainerOperation operation) {
+        try {
+            if (startEvent(operation)) {
+                endEvent();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records a call whose only argument is an item id.
+     */
+    synchronized void recordItem(ContainerOperation operation, Object itemId) {
+        try {
+            if (startEvent(operation)) {
+                AccessTraceFormat.writeItemId(out, itemId);
+                endEvent();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records a {@link ContainerOperation#GET_CONTAINER_PROPERTY} call.
+     */
+    synchronized void recordProperty(Object itemId, Object propertyId) {
+        try {
+            if (startEvent(ContainerOperation.GET_CONTAINER_PROPERTY)) {
+                AccessTraceFormat.writeItemId(out, itemId);
+                writePropertyId(propertyId);
+                endEvent();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records a call whose only argument is a property id, such as
+     * {@link ContainerOperation#GET_TYPE}.
+     */
+    synchronized void recordPropertyId(ContainerOperation operation,
+            Object propertyId) {
+        try {
+            if (startEvent(operation)) {
+                writePropertyId(propertyId);
+                endEvent();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records a {@link ContainerOperation#SORT} call as the number of sort
+     * properties followed by each property id and direction.
+     */
+    synchronized void recordSort(Object[] propertyIds, boolean[] ascending) {
+        try {
+            if (startEvent(ContainerOperation.SORT)) {
+                AccessTraceFormat.writeInt(out, propertyIds.length);
+                for (int i = 0; i < propertyIds.length; i++) {
+                    writePropertyId(propertyIds[i]);
+                    AccessTraceFormat.writeInt(out, i < ascending.length
+                            && ascending[i] ? 1 : 0);
+                }
+                endEvent();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records a call whose argument is an index, such as
+     * {@link ContainerOperation#GET_ID_BY_INDEX}.
+     */
+    synchronized void recordIndex(ContainerOperation operation, int index) {
+        try {
+            if (startEvent(operation)) {
+                AccessTraceFormat.writeInt(out, index);
+                endEvent();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records a call whose arguments are a start index and a count.
+     */
+    synchronized void recordRange(ContainerOperation operation, int start,
+            int count) {
+        try {
+            if (startEvent(operation)) {
+                AccessTraceFormat.writeInt(out, start);
+                AccessTraceFormat.writeInt(out, count);
+                endEvent();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private boolean startEvent(ContainerOperation operation)
+            throws IOException {
+        if (closed || error != null) {
+            return false;
+        }
+        long now = System.nanoTime();
+        out.writeByte(operation.ordinal());
+        AccessTraceFormat.writeVarLong(out, Math.max(0, now - previousNanos));
+        previousNanos = now;
+        return true;
+    }
+
+    private void endEvent() {
+        eventCount++;
+    }
+
+    private void writePropertyId(Object propertyId) throws IOException {
+        Integer index = propertyIds.get(propertyId);
+        if (index != null) {
+            AccessTraceFormat.writeInt(out, index);
+        } else {
+            index = propertyIds.size();
+            AccessTraceFormat.writeInt(out, index);
+            out.writeUTF(String.valueOf(propertyId));
+            propertyIds.put(propertyId, index);
+        }
+    }
+
+    private void fail(IOException e) {
+        if (error == null) {
+            error = e;
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+        if (!closed) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Stops the recording and closes the stream.
+     * 
+     * @throws IOException
+     *             if writing the trace failed at any point
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            out.close();
+        } catch (IOException e) {
+            fail(e);
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import com.vaadin.data.Container;
+
+/**
+ * <p>
+ * Replays a trace written by an {@link AccessTraceRecorder} against any
+ * {@link Container}, either at full speed or with the pauses between the calls
+ * as they were recorded. Each replayed call is timed into
+ * {@link AccessMetrics}, so the result can be compared directly with the
+ * metrics of the recording session.
+ * </p>
+ * 
+ * <p>
+ * Calls that the target cannot answer, for example the hierarchy calls on a
+ * container that is not {@link Container.Hierarchical}, are skipped and
+ * counted. The item ids of the trace are integers and the property ids are
+ * strings, so the target should use the same ids as the recorded
+ * {@link MockupContainer}. Calls that throw an exception are counted as
+ * replayed, since invalid calls are part of the recorded access pattern too.
+ * Adding or removing a single filter is always skipped, because the trace
+ * does not contain the filter.
+ * </p>
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public final class AccessTraceReplayer {
+
+    private final Container target;
+
+    private boolean realTime;
+
+    private long replayedCount;
+
+    private long skippedCount;
+
+    private long elapsedNanos;
+
+    /**
+     * @param target
+     *            the container to replay the calls against
+     */
+    public AccessTraceReplayer(Container target) {
+        if (target == null) {
+            throw new IllegalArgumentException("Target cannot be null");
+        }
+        this.target = target;
+    }
+
+    /**
+     * @param realTime
+     *            true to wait between the calls as long as the recording did,
+     *            false to replay them back to back
+     */
+    public void setRealTime(boolean realTime) {
+        this.realTime = realTime;
+    }
+
+    public boolean isRealTime() {
+        return realTime;
+    }
+
+    /**
+     * @param trace
+     * @return the metrics of the replayed calls
+     * @throws IOException
+     *             if the file cannot be read or is not a trace
+     */
+    public MetricsSnapshot replay(File trace) throws IOException {
+        InputStream in = new FileInputStream(trace);
+        try {
+            return replay(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Replays a whole trace. The stream is not closed.
+     * 
+     * @param trace
+     * @return the metrics of the replayed calls
+     * @throws IOException
+     *             if the stream cannot be read or is not a trace
+     */
+    public MetricsSnapshot replay(InputStream trace) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                trace));
+        if (in.readInt() != AccessTraceFormat.MAGIC) {
+            throw new IOException("Not an access trace");
+        }
+        int version = in.readUnsignedByte();
+        if (version != AccessTraceFormat.VERSION) {
+            throw new IOException("Unsupported trace version " + version);
+        }
+        in.readLong();
+
+        // sized without calling the target, so that its own metrics only
+        // show the replayed calls
+        AccessMetrics metrics = new AccessMetrics(
+                target instanceof MockupContainer ? ((MockupContainer) target)
+                        .getItemCount() : target.size());
+        List<String> propertyIds = new ArrayList<String>();
+        ContainerOperation[] operations = ContainerOperation.values();
+        replayedCount = 0;
+        skippedCount = 0;
+
+        long begin = System.nanoTime();
+        long recordedOffset = 0;
+        int ordinal;
+        while ((ordinal = in.read()) >= 0) {
+            if (ordinal >= operations.length) {
+                throw new IOException("Unknown operation " + ordinal
+                        + " in trace");
+            }
+            try {
+                recordedOffset += AccessTraceFormat.readVarLong(in);
+                Call call = readCall(in, operations[ordinal], propertyIds);
+                if (realTime) {
+                    waitUntil(begin + recordedOffset);
+                }
+                long start = System.nanoTime();
+                boolean supported;
+                try {
+                    supported = call.execute(target);
+                } catch (RuntimeException e) {
+                    // the call is replayed as it was made, even if invalid
+                    supported = true;
+                }
+                if (supported) {
+                    metrics.record(call.operation, start);
+                    if (call.itemId != null) {
+                        metrics.touch(call.itemId);
+                    }
+                    replayedCount++;
+                } else {
+                    skippedCount++;
+                }
+            } catch (EOFException e) {
+                throw new IOException("Trace ends in the middle of a call", e);
+            }
+        }
+        elapsedNanos = System.nanoTime() - begin;
+        return metrics.snapshot();
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static Call readCall(DataInputStream in,
+            ContainerOperation operation, List<String> propertyIds)
+            throws IOException {
+        Call call = new Call(operation);
+        switch (operation) {
+        case GET_CONTAINER_PROPERTY:
+            call.itemId = AccessTraceFormat.readItemId(in);
+            call.propertyId = readPropertyId(in, propertyIds);
+            break;
+        case GET_TYPE:
+        case REMOVE_CONTAINER_FILTERS:
+            call.propertyId = readPropertyId(in, propertyIds);
+            break;
+        case SORT:
+            int count = AccessTraceFormat.readInt(in);
+            if (count < 0) {
+                throw new IOException("Negative sort property count " + count
+                        + " in trace");
+            }
+            call.sortPropertyIds = new Object[count];
+            call.ascending = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                call.sortPropertyIds[i] = readPropertyId(in, propertyIds);
+                call.ascending[i] = AccessTraceFormat.readInt(in) != 0;
+            }
+            break;
+        case GET_ITEMS:
+        case GET_ITEM_IDS_RANGE:
+            call.first = AccessTraceFormat.readInt(in);
+            call.second = AccessTraceFormat.readInt(in);
+            break;
+        case GET_ID_BY_INDEX:
+            call.first = AccessTraceFormat.readInt(in);
+            break;
+        case GET_ITEM_IDS:
+        case SIZE:
+        case ROOT_ITEM_IDS:
+        case FIRST_ITEM_ID:
+        case LAST_ITEM_ID:
+        case GET_CONTAINER_PROPERTY_IDS:
+        case ADD_CONTAINER_FILTER:
+        case REMOVE_CONTAINER_FILTER:
+        case REMOVE_ALL_CONTAINER_FILTERS:
+            break;
+        default:
+            call.itemId = AccessTraceFormat.readItemId(in);
+        }
+        return call;
+    }
+
+    private static String readPropertyId(DataInputStream in,
+            List<String> propertyIds) throws IOException {
+        int index = AccessTraceFormat.readInt(in);
+        if (index == propertyIds.size()) {
+            propertyIds.add(in.readUTF());
+        } else if (index < 0 || index > propertyIds.size()) {
+            throw new IOException("Unknown property index " + index
+                    + " in trace");
+        }
+        return propertyIds.get(index);
+    }
+
+    /**
+     * @return the number of calls replayed by the last replay
+     */
+    public long getReplayedCount() {
+        return replayedCount;
+    }
+
+    /**
+     * @return the number of calls of the last replay that the target could
+     *         not answer
+     */
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * @return the duration of the last replay in nanoseconds, including the
+     *         pauses of a real time replay
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    private static final class Call {
+
+        private final ContainerOperation operation;
+
+        private Integer itemId;
+
+        private Object propertyId;
+
+        private int first;
+
+        private int second;
+
+        private Object[] sortPropertyIds;
+
+        private boolean[] ascending;
+
+        Call(ContainerOperation operation) {
+            this.operation = operation;
+        }
+
+        /**
+         * @return false if the target doesn't support the call
+         */
+        boolean execute(Container target) {
+            switch (operation) {
+            case GET_ITEM:
+                target.getItem(itemId);
+                return true;
+            case GET_CONTAINER_PROPERTY:
+                target.getContainerProperty(itemId, propertyId);
+                return true;
+            case GET_ITEM_IDS:
+                target.getItemIds();
+                return true;
+            case SIZE:
+                target.size();
+                return true;
+            case CONTAINS_ID:
+                target.containsId(itemId);
+                return true;
+            case GET_CONTAINER_PROPERTY_IDS:
+                target.getContainerPropertyIds();
+                return true;
+            case GET_TYPE:
+                target.getType(propertyId);
+                return true;
+            case ADD_CONTAINER_FILTER:
+            case REMOVE_CONTAINER_FILTER:
+                return false;
+            default:
+                break;
+            }
+
+            if (operation == ContainerOperation.GET_ITEMS
+                    && target instanceof MockupContainer) {
+                ((MockupContainer) target).getItems(first, second);
+                return true;
+            } else if (target instanceof Container.Indexed) {
+                Container.Indexed indexed = (Container.Indexed) target;
+                switch (operation) {
+                case GET_ITEMS:
+                    for (Object id : indexed.getItemIds(first, second)) {
+                        indexed.getItem(id);
+                    }
+                    return true;
+                case GET_ITEM_IDS_RANGE:
+                    indexed.getItemIds(first, second);
+                    return true;
+                case INDEX_OF_ID:
+                    indexed.indexOfId(itemId);
+                    return true;
+                case GET_ID_BY_INDEX:
+                    indexed.getIdByIndex(first);
+                    return true;
+                default:
+                    break;
+                }
+            }
+
+            if (target instanceof Container.Ordered) {
+                Container.Ordered ordered = (Container.Ordered) target;
+                switch (operation) {
+                case NEXT_ITEM_ID:
+                    ordered.nextItemId(itemId);
+                    return true;
+                case PREV_ITEM_ID:
+                    ordered.prevItemId(itemId);
+                    return true;
+                case FIRST_ITEM_ID:
+                    ordered.firstItemId();
+                    return true;
+                case LAST_ITEM_ID:
+                    ordered.lastItemId();
+                    return true;
+                case IS_FIRST_ID:
+                    ordered.isFirstId(itemId);
+                    return true;
+                case IS_LAST_ID:
+                    ordered.isLastId(itemId);
+                    return true;
+                default:
+                    break;
+                }
+            }
+
+            if (operation == ContainerOperation.SORT
+                    && target instanceof Container.Sortable) {
+                ((Container.Sortable) target).sort(sortPropertyIds, ascending);
+                return true;
+            } else if (operation == ContainerOperation.REMOVE_CONTAINER_FILTERS
+                    && target instanceof Container.SimpleFilterable) {
+                ((Container.SimpleFilterable) target)
+                        .removeContainerFilters(propertyId);
+                return true;
+            } else if (operation == ContainerOperation.REMOVE_ALL_CONTAINER_FILTERS) {
+                if (target instanceof Container.Filterable) {
+                    ((Container.Filterable) target).removeAllContainerFilters();
+                    return true;
+                } else if (target instanceof Container.SimpleFilterable) {
+                    ((Container.SimpleFilterable) target)
+                            .removeAllContainerFilters();
+                    return true;
+                }
+            }
+
+            if (target instanceof Container.Hierarchical) {
+                Container.Hierarchical hierarchical = (Container.Hierarchical) target;
+                switch (operation) {
+                case GET_CHILDREN:
+                    hierarchical.getChildren(itemId);
+                    return true;
+                case GET_PARENT:
+                    hierarchical.getParent(itemId);
+                    return true;
+                case HAS_CHILDREN:
+                    hierarchical.hasChildren(itemId);
+                    return true;
+                case IS_ROOT:
+                    hierarchical.isRoot(itemId);
+                    return true;
+                case ROOT_ITEM_IDS:
+                    hierarchical.rootItemIds();
+                    return true;
+                case ARE_CHILDREN_ALLOWED:
+                    hierarchical.areChildrenAllowed(itemId);
+                    return true;
+                default:
+                    break;
+                }
+            }
+            return false;
+        }
+    }
+}
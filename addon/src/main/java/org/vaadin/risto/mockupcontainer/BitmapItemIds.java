@@ -0,0 +1,119 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list view of the item ids in a {@link RowBitmap}, in increasing
+ * order, or of the ids at the positions in the bitmap of a sorted array of
+ * ids. <code>get</code> uses select and <code>indexOf</code> uses rank, so
+ * neither scans the bitmap.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+class BitmapItemIds extends AbstractList<Integer> implements RandomAccess,
+        Serializable {
+
+    private static final long serialVersionUID = -8385950745963102075L;
+
+    private final RowBitmap rows;
+
+    private final int[] ids;
+
+    private final int[] indexes;
+
+    private final int offset;
+
+    private final int size;
+
+    /**
+     * @param rows
+     *            the bitmap, with the rank index built
+     * @param offset
+     *            the position of the first id of this view in the bitmap
+     * @param size
+     *            the number of ids in this view
+     */
+    BitmapItemIds(RowBitmap rows, int offset, int size) {
+        this(rows, null, null, offset, size);
+    }
+
+    /**
+     * @param positions
+     *            the bitmap of the positions in <code>ids</code>, with the
+     *            rank index built
+     * @param ids
+     *            the ids in order, or null if the bitmap holds the ids
+     * @param indexes
+     *            for each id, its position in <code>ids</code>
+     * @param offset
+     *            the position of the first id of this view in the bitmap
+     * @param size
+     *            the number of ids in this view
+     */
+    BitmapItemIds(RowBitmap positions, int[] ids, int[] indexes, int offset,
+            int size) {
+        this.rows = positions;
+        this.ids = ids;
+        this.indexes = indexes;
+        this.offset = offset;
+        this.size = Math.max(size, 0);
+    }
+
+    @Override
+    public Integer get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + size);
+        }
+        int position = rows.select(offset + index);
+        return Integer.valueOf(ids != null ? ids[position] : position);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Integer)) {
+            return -1;
+        }
+        int position = (Integer) o;
+        if (indexes != null) {
+            if (position < 0 || position >= indexes.length) {
+                return -1;
+            }
+            position = indexes[position];
+        }
+        if (!rows.get(position)) {
+            return -1;
+        }
+        int index = rows.rank(position) - offset;
+        return index >= 0 && index < size ? index : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public List<Integer> subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex
+                    + ", toIndex: " + toIndex + ", size: " + size);
+        }
+        return new BitmapItemIds(rows, ids, indexes, offset + fromIndex,
+                toIndex - fromIndex);
+    }
+}
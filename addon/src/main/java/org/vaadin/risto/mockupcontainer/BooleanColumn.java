@@ -0,0 +1,79 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.util.Arrays;
+
+/**
+ * A {@link PrimitiveColumn} of <code>boolean</code> values, packed into a
+ * bit per row.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+class BooleanColumn extends PrimitiveColumn {
+
+    private static final long serialVersionUID = -4919917406908244998L;
+
+    private final int size;
+
+    private final long[] bits;
+
+    BooleanColumn(int size) {
+        this.size = size;
+        bits = new long[(size + 63) >>> 6];
+    }
+
+    private BooleanColumn(int size, long[] bits) {
+        this.size = size;
+        this.bits = bits;
+    }
+
+    boolean getBoolean(int row) {
+        return (bits[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Rows that share a word of bits must not be written concurrently, which
+     * the striped column locks of the container guarantee.
+     */
+    void setBoolean(int row, boolean value) {
+        if (value) {
+            bits[row >>> 6] |= 1L << row;
+        } else {
+            bits[row >>> 6] &= ~(1L << row);
+        }
+    }
+
+    @Override
+    Object box(int row) {
+        return Boolean.valueOf(getBoolean(row));
+    }
+
+    @Override
+    void store(int row, Object value) {
+        setBoolean(row, (Boolean) value);
+    }
+
+    @Override
+    long sortKey(int row) {
+        return getBoolean(row) ? 1 : 0;
+    }
+
+    @Override
+    long getBits(int row) {
+        return getBoolean(row) ? 1 : 0;
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    PrimitiveColumn copyOf(int size) {
+        long[] copy = Arrays.copyOf(bits, (size + 63) >>> 6);
+        if ((size & 63) != 0) {
+            copy[copy.length - 1] &= (1L << size) - 1;
+        }
+        return new BooleanColumn(size, copy);
+    }
+}
@@ -0,0 +1,515 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vaadin.data.Container;
+import com.vaadin.data.Item;
+import com.vaadin.data.Property;
+
+/**
+ * <p>
+ * A read-only {@link Container.Indexed} decorator that keeps recently used
+ * items of a slow {@link MockupContainer} in a bounded LRU cache, the way a
+ * client side cache would sit in front of a slow database. Only cache misses
+ * pay the delay of the container.
+ * </p>
+ * 
+ * <p>
+ * After a miss on the item at index N the items N+1..N+k are read ahead in a
+ * background thread with a single {@link MockupContainer#getItems(int, int)
+ * batch fetch}, so a client scrolling forward mostly hits the cache. The hit,
+ * miss and prefetch counters show how much of the latency the cache hides.
+ * </p>
+ * 
+ * <p>
+ * By default the read-ahead runs in a daemon thread of the cache, so the
+ * wrapped container must not be sorted, filtered or otherwise changed
+ * structurally while a read-ahead may be running. With a Vaadin UI, set an
+ * {@link Executor} that runs the read-ahead while holding the session lock:
+ * </p>
+ * 
+ * <pre>
+ * cache.setExecutor(new Executor() {
+ *     public void execute(Runnable command) {
+ *         ui.access(command);
+ *     }
+ * });
+ * </pre>
+ * 
+ * <p>
+ * The cache is cleared whenever the item set of the container changes, for
+ * example when it is sorted or filtered. Changes to the contents must be made
+ * through the wrapped container.
+ * </p>
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public class CachingContainer implements Container.Indexed,
+        Container.ItemSetChangeNotifier {
+
+    private static final long serialVersionUID = 6419813271505582012L;
+
+    private final MockupContainer container;
+
+    private final int capacity;
+
+    private final int readAhead;
+
+    private final Map<Object, Item> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong prefetched = new AtomicLong();
+
+    /**
+     * Incremented whenever the cache is cleared, so that read-ahead results
+     * from before the change are discarded.
+     */
+    private long generation;
+
+    private int prefetchStart;
+
+    private int prefetchEnd;
+
+    private transient ExecutorService prefetchExecutor;
+
+    /**
+     * Runs the read-ahead instead of {@link #prefetchExecutor}. Not
+     * serialized, as executors seldom are.
+     */
+    private transient Executor executor;
+
+    private final ItemSetChangeListener containerListener;
+
+    private volatile boolean shutDown;
+
+    private volatile ItemSetChangeListener[] itemSetChangeListeners;
+
+    /**
+     * @param container
+     *            the container to cache
+     * @param capacity
+     *            the maximum number of cached items
+     * @param readAhead
+     *            the number of items to prefetch after a miss, zero to
+     *            disable read-ahead
+     */
+    public CachingContainer(MockupContainer container, int capacity,
+            int readAhead) {
+        if (container == null) {
+            throw new IllegalArgumentException("Container cannot be null");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        if (readAhead < 0) {
+            throw new IllegalArgumentException(
+                    "Read-ahead cannot be negative");
+        }
+        this.container = container;
+        this.capacity = capacity;
+        this.readAhead = readAhead;
+        cache = new LinkedHashMap<Object, Item>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = -1264750377624069513L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Item> eldest) {
+                return size() > CachingContainer.this.capacity;
+            }
+        };
+
+        containerListener = new ItemSetChangeListener() {
+
+            private static final long serialVersionUID = -5180325926580120227L;
+
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                clearCache();
+                fireItemSetChangeEvent();
+            }
+        };
+        container.addItemSetChangeListener(containerListener);
+    }
+
+    /**
+     * @return the wrapped container
+     */
+    public MockupContainer getContainer() {
+        return container;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getReadAhead() {
+        return readAhead;
+    }
+
+    /**
+     * @param executor
+     *            runs the read-ahead, or null to run it in a daemon thread of
+     *            this cache
+     */
+    public synchronized void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @throws IllegalStateException
+     *             if the cache has been shut down
+     */
+    @Override
+    public Item getItem(Object itemId) {
+        if (shutDown) {
+            throw new IllegalStateException("The cache has been shut down");
+        }
+        synchronized (cache) {
+            Item item = cache.get(itemId);
+            if (item != null) {
+                hits.incrementAndGet();
+                return item;
+            }
+        }
+
+        misses.incrementAndGet();
+        Item item = container.getItem(itemId);
+        if (item != null) {
+            synchronized (cache) {
+                cache.put(itemId, item);
+            }
+            if (readAhead > 0) {
+                scheduleReadAhead(container.indexOfId(itemId) + 1);
+            }
+        }
+        return item;
+    }
+
+    private void scheduleReadAhead(final int startIndex) {
+        final long scheduledGeneration;
+        synchronized (cache) {
+            if (startIndex >= prefetchStart && startIndex < prefetchEnd) {
+                return;
+            }
+            prefetchStart = startIndex;
+            prefetchEnd = startIndex + readAhead;
+            scheduledGeneration = generation;
+        }
+
+        getPrefetchExecutor().execute(new Runnable() {
+
+            @Override
+            public void run() {
+                if (shutDown) {
+                    return;
+                }
+                ItemBatch batch;
+                try {
+                    batch = container.getItems(startIndex, readAhead);
+                } catch (IndexOutOfBoundsException e) {
+                    // past the end, or the container shrank meanwhile
+                    return;
+                }
+                synchronized (cache) {
+                    if (generation != scheduledGeneration) {
+                        return;
+                    }
+                    for (int i = 0; i < batch.size(); i++) {
+                        if (!cache.containsKey(batch.getItemId(i))) {
+                            cache.put(batch.getItemId(i), batch.getItem(i));
+                            prefetched.incrementAndGet();
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private synchronized Executor getPrefetchExecutor() {
+        if (executor != null) {
+            return executor;
+        }
+        if (prefetchExecutor == null) {
+            prefetchExecutor = Executors
+                    .newSingleThreadExecutor(new ThreadFactory() {
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r,
+                                    "MockupContainer read-ahead");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return prefetchExecutor;
+    }
+
+    /**
+     * Stops the read-ahead thread, empties the cache and stops listening to
+     * the wrapped container, so that the cache is no longer reachable from
+     * it. The cache cannot be used afterwards.
+     */
+    public synchronized void shutdown() {
+        shutDown = true;
+        container.removeItemSetChangeListener(containerListener);
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdown();
+            prefetchExecutor = null;
+        }
+        clearCache();
+    }
+
+    /**
+     * Empties the cache. The counters are not reset.
+     */
+    public void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+            generation++;
+            prefetchStart = 0;
+            prefetchEnd = 0;
+        }
+    }
+
+    /**
+     * @return the number of items currently in the cache
+     */
+    public int getCachedItemCount() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * @return the number of item requests answered from the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of item requests that had to go to the container
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of items loaded into the cache by read-ahead
+     */
+    public long getPrefetchCount() {
+        return prefetched.get();
+    }
+
+    /**
+     * @return the share of item requests answered from the cache, zero if
+     *         there have been none
+     */
+    public double getHitRatio() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        prefetched.set(0);
+    }
+
+    @Override
+    public Collection<?> getContainerPropertyIds() {
+        return container.getContainerPropertyIds();
+    }
+
+    @Override
+    public Collection<?> getItemIds() {
+        return container.getItemIds();
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public Property getContainerProperty(Object itemId, Object propertyId) {
+        Item item = getItem(itemId);
+        return item != null ? item.getItemProperty(propertyId) : null;
+    }
+
+    @Override
+    public Class<?> getType(Object propertyId) {
+        return container.getType(propertyId);
+    }
+
+    @Override
+    public int size() {
+        return container.size();
+    }
+
+    @Override
+    public boolean containsId(Object itemId) {
+        return container.containsId(itemId);
+    }
+
+    @Override
+    public Object nextItemId(Object itemId) {
+        return container.nextItemId(itemId);
+    }
+
+    @Override
+    public Object prevItemId(Object itemId) {
+        return container.prevItemId(itemId);
+    }
+
+    @Override
+    public Object firstItemId() {
+        return container.firstItemId();
+    }
+
+    @Override
+    public Object lastItemId() {
+        return container.lastItemId();
+    }
+
+    @Override
+    public boolean isFirstId(Object itemId) {
+        return container.isFirstId(itemId);
+    }
+
+    @Override
+    public boolean isLastId(Object itemId) {
+        return container.isLastId(itemId);
+    }
+
+    @Override
+    public int indexOfId(Object itemId) {
+        return container.indexOfId(itemId);
+    }
+
+    @Override
+    public Object getIdByIndex(int index) {
+        return container.getIdByIndex(index);
+    }
+
+    @Override
+    public List<?> getItemIds(int startIndex, int numberOfItems) {
+        return container.getItemIds(startIndex, numberOfItems);
+    }
+
+    @Override
+    public Item addItem(Object itemId) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object addItem() throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeItem(Object itemId)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addContainerProperty(Object propertyId, Class<?> type,
+            Object defaultValue) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeContainerProperty(Object propertyId)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAllItems() throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object addItemAfter(Object previousItemId)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Item addItemAfter(Object previousItemId, Object newItemId)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object addItemAt(int index) throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Item addItemAt(int index, Object newItemId)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    /* Listener methods */
+
+    protected void fireItemSetChangeEvent() {
+        ItemSetChangeListener[] listeners = itemSetChangeListeners;
+        if (listeners != null) {
+            ItemSetChangeEvent event = new ItemSetChangeEvent() {
+
+                private static final long serialVersionUID = 4010286916225016738L;
+
+                @Override
+                public Container getContainer() {
+                    return CachingContainer.this;
+                }
+            };
+            for (ItemSetChangeListener listener : listeners) {
+                listener.containerItemSetChange(event);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void addItemSetChangeListener(
+            ItemSetChangeListener listener) {
+        if (itemSetChangeListeners == null) {
+            itemSetChangeListeners = new ItemSetChangeListener[] { listener };
+        } else {
+            itemSetChangeListeners = ListenerArrays.add(itemSetChangeListeners,
+                    listener);
+        }
+    }
+
+    @Override
+    public synchronized void removeItemSetChangeListener(
+            ItemSetChangeListener listener) {
+        itemSetChangeListeners = ListenerArrays.remove(itemSetChangeListeners,
+                listener);
+    }
+
+    @Override
+    @Deprecated
+    public void addListener(ItemSetChangeListener listener) {
+        addItemSetChangeListener(listener);
+    }
+
+    @Override
+    @Deprecated
+    public void removeListener(ItemSetChangeListener listener) {
+        removeItemSetChangeListener(listener);
+    }
+}
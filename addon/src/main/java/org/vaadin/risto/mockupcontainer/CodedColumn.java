@@ -0,0 +1,67 @@
+package org.vaadin.risto.mockupcontainer;
+
+/**
+ * A {@link Column} that stores a code from a shared {@link Dictionary} for
+ * each row instead of the value itself. Subclasses decide where and how
+ * compactly the codes are kept.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+abstract class CodedColumn extends Column {
+
+    private static final long serialVersionUID = -3349711213307046315L;
+
+    static final int BYTE_CODES = 1 << 8;
+
+    static final int SHORT_CODES = 1 << 16;
+
+    private final Dictionary dictionary;
+
+    CodedColumn(Dictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    Object get(int row) {
+        return dictionary.decode(getCode(row));
+    }
+
+    @Override
+    void set(int row, Object value) {
+        setCode(row, dictionary.encode(value));
+    }
+
+    Dictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @param row
+     * @return the dictionary code stored for the row
+     */
+    abstract int getCode(int row);
+
+    /**
+     * Stores a code for the row, widening the storage if the code doesn't fit
+     * in it.
+     * 
+     * @param row
+     * @param code
+     */
+    abstract void setCode(int row, int code);
+
+    /**
+     * @param dictionarySize
+     * @return the number of bytes needed per code for the given number of
+     *         distinct values
+     */
+    static int codeWidth(int dictionarySize) {
+        if (dictionarySize <= BYTE_CODES) {
+            return 1;
+        } else if (dictionarySize <= SHORT_CODES) {
+            return 2;
+        }
+        return 4;
+    }
+}
@@ -0,0 +1,57 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.Serializable;
+
+/**
+ * Storage for the values of a single container property, indexed by row
+ * (item id). Used by the column based storage modes, such as
+ * {@link StorageMode#COLUMNAR}.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+abstract class Column implements Serializable {
+
+    private static final long serialVersionUID = -6010564391931766213L;
+
+    /**
+     * @param row
+     * @return the value stored for the given row
+     */
+    abstract Object get(int row);
+
+    /**
+     * @param row
+     * @param value
+     *            the new value of the given row
+     */
+    abstract void set(int row, Object value);
+
+    /**
+     * @return the number of rows in this column. May be more than the number
+     *         of items in the container, which leaves room for growing.
+     */
+    abstract int size();
+
+    /**
+     * @param size
+     *            the number of rows in the new column
+     * @return a new column with the values of the rows that both columns
+     *         have. The values of the added rows must be set before they are
+     *         read.
+     */
+    abstract Column resize(int size);
+
+    /**
+     * Forgets the values of a range of rows that are no longer in use, so
+     * that they can be set again later as if the rows were new.
+     * 
+     * @param fromRow
+     *            the first row to forget
+     * @param toRow
+     *            the row after the last row to forget
+     */
+    void clear(int fromRow, int toRow) {
+        // nothing is kept in addition to the value
+    }
+}
@@ -0,0 +1,113 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.util.ObjectProperty;
+import com.vaadin.data.util.PropertysetItem;
+
+/**
+ * Bitmap index of a single container property: one {@link CompressedBitmap}
+ * of rows for each distinct value. A filter that only looks at this property
+ * is evaluated once per distinct value instead of once per row, and the
+ * bitmaps of the matching values are combined.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+final class ColumnIndex implements Serializable {
+
+    private static final long serialVersionUID = -1734225893837208136L;
+
+    private final Object[] values;
+
+    private final CompressedBitmap[] bitmaps;
+
+    private final int rows;
+
+    private ColumnIndex(Object[] values, CompressedBitmap[] bitmaps, int rows) {
+        this.values = values;
+        this.bitmaps = bitmaps;
+        this.rows = rows;
+    }
+
+    /**
+     * Builds the index of a column. Dictionary encoded columns are indexed by
+     * code, so their values are never decoded row by row.
+     * 
+     * @param container
+     * @param column
+     * @return the index
+     */
+    static ColumnIndex build(MockupContainer container, int column) {
+        int rows = container.getItemCount();
+        Column storedColumn = container.getColumn(column);
+
+        if (storedColumn instanceof CodedColumn) {
+            CodedColumn codedColumn = (CodedColumn) storedColumn;
+            Dictionary dictionary = codedColumn.getDictionary();
+            Object[] values = new Object[dictionary.size()];
+            CompressedBitmap[] bitmaps = new CompressedBitmap[values.length];
+            for (int code = 0; code < values.length; code++) {
+                values[code] = dictionary.decode(code);
+                bitmaps[code] = new CompressedBitmap(rows);
+            }
+            for (int row = 0; row < rows; row++) {
+                bitmaps[codedColumn.getCode(row)].add(row);
+            }
+            return new ColumnIndex(values, trim(bitmaps), rows);
+        }
+
+        Map<Object, CompressedBitmap> bitmapsByValue = new HashMap<Object, CompressedBitmap>();
+        List<Object> values = new ArrayList<Object>();
+        for (int row = 0; row < rows; row++) {
+            Object value = container.getValueAt(row, column);
+            CompressedBitmap bitmap = bitmapsByValue.get(value);
+            if (bitmap == null) {
+                bitmap = new CompressedBitmap(rows);
+                bitmapsByValue.put(value, bitmap);
+                values.add(value);
+            }
+            bitmap.add(row);
+        }
+
+        CompressedBitmap[] bitmaps = new CompressedBitmap[values.size()];
+        for (int i = 0; i < bitmaps.length; i++) {
+            bitmaps[i] = bitmapsByValue.get(values.get(i));
+        }
+        return new ColumnIndex(values.toArray(), trim(bitmaps), rows);
+    }
+
+    private static CompressedBitmap[] trim(CompressedBitmap[] bitmaps) {
+        for (CompressedBitmap bitmap : bitmaps) {
+            bitmap.trim();
+        }
+        return bitmaps;
+    }
+
+    /**
+     * @param filter
+     *            a filter that only depends on the given property
+     * @param propertyId
+     * @return the rows whose value passes the filter
+     */
+    RowBitmap match(Filter filter, Object propertyId) {
+        RowBitmap result = new RowBitmap(rows, false);
+        ObjectProperty<Object> property = new ObjectProperty<Object>(null,
+                Object.class);
+        PropertysetItem item = new PropertysetItem();
+        item.addItemProperty(propertyId, property);
+
+        for (int i = 0; i < values.length; i++) {
+            property.setValue(values[i]);
+            if (filter.passesFilter(null, item)) {
+                bitmaps[i].orInto(result);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,70 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.util.Collection;
+
+import com.vaadin.data.Item;
+import com.vaadin.data.Property;
+
+/**
+ * A thin {@link Item} view over a row of a {@link MockupContainer} that uses
+ * one of the column based storage modes, such as
+ * {@link StorageMode#COLUMNAR}. The view holds only the container and the
+ * item id; the values stay in the columns of the container.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+class ColumnItem implements Item {
+
+    private static final long serialVersionUID = 4300466823860329346L;
+
+    private final MockupContainer container;
+
+    private final int itemId;
+
+    ColumnItem(MockupContainer container, int itemId) {
+        this.container = container;
+        this.itemId = itemId;
+    }
+
+    @Override
+    public Property<?> getItemProperty(Object id) {
+        int column = container.indexOfProperty(id);
+        if (column < 0) {
+            return null;
+        }
+        return new ColumnProperty(container, itemId, column);
+    }
+
+    @Override
+    public Collection<?> getItemPropertyIds() {
+        return container.getPropertyIds();
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public boolean addItemProperty(Object id, Property property)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeItemProperty(Object id)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ColumnItem)) {
+            return false;
+        }
+        ColumnItem other = (ColumnItem) obj;
+        return container == other.container && itemId == other.itemId;
+    }
+
+    @Override
+    public int hashCode() {
+        return itemId;
+    }
+}
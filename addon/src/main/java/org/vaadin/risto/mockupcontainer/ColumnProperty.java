@@ -0,0 +1,89 @@
+package org.vaadin.risto.mockupcontainer;
+
+import com.vaadin.data.Property;
+import com.vaadin.data.util.converter.Converter.ConversionException;
+
+/**
+ * A thin {@link Property} view over a single cell of a
+ * {@link MockupContainer} that uses one of the column based storage modes,
+ * such as {@link StorageMode#COLUMNAR}. Reading and writing the value goes
+ * directly to the column of the container. The read-only state belongs to the
+ * view only, except that the contents of an opened snapshot are always
+ * read-only.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+class ColumnProperty implements Property<Object> {
+
+    private static final long serialVersionUID = -1587617658604406707L;
+
+    private final MockupContainer container;
+
+    private final int itemId;
+
+    private final int column;
+
+    private boolean readOnly;
+
+    ColumnProperty(MockupContainer container, int itemId, int column) {
+        this.container = container;
+        this.itemId = itemId;
+        this.column = column;
+    }
+
+    @Override
+    public Object getValue() {
+        return container.getStoredValue(itemId, column);
+    }
+
+    @Override
+    public void setValue(Object newValue) throws ReadOnlyException,
+            ConversionException {
+        if (isReadOnly()) {
+            throw new ReadOnlyException();
+        }
+        if (newValue != null && !getType().isInstance(newValue)) {
+            throw new ConversionException("Value of type "
+                    + newValue.getClass().getName() + " cannot be stored in a "
+                    + getType().getName() + " property");
+        }
+        container.setStoredValue(itemId, column, newValue);
+    }
+
+    @Override
+    public Class<? extends Object> getType() {
+        return container.getType(column);
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return readOnly || container.isSnapshotContents();
+    }
+
+    @Override
+    public void setReadOnly(boolean newStatus) {
+        readOnly = newStatus;
+    }
+
+    @Override
+    public String toString() {
+        Object value = getValue();
+        return (value != null ? value.toString() : "null");
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ColumnProperty)) {
+            return false;
+        }
+        ColumnProperty other = (ColumnProperty) obj;
+        return container == other.container && itemId == other.itemId
+                && column == other.column;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * itemId + column;
+    }
+}
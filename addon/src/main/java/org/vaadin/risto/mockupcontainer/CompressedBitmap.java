@@ -0,0 +1,131 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A compressed set of row numbers, used for the value indexes of the
+ * container. The rows are split into chunks of 65536. A chunk with few rows
+ * is stored as a sorted array of 16-bit offsets and a chunk with many rows as
+ * a plain bitmap, so that no chunk takes more than 8 kB and sparse chunks take
+ * two bytes per row.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+final class CompressedBitmap implements Serializable {
+
+    private static final long serialVersionUID = 5787244787339807736L;
+
+    private static final int CHUNK_BITS = 16;
+
+    private static final int WORDS_PER_CHUNK = (1 << CHUNK_BITS) >>> 6;
+
+    /**
+     * Largest number of rows a chunk stores as an array. Beyond this, the
+     * bitmap is smaller.
+     */
+    private static final int ARRAY_LIMIT = 4096;
+
+    /**
+     * Each chunk is either null, a char[] of offsets or a long[] bitmap.
+     */
+    private final Object[] chunks;
+
+    private final int[] counts;
+
+    /**
+     * @param rows
+     *            the total number of rows in the container
+     */
+    CompressedBitmap(int rows) {
+        int chunkCount = (int) ((rows + (1L << CHUNK_BITS) - 1) >>> CHUNK_BITS);
+        chunks = new Object[chunkCount];
+        counts = new int[chunkCount];
+    }
+
+    /**
+     * Adds a row. Rows must be added in increasing order.
+     * 
+     * @param row
+     */
+    void add(int row) {
+        int chunk = row >>> CHUNK_BITS;
+        char offset = (char) row;
+        int count = counts[chunk];
+
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new char[8];
+        }
+        if (chunks[chunk] instanceof char[]) {
+            char[] offsets = (char[]) chunks[chunk];
+            if (count < ARRAY_LIMIT) {
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets,
+                            Math.min(count * 2, ARRAY_LIMIT));
+                    chunks[chunk] = offsets;
+                }
+                offsets[count] = offset;
+                counts[chunk]++;
+                return;
+            }
+
+            long[] bits = new long[WORDS_PER_CHUNK];
+            for (int i = 0; i < count; i++) {
+                bits[offsets[i] >>> 6] |= 1L << offsets[i];
+            }
+            chunks[chunk] = bits;
+        }
+
+        long[] bits = (long[]) chunks[chunk];
+        bits[offset >>> 6] |= 1L << offset;
+        counts[chunk]++;
+    }
+
+    /**
+     * Releases the unused capacity of the offset arrays.
+     */
+    void trim() {
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            if (chunks[chunk] instanceof char[]) {
+                chunks[chunk] = Arrays.copyOf((char[]) chunks[chunk],
+                        counts[chunk]);
+            }
+        }
+    }
+
+    /**
+     * @return the number of rows in the set
+     */
+    int cardinality() {
+        int cardinality = 0;
+        for (int count : counts) {
+            cardinality += count;
+        }
+        return cardinality;
+    }
+
+    /**
+     * Adds the rows of this set to the given bitmap.
+     * 
+     * @param target
+     */
+    void orInto(RowBitmap target) {
+        long[] words = target.getWords();
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            int base = chunk * WORDS_PER_CHUNK;
+            if (chunks[chunk] instanceof char[]) {
+                char[] offsets = (char[]) chunks[chunk];
+                for (int i = 0; i < counts[chunk]; i++) {
+                    words[base + (offsets[i] >>> 6)] |= 1L << offsets[i];
+                }
+            } else if (chunks[chunk] != null) {
+                long[] bits = (long[]) chunks[chunk];
+                int length = Math.min(WORDS_PER_CHUNK, words.length - base);
+                for (int i = 0; i < length; i++) {
+                    words[base + i] |= bits[i];
+                }
+            }
+        }
+    }
+}
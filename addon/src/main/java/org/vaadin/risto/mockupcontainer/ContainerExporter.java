@@ -0,0 +1,527 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * <p>
+ * Writes the contents of a {@link MockupContainer} as CSV or JSON Lines,
+ * straight from its storage or, in the {@link StorageMode#VIRTUAL virtual}
+ * mode, straight from the generator. No items are materialized: every value is
+ * encoded as UTF-8 into a single reusable buffer that is written to the
+ * channel whenever it fills up, so the memory use stays constant regardless of
+ * the number of rows.
+ * </p>
+ * 
+ * <p>
+ * Each row starts with the item id and the id of its parent in the hierarchy,
+ * followed by the properties in the order of
+ * {@link MockupContainer#getContainerPropertyIds()}. The rows are written in
+ * the current order of the container and only the rows that pass its filters
+ * are included. The export does not pay the item delay and is not counted in
+ * the {@link AccessMetrics} of the container.
+ * </p>
+ * 
+ * <p>
+ * An exporter can be reused, but not by several threads at the same time.
+ * </p>
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public final class ContainerExporter {
+
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private static final int MIN_BUFFER_SIZE = 64;
+
+    private static final int ENCODED_CACHE_SIZE = 1024;
+
+    private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+
+    private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+
+    private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+
+    private static final byte[] HEX = { '0', '1', '2', '3', '4', '5', '6',
+            '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
+
+    private final MockupContainer container;
+
+    private final ExportFormat format;
+
+    private boolean header = true;
+
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    private byte[] buffer;
+
+    private int position;
+
+    private WritableByteChannel channel;
+
+    private final byte[] digits = new byte[20];
+
+    /**
+     * The data sets draw their values from a small vocabulary, so the encoded
+     * bytes of recently written strings are kept in a direct-mapped cache
+     * keyed by identity.
+     */
+    private final String[] cachedStrings = new String[ENCODED_CACHE_SIZE];
+
+    private final byte[][] encodedStrings = new byte[ENCODED_CACHE_SIZE][];
+
+    private final Calendar calendar = new GregorianCalendar(
+            TimeZone.getTimeZone("UTC"));
+
+    /**
+     * @param container
+     *            the container to export
+     * @param format
+     */
+    public ContainerExporter(MockupContainer container, ExportFormat format) {
+        if (container == null) {
+            throw new IllegalArgumentException("Container cannot be null");
+        }
+        if (format == null) {
+            throw new IllegalArgumentException("Format cannot be null");
+        }
+        this.container = container;
+        this.format = format;
+    }
+
+    /**
+     * @param header
+     *            true to start a CSV export with a row of column names.
+     *            Defaults to true. Has no effect on JSON Lines.
+     */
+    public void setHeader(boolean header) {
+        this.header = header;
+    }
+
+    public boolean isHeader() {
+        return header;
+    }
+
+    /**
+     * @param bufferSize
+     *            the size of the encode buffer in bytes, which is also the
+     *            size of the writes to the channel. Defaults to 64 KiB.
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("Buffer size must be at least "
+                    + MIN_BUFFER_SIZE);
+        }
+        if (bufferSize != this.bufferSize) {
+            this.bufferSize = bufferSize;
+            buffer = null;
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public ExportFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Writes the contents to a stream. The stream is flushed but not closed.
+     * 
+     * @param out
+     * @return the number of rows written, not counting the header
+     * @throws IOException
+     */
+    public long export(OutputStream out) throws IOException {
+        long rows = export(Channels.newChannel(out));
+        out.flush();
+        return rows;
+    }
+
+    /**
+     * Writes the contents to a channel. The channel is not closed.
+     * 
+     * @param channel
+     * @return the number of rows written, not counting the header
+     * @throws IOException
+     */
+    public long export(WritableByteChannel channel) throws IOException {
+        if (buffer == null) {
+            buffer = new byte[bufferSize];
+        }
+        position = 0;
+        this.channel = channel;
+        try {
+            int columns = container.getPropertyIds().size();
+            List<Integer> itemIds = container.visibleItemIds();
+            int size = itemIds.size();
+            if (format == ExportFormat.CSV) {
+                exportCsv(itemIds, size, columns);
+            } else {
+                exportJsonLines(itemIds, size, columns);
+            }
+            flush();
+            return size;
+        } finally {
+            this.channel = null;
+            Arrays.fill(cachedStrings, null);
+            Arrays.fill(encodedStrings, null);
+        }
+    }
+
+    private void exportCsv(List<Integer> itemIds, int size, int columns)
+            throws IOException {
+        if (header) {
+            writeAscii("id,parent");
+            for (int column = 0; column < columns; column++) {
+                put((byte) ',');
+                writeCsvString(container.getPropertyId(column));
+            }
+            writeLineEnd();
+        }
+
+        for (int i = 0; i < size; i++) {
+            int itemId = itemIds.get(i);
+            writeLong(itemId);
+            put((byte) ',');
+            int parent = container.parentOf(itemId);
+            if (parent >= 0) {
+                writeLong(parent);
+            }
+            for (int column = 0; column < columns; column++) {
+                put((byte) ',');
+                Object value = container.getValueAt(itemId, column);
+                if (value instanceof Date) {
+                    writeDate((Date) value);
+                } else if (value instanceof Integer || value instanceof Long) {
+                    writeLong(((Number) value).longValue());
+                } else if (value != null) {
+                    writeString(value.toString());
+                }
+            }
+            writeLineEnd();
+        }
+    }
+
+    private void exportJsonLines(List<Integer> itemIds, int size, int columns)
+            throws IOException {
+        byte[][] keys = new byte[columns][];
+        for (int column = 0; column < columns; column++) {
+            String key = ",\"" + escapeJson(container.getPropertyId(column))
+                    + "\":";
+            keys[column] = key.getBytes(StandardCharsets.UTF_8);
+        }
+
+        for (int i = 0; i < size; i++) {
+            int itemId = itemIds.get(i);
+            writeAscii("{\"id\":");
+            writeLong(itemId);
+            writeAscii(",\"parent\":");
+            int parent = container.parentOf(itemId);
+            if (parent >= 0) {
+                writeLong(parent);
+            } else {
+                put(NULL);
+            }
+            for (int column = 0; column < columns; column++) {
+                put(keys[column]);
+                writeJsonValue(container.getValueAt(itemId, column));
+            }
+            put((byte) '}');
+            put((byte) '\n');
+        }
+    }
+
+    private void writeJsonValue(Object value) throws IOException {
+        if (value == null) {
+            put(NULL);
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            writeLong(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                put(NULL);
+            } else {
+                writeAscii(value.toString());
+            }
+        } else if (value instanceof Boolean) {
+            put((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Date) {
+            put((byte) '"');
+            writeDate((Date) value);
+            put((byte) '"');
+        } else {
+            writeString(value.toString());
+        }
+    }
+
+    /**
+     * Writes a string value, escaped for the format.
+     */
+    private void writeString(String value) throws IOException {
+        int slot = System.identityHashCode(value) & (ENCODED_CACHE_SIZE - 1);
+        if (cachedStrings[slot] == value) {
+            put(encodedStrings[slot]);
+            return;
+        }
+
+        // escaped UTF-8 takes at most six bytes per character
+        long maxLength = 6L * value.length() + 2;
+        if (maxLength > buffer.length / 2) {
+            writeEscaped(value);
+            return;
+        }
+        ensure((int) maxLength);
+        int start = position;
+        writeEscaped(value);
+        cachedStrings[slot] = value;
+        encodedStrings[slot] = Arrays.copyOfRange(buffer, start, position);
+    }
+
+    private void writeEscaped(String value) throws IOException {
+        if (format == ExportFormat.CSV) {
+            writeCsvString(value);
+        } else {
+            writeJsonString(value);
+        }
+    }
+
+    private void writeCsvString(String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writeUtf8(value);
+            return;
+        }
+
+        put((byte) '"');
+        int start = 0;
+        int quoteIndex;
+        while ((quoteIndex = value.indexOf('"', start)) >= 0) {
+            writeUtf8(value, start, quoteIndex + 1);
+            put((byte) '"');
+            start = quoteIndex + 1;
+        }
+        writeUtf8(value, start, value.length());
+        put((byte) '"');
+    }
+
+    private void writeJsonString(String value) throws IOException {
+        put((byte) '"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\') {
+                writeUtf8(value, start, i);
+                writeJsonEscape(c);
+                start = i + 1;
+            }
+        }
+        writeUtf8(value, start, value.length());
+        put((byte) '"');
+    }
+
+    private void writeJsonEscape(char c) throws IOException {
+        ensure(6);
+        buffer[position++] = '\\';
+        switch (c) {
+        case '"':
+        case '\\':
+            buffer[position++] = (byte) c;
+            break;
+        case '\n':
+            buffer[position++] = 'n';
+            break;
+        case '\r':
+            buffer[position++] = 'r';
+            break;
+        case '\t':
+            buffer[position++] = 't';
+            break;
+        default:
+            buffer[position++] = 'u';
+            buffer[position++] = '0';
+            buffer[position++] = '0';
+            buffer[position++] = HEX[c >> 4];
+            buffer[position++] = HEX[c & 0xf];
+        }
+    }
+
+    private static String escapeJson(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private void writeUtf8(String value) throws IOException {
+        writeUtf8(value, 0, value.length());
+    }
+
+    /**
+     * Encodes the given characters as UTF-8. Unpaired surrogates are replaced
+     * with a question mark, like
+     * {@link String#getBytes(java.nio.charset.Charset)} does.
+     */
+    private void writeUtf8(String value, int start, int end)
+            throws IOException {
+        byte[] buffer = this.buffer;
+        int position = this.position;
+        for (int i = start; i < end; i++) {
+            if (position > buffer.length - 4) {
+                this.position = position;
+                flush();
+                position = 0;
+            }
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xc0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3f);
+            } else if (!Character.isSurrogate(c)) {
+                buffer[position++] = (byte) (0xe0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+                buffer[position++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xf0 | codePoint >> 18);
+                buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3f);
+            } else {
+                buffer[position++] = '?';
+            }
+        }
+        this.position = position;
+    }
+
+    /**
+     * Writes a string that is known to contain only ASCII characters.
+     */
+    private void writeAscii(String value) throws IOException {
+        ensure(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer[position++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        ensure(digits.length);
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        System.arraycopy(digits, start, buffer, position, digits.length
+                - start);
+        position += digits.length - start;
+    }
+
+    /**
+     * Writes a date as <code>yyyy-MM-ddTHH:mm:ss.SSSZ</code> in UTC.
+     */
+    private void writeDate(Date date) throws IOException {
+        calendar.setTime(date);
+        ensure(32);
+        writePadded(calendar.get(Calendar.YEAR), 4);
+        buffer[position++] = '-';
+        writePadded(calendar.get(Calendar.MONTH) + 1, 2);
+        buffer[position++] = '-';
+        writePadded(calendar.get(Calendar.DAY_OF_MONTH), 2);
+        buffer[position++] = 'T';
+        writePadded(calendar.get(Calendar.HOUR_OF_DAY), 2);
+        buffer[position++] = ':';
+        writePadded(calendar.get(Calendar.MINUTE), 2);
+        buffer[position++] = ':';
+        writePadded(calendar.get(Calendar.SECOND), 2);
+        buffer[position++] = '.';
+        writePadded(calendar.get(Calendar.MILLISECOND), 3);
+        buffer[position++] = 'Z';
+    }
+
+    private void writePadded(int value, int width) {
+        int divisor = 1;
+        for (int i = 1; i < width; i++) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer[position++] = (byte) ('0' + value / divisor % 10);
+        }
+    }
+
+    private void writeLineEnd() throws IOException {
+        ensure(2);
+        buffer[position++] = '\r';
+        buffer[position++] = '\n';
+    }
+
+    private void put(byte b) throws IOException {
+        ensure(1);
+        buffer[position++] = b;
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (position == buffer.length) {
+                flush();
+            }
+            int length = Math.min(buffer.length - position, bytes.length
+                    - offset);
+            System.arraycopy(bytes, offset, buffer, position, length);
+            position += length;
+            offset += length;
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.length - position < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the encoded bytes to the channel and empties the buffer.
+     */
+    private void flush() throws IOException {
+        ByteBuffer written = ByteBuffer.wrap(buffer, 0, position);
+        while (written.hasRemaining()) {
+            channel.write(written);
+        }
+        position = 0;
+    }
+}
@@ -0,0 +1,92 @@
+package org.vaadin.risto.mockupcontainer;
+
+import com.vaadin.data.Container.Filter;
+
+/**
+ * The calls of a {@link MockupContainer} that are counted and timed by its
+ * {@link AccessMetrics} and written to access traces. Each constant
+ * corresponds to the container method of the same name. New constants are
+ * added at the end, since traces refer to the operations by ordinal.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public enum ContainerOperation {
+
+    GET_ITEM,
+
+    GET_CONTAINER_PROPERTY,
+
+    /**
+     * {@link MockupContainer#getItems(int, int)}, the batch fetch.
+     */
+    GET_ITEMS,
+
+    /**
+     * {@link MockupContainer#getItemIds()}, all the item ids.
+     */
+    GET_ITEM_IDS,
+
+    /**
+     * {@link MockupContainer#getItemIds(int, int)}, a page of item ids.
+     */
+    GET_ITEM_IDS_RANGE,
+
+    SIZE,
+
+    CONTAINS_ID,
+
+    INDEX_OF_ID,
+
+    GET_ID_BY_INDEX,
+
+    NEXT_ITEM_ID,
+
+    PREV_ITEM_ID,
+
+    GET_CHILDREN,
+
+    GET_PARENT,
+
+    HAS_CHILDREN,
+
+    IS_ROOT,
+
+    ROOT_ITEM_IDS,
+
+    FIRST_ITEM_ID,
+
+    LAST_ITEM_ID,
+
+    IS_FIRST_ID,
+
+    IS_LAST_ID,
+
+    GET_CONTAINER_PROPERTY_IDS,
+
+    GET_TYPE,
+
+    ARE_CHILDREN_ALLOWED,
+
+    SORT,
+
+    /**
+     * {@link MockupContainer#addContainerFilter(Filter)} and the string
+     * filter shorthand. The filter itself is not recorded.
+     */
+    ADD_CONTAINER_FILTER,
+
+    /**
+     * {@link MockupContainer#removeContainerFilter(Filter)}. The filter
+     * itself is not recorded.
+     */
+    REMOVE_CONTAINER_FILTER,
+
+    /**
+     * {@link MockupContainer#removeContainerFilters(Object)}, the filters of
+     * one property.
+     */
+    REMOVE_CONTAINER_FILTERS,
+
+    REMOVE_ALL_CONTAINER_FILTERS
+}
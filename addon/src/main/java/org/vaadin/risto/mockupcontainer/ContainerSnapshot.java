@@ -0,0 +1,541 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>
+ * Reads and writes the binary snapshot files of
+ * {@link MockupContainer#saveSnapshot(File)}. All numbers are big-endian. A
+ * snapshot starts with
+ * </p>
+ * 
+ * <ul>
+ * <li>the magic number and the format version, as ints</li>
+ * <li>the length of the header, as an int</li>
+ * <li>the header: the item count, the number of children, the seed, the
+ * number of generated properties, the dictionary of the string values, the
+ * description of each column and the offset of the bitmap of the removed
+ * items if any were removed</li>
+ * </ul>
+ * 
+ * <p>
+ * The data sections of the columns follow, each starting at a multiple of
+ * eight bytes. The codes of a string column are one, two or four bytes per
+ * row depending on the size of the dictionary, exactly as
+ * {@link OffHeapColumn} keeps them. A typed property of one of the
+ * {@link ValueGenerators} has a section of raw values, in the layout of
+ * {@link MappedColumn}, and a bitmap of its null rows if it has any. Its
+ * generator is written in the header as a type tag and its parameters.
+ * Opening a snapshot maps all these sections read-only instead of reading
+ * them. Only the typed properties of other generators are kept in the header
+ * in Java serialized form and copied to the heap on open.
+ * </p>
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+final class ContainerSnapshot {
+
+    static final int MAGIC = 0x4d43534e;
+
+    /**
+     * The current version. Version 1 snapshots, which have no primitive
+     * columns, and version 2 snapshots, which have no removed items, are
+     * still read.
+     */
+    static final int VERSION = 3;
+
+    private static final int PREAMBLE_LENGTH = 12;
+
+    private static final int COPY_BUFFER_SIZE = 1 << 20;
+
+    private static final byte CODED_COLUMN = 0;
+
+    private static final byte TYPED_COLUMN = 1;
+
+    private static final byte PRIMITIVE_COLUMN = 2;
+
+    int itemCount;
+
+    int numberOfChildren;
+
+    long seed;
+
+    int propertyCount;
+
+    String[] propertyIds;
+
+    ValueGenerator<?>[] generators;
+
+    Column[] columns;
+
+    /**
+     * The removed items, or null if none were removed.
+     */
+    RowBitmap removedRows;
+
+    private ContainerSnapshot() {
+    }
+
+    /**
+     * Writes the current contents of a container, including any
+     * modifications and removed items. The order and filters of the
+     * container are not saved.
+     * 
+     * @param container
+     * @param file
+     * @throws IOException
+     */
+    static void write(MockupContainer container, File file) throws IOException {
+        int itemCount = container.getItemCount();
+        int columnCount = container.getPropertyIds().size();
+        Dictionary dictionary = sharedDictionary(container, columnCount);
+        Column[] codedColumns = new Column[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+            if (container.getGenerator(column) == null) {
+                codedColumns[column] = container.getColumn(column);
+            }
+        }
+        if (dictionary == null) {
+            dictionary = new Dictionary();
+            for (int column = 0; column < columnCount; column++) {
+                if (container.getGenerator(column) == null) {
+                    codedColumns[column] = encode(container, column,
+                            dictionary);
+                }
+            }
+        }
+        PrimitiveColumn[] primitiveColumns = new PrimitiveColumn[columnCount];
+        boolean[] hasNulls = new boolean[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+            ValueGenerator<?> generator = container.getGenerator(column);
+            if (generator != null && ValueGenerators.getTag(generator) != 0) {
+                primitiveColumns[column] = (PrimitiveColumn) typedColumn(
+                        container, column);
+                hasNulls[column] = hasNulls(primitiveColumns[column],
+                        itemCount);
+                checkMappable(MappedColumn.valuesLength(
+                        ValueGenerators.getTag(generator), itemCount),
+                        itemCount);
+            }
+        }
+        int width = CodedColumn.codeWidth(dictionary.size());
+        checkMappable((long) itemCount * width, itemCount);
+        long columnLength = align((long) itemCount * width);
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(itemCount);
+        header.writeInt(container.getNumberOfChildren());
+        header.writeLong(container.getSeed());
+        header.writeInt(container.getPropertyCount());
+        header.writeInt(dictionary.size());
+        for (int code = 0; code < dictionary.size(); code++) {
+            Object value = dictionary.decode(code);
+            header.writeBoolean(value != null);
+            if (value != null) {
+                header.writeUTF(value.toString());
+            }
+        }
+        header.writeInt(columnCount);
+        long offset = 0;
+        for (int column = 0; column < columnCount; column++) {
+            header.writeUTF(container.getPropertyId(column));
+            if (codedColumns[column] != null) {
+                header.writeByte(CODED_COLUMN);
+                header.writeByte(width);
+                header.writeLong(offset);
+                offset += columnLength;
+            } else if (primitiveColumns[column] != null) {
+                ValueGenerator<?> generator = container.getGenerator(column);
+                header.writeByte(PRIMITIVE_COLUMN);
+                ValueGenerators.write(generator, header);
+                header.writeLong(offset);
+                offset += align(MappedColumn.valuesLength(
+                        ValueGenerators.getTag(generator), itemCount));
+                header.writeBoolean(hasNulls[column]);
+                if (hasNulls[column]) {
+                    header.writeLong(offset);
+                    offset += MappedColumn.nullsLength(itemCount);
+                }
+            } else {
+                header.writeByte(TYPED_COLUMN);
+                byte[] typed = serialize(container.getGenerator(column),
+                        typedColumn(container, column));
+                header.writeInt(typed.length);
+                header.write(typed);
+            }
+        }
+        RowBitmap removedRows = container.getRemovedRows();
+        header.writeBoolean(removedRows != null);
+        if (removedRows != null) {
+            removedRows = removedRows.copyOf(itemCount);
+            header.writeLong(offset);
+        }
+        header.close();
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(0);
+            FileChannel channel = randomAccessFile.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(headerBytes.size());
+            writeFully(channel, buffer, headerBytes.toByteArray());
+            padToAlignment(channel, buffer,
+                    PREAMBLE_LENGTH + headerBytes.size());
+
+            for (int column = 0; column < columnCount; column++) {
+                if (codedColumns[column] != null) {
+                    writeCodes(channel, buffer,
+                            (CodedColumn) codedColumns[column], itemCount,
+                            width);
+                } else if (primitiveColumns[column] != null) {
+                    writeValues(channel, buffer, primitiveColumns[column],
+                            ValueGenerators.getTag(container
+                                    .getGenerator(column)), itemCount);
+                    if (hasNulls[column]) {
+                        writeBits(channel, buffer, primitiveColumns[column],
+                                itemCount, true);
+                    }
+                }
+            }
+            if (removedRows != null) {
+                for (long word : removedRows.getWords()) {
+                    if (buffer.remaining() < 8) {
+                        flush(channel, buffer);
+                    }
+                    buffer.putLong(word);
+                }
+            }
+            flush(channel, buffer);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static void checkMappable(long length, int itemCount) {
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A column of " + itemCount
+                    + " rows doesn't fit in a single mapping");
+        }
+    }
+
+    private static boolean hasNulls(PrimitiveColumn column, int size) {
+        for (int row = 0; row < size; row++) {
+            if (column.isNull(row)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the dictionary shared by all the string columns of the
+     *         container, or null if they are not dictionary coded
+     */
+    private static Dictionary sharedDictionary(MockupContainer container,
+            int columnCount) {
+        Dictionary dictionary = null;
+        for (int column = 0; column < columnCount; column++) {
+            if (container.getGenerator(column) != null) {
+                continue;
+            }
+            Column storedColumn = container.getColumn(column);
+            if (!(storedColumn instanceof CodedColumn)) {
+                return null;
+            }
+            Dictionary columnDictionary = ((CodedColumn) storedColumn)
+                    .getDictionary();
+            if (dictionary != null && dictionary != columnDictionary) {
+                return null;
+            }
+            dictionary = columnDictionary;
+        }
+        return dictionary != null ? dictionary : new Dictionary();
+    }
+
+    private static CodedColumn encode(MockupContainer container, int column,
+            Dictionary dictionary) {
+        int itemCount = container.getItemCount();
+        DictionaryColumn coded = new DictionaryColumn(dictionary, itemCount);
+        for (int row = 0; row < itemCount; row++) {
+            coded.set(row, container.getValueAt(row, column));
+        }
+        return coded;
+    }
+
+    private static Column typedColumn(MockupContainer container, int column) {
+        Column storedColumn = container.getColumn(column);
+        if (storedColumn != null) {
+            return storedColumn;
+        }
+        int itemCount = container.getItemCount();
+        Column copy = container.getGenerator(column).createColumn(itemCount);
+        for (int row = 0; row < itemCount; row++) {
+            copy.set(row, container.getValueAt(row, column));
+        }
+        return copy;
+    }
+
+    private static byte[] serialize(ValueGenerator<?> generator, Column column)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(generator);
+        out.writeObject(column);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static void writeCodes(FileChannel channel, ByteBuffer buffer,
+            CodedColumn column, int size, int width) throws IOException {
+        for (int row = 0; row < size; row++) {
+            if (buffer.remaining() < width) {
+                flush(channel, buffer);
+            }
+            int code = column.getCode(row);
+            switch (width) {
+            case 1:
+                buffer.put((byte) code);
+                break;
+            case 2:
+                buffer.putShort((short) code);
+                break;
+            default:
+                buffer.putInt(code);
+            }
+        }
+        padToAlignment(channel, buffer, (long) size * width);
+    }
+
+    private static void writeValues(FileChannel channel, ByteBuffer buffer,
+            PrimitiveColumn column, byte tag, int size) throws IOException {
+        if (tag == ValueGenerators.BOOLEANS) {
+            writeBits(channel, buffer, column, size, false);
+            return;
+        }
+        int width = (int) MappedColumn.valuesLength(tag, 1);
+        for (int row = 0; row < size; row++) {
+            if (buffer.remaining() < width) {
+                flush(channel, buffer);
+            }
+            long bits = column.getBits(row);
+            switch (width) {
+            case 2:
+                buffer.putShort((short) bits);
+                break;
+            case 4:
+                buffer.putInt((int) bits);
+                break;
+            default:
+                buffer.putLong(bits);
+            }
+        }
+        padToAlignment(channel, buffer, (long) size * width);
+    }
+
+    /**
+     * Writes the boolean values or the null flags of a column as bits packed
+     * into longs, which are always aligned.
+     */
+    private static void writeBits(FileChannel channel, ByteBuffer buffer,
+            PrimitiveColumn column, int size, boolean nullFlags)
+            throws IOException {
+        for (int first = 0; first < size; first += 64) {
+            long word = 0;
+            for (int row = first; row < Math.min(size, first + 64); row++) {
+                if (nullFlags ? column.isNull(row) : column.getBits(row) != 0) {
+                    word |= 1L << row;
+                }
+            }
+            if (buffer.remaining() < 8) {
+                flush(channel, buffer);
+            }
+            buffer.putLong(word);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer,
+            byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush(channel, buffer);
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private static void padToAlignment(FileChannel channel, ByteBuffer buffer,
+            long written) throws IOException {
+        writeFully(channel, buffer, new byte[(int) (align(written) - written)]);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer)
+            throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static long align(long length) {
+        return (length + 7) & ~7L;
+    }
+
+    /**
+     * Opens a snapshot. The codes of the string columns and the values of the
+     * primitive typed columns are mapped read-only and stay valid after the
+     * file is closed.
+     * 
+     * @param file
+     * @return the contents of the snapshot
+     * @throws IOException
+     *             if the file cannot be read or is not a valid snapshot
+     */
+    static ContainerSnapshot read(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_LENGTH);
+            readFully(channel, preamble, 0);
+            if (preamble.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not a container snapshot");
+            }
+            int version = preamble.getInt(4);
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported snapshot version "
+                        + version);
+            }
+            int headerLength = preamble.getInt(8);
+            if (headerLength < 0
+                    || PREAMBLE_LENGTH + (long) headerLength > channel.size()) {
+                throw new IOException("Truncated snapshot " + file);
+            }
+            ByteBuffer headerBytes = ByteBuffer.allocate(headerLength);
+            readFully(channel, headerBytes, PREAMBLE_LENGTH);
+            DataInputStream header = new DataInputStream(
+                    new ByteArrayInputStream(headerBytes.array()));
+
+            ContainerSnapshot snapshot = new ContainerSnapshot();
+            snapshot.itemCount = header.readInt();
+            snapshot.numberOfChildren = header.readInt();
+            snapshot.seed = header.readLong();
+            snapshot.propertyCount = header.readInt();
+            Object[] values = new Object[header.readInt()];
+            for (int code = 0; code < values.length; code++) {
+                values[code] = header.readBoolean() ? header.readUTF() : null;
+            }
+            Dictionary dictionary = new Dictionary(values);
+
+            int columnCount = header.readInt();
+            snapshot.propertyIds = new String[columnCount];
+            snapshot.generators = new ValueGenerator<?>[columnCount];
+            snapshot.columns = new Column[columnCount];
+            long dataStart = align(PREAMBLE_LENGTH + (long) headerLength);
+            for (int column = 0; column < columnCount; column++) {
+                snapshot.propertyIds[column] = header.readUTF();
+                byte kind = header.readByte();
+                if (kind == CODED_COLUMN) {
+                    int width = header.readByte();
+                    if (width != 1 && width != 2 && width != 4) {
+                        throw new IOException("Invalid code width " + width
+                                + " in snapshot " + file);
+                    }
+                    ByteBuffer codes = map(channel, dataStart,
+                            header.readLong(), (long) snapshot.itemCount
+                                    * width, file);
+                    snapshot.columns[column] = new OffHeapColumn(dictionary,
+                            snapshot.itemCount, width, codes);
+                } else if (kind == PRIMITIVE_COLUMN) {
+                    ValueGenerator<?> generator = ValueGenerators.read(header);
+                    ByteBuffer columnValues = map(channel, dataStart,
+                            header.readLong(), MappedColumn.valuesLength(
+                                    ValueGenerators.getTag(generator),
+                                    snapshot.itemCount), file);
+                    ByteBuffer nulls = header.readBoolean() ? map(channel,
+                            dataStart, header.readLong(),
+                            MappedColumn.nullsLength(snapshot.itemCount),
+                            file) : null;
+                    snapshot.generators[column] = generator;
+                    snapshot.columns[column] = new MappedColumn(generator,
+                            snapshot.itemCount, columnValues, nulls);
+                } else if (kind == TYPED_COLUMN) {
+                    byte[] typed = new byte[header.readInt()];
+                    header.readFully(typed);
+                    readTyped(snapshot, column, typed);
+                } else {
+                    throw new IOException("Unknown column kind " + kind
+                            + " in snapshot " + file);
+                }
+            }
+            if (version >= 3 && header.readBoolean()) {
+                ByteBuffer removed = map(channel, dataStart,
+                        header.readLong(),
+                        MappedColumn.nullsLength(snapshot.itemCount), file);
+                RowBitmap removedRows = new RowBitmap(snapshot.itemCount,
+                        false);
+                removed.asLongBuffer().get(removedRows.getWords());
+                // drops any bits past the last row
+                snapshot.removedRows = removedRows.copyOf(snapshot.itemCount);
+            }
+            return snapshot;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Maps a data section read-only.
+     * 
+     * @param dataStart
+     *            the position of the first data section
+     * @param offset
+     *            the offset of the section from the first data section
+     */
+    private static ByteBuffer map(FileChannel channel, long dataStart,
+            long offset, long length, File file) throws IOException {
+        if (offset < 0 || dataStart + offset + length > channel.size()) {
+            throw new IOException("Truncated snapshot " + file);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, dataStart + offset,
+                length);
+    }
+
+    private static void readTyped(ContainerSnapshot snapshot, int column,
+            byte[] typed) throws IOException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+                typed));
+        try {
+            snapshot.generators[column] = (ValueGenerator<?>) in.readObject();
+            snapshot.columns[column] = (Column) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Cannot read the typed property "
+                    + snapshot.propertyIds[column], e);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer,
+            long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of snapshot");
+            }
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Computes the sorted order of the rows of a {@link MockupContainer} without
+ * moving any items. Every sort property is first reduced to value ranks: the
+ * distinct values of the column are sorted once, and each row is keyed by the
+ * rank of its value. For dictionary encoded columns the ranks are computed per
+ * code, so the values of the rows are never even decoded, and primitive
+ * columns are ranked by their primitive sort keys.
+ * </p>
+ * 
+ * <p>
+ * The rows are then ordered with one primitive {@link ParallelSort} per sort
+ * property, starting from the least significant one. Each key packs the rank
+ * and the current position of the row into a single long, which makes every
+ * pass stable.
+ * </p>
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+final class ContainerSorter {
+
+    private ContainerSorter() {
+        // for static use only
+    }
+
+    /**
+     * @param container
+     * @param columns
+     *            the indexes of the sort properties, most significant first
+     * @param ascending
+     *            the sort direction of each sort property
+     * @param parallelism
+     *            the maximum number of threads to use
+     * @return the item ids in sorted order
+     */
+    static int[] sort(MockupContainer container, int[] columns,
+            boolean[] ascending, int parallelism) {
+        int size = container.getItemCount();
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+
+        long[] keys = new long[size];
+        for (int c = columns.length - 1; c >= 0; c--) {
+            Ranks ranks = rank(container, columns[c]);
+            boolean reverse = c < ascending.length && !ascending[c];
+            for (int i = 0; i < size; i++) {
+                int rank = ranks.rank(order[i]);
+                if (reverse) {
+                    rank = ranks.count() - 1 - rank;
+                }
+                keys[i] = ((long) rank << 32) | i;
+            }
+
+            ParallelSort.sort(keys, parallelism);
+
+            int[] sorted = new int[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = order[(int) keys[i]];
+            }
+            order = sorted;
+        }
+        return order;
+    }
+
+    /**
+     * Merges rows appended to the container into an existing sort order
+     * without sorting all the rows again. Only the appended rows are sorted;
+     * each of them is then placed with a binary search, so adding
+     * <code>k</code> rows to <code>n</code> costs
+     * <code>O(n + k log n)</code> comparisons and copies. Rows with equal
+     * values stay in the order of their ids, as with
+     * {@link #sort(MockupContainer, int[], boolean[], int)}.
+     * 
+     * @param container
+     * @param order
+     *            the sorted ids of the rows before <code>firstRow</code>
+     * @param firstRow
+     *            the first appended row
+     * @param columns
+     *            the indexes of the sort properties, most significant first
+     * @param ascending
+     *            the sort direction of each sort property
+     * @return the item ids of all the rows in sorted order
+     */
+    static int[] insert(MockupContainer container, int[] order, int firstRow,
+            int[] columns, boolean[] ascending) {
+        int size = container.getItemCount();
+        RowComparator comparator = new RowComparator(container, columns,
+                ascending);
+        Integer[] added = new Integer[size - firstRow];
+        for (int i = 0; i < added.length; i++) {
+            added[i] = firstRow + i;
+        }
+        Arrays.sort(added, comparator);
+
+        int[] merged = new int[size];
+        int from = 0;
+        int index = 0;
+        for (Integer row : added) {
+            int low = from;
+            int high = order.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (comparator.compare(order[middle], row) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            System.arraycopy(order, from, merged, index, low - from);
+            index += low - from;
+            merged[index++] = row;
+            from = low;
+        }
+        System.arraycopy(order, from, merged, index, order.length - from);
+        return merged;
+    }
+
+    private static Ranks rank(MockupContainer container, int column) {
+        Column storedColumn = container.getColumn(column);
+        if (storedColumn instanceof CodedColumn) {
+            return new CodeRanks((CodedColumn) storedColumn);
+        } else if (storedColumn instanceof PrimitiveColumn) {
+            return rank((PrimitiveColumn) storedColumn,
+                    container.getItemCount());
+        }
+
+        int size = container.getItemCount();
+        Object[] values = new Object[size];
+        Map<Object, Integer> distinct = new HashMap<Object, Integer>();
+        for (int row = 0; row < size; row++) {
+            values[row] = container.getValueAt(row, column);
+            distinct.put(values[row], null);
+        }
+
+        List<Object> sortedValues = new ArrayList<Object>(distinct.keySet());
+        Collections.sort(sortedValues, ValueComparator.INSTANCE);
+        for (int i = 0; i < sortedValues.size(); i++) {
+            distinct.put(sortedValues.get(i), i);
+        }
+
+        int[] rowRanks = new int[size];
+        for (int row = 0; row < size; row++) {
+            rowRanks[row] = distinct.get(values[row]);
+        }
+        return new RowRanks(rowRanks, sortedValues.size());
+    }
+
+    /**
+     * Ranks a primitive column by its sort keys, without boxing. Nulls come
+     * first, as with {@link ValueComparator}.
+     */
+    private static Ranks rank(PrimitiveColumn column, int size) {
+        long[] distinct = new long[size];
+        int nonNull = 0;
+        for (int row = 0; row < size; row++) {
+            if (!column.isNull(row)) {
+                distinct[nonNull++] = column.sortKey(row);
+            }
+        }
+        Arrays.sort(distinct, 0, nonNull);
+        int count = 0;
+        for (int i = 0; i < nonNull; i++) {
+            if (count == 0 || distinct[i] != distinct[count - 1]) {
+                distinct[count++] = distinct[i];
+            }
+        }
+
+        int offset = nonNull < size ? 1 : 0;
+        int[] rowRanks = new int[size];
+        for (int row = 0; row < size; row++) {
+            if (!column.isNull(row)) {
+                rowRanks[row] = offset
+                        + Arrays.binarySearch(distinct, 0, count,
+                                column.sortKey(row));
+            }
+        }
+        return new RowRanks(rowRanks, count + offset);
+    }
+
+    private interface Ranks {
+
+        /**
+         * @return the rank of the value of the row, between zero and
+         *         {@link #count()}
+         */
+        int rank(int row);
+
+        /**
+         * @return the number of distinct ranks
+         */
+        int count();
+    }
+
+    private static class RowRanks implements Ranks {
+
+        private final int[] ranks;
+
+        private final int count;
+
+        RowRanks(int[] ranks, int count) {
+            this.ranks = ranks;
+            this.count = count;
+        }
+
+        @Override
+        public int rank(int row) {
+            return ranks[row];
+        }
+
+        @Override
+        public int count() {
+            return count;
+        }
+    }
+
+    /**
+     * Ranks the codes of the dictionary instead of the rows. Equal values
+     * with different codes get the same rank.
+     */
+    private static class CodeRanks implements Ranks {
+
+        private final CodedColumn column;
+
+        private final int[] codeRanks;
+
+        private final int count;
+
+        CodeRanks(CodedColumn column) {
+            this.column = column;
+            final Dictionary dictionary = column.getDictionary();
+
+            List<Integer> codes = new ArrayList<Integer>(dictionary.size());
+            for (int code = 0; code < dictionary.size(); code++) {
+                codes.add(code);
+            }
+            Collections.sort(codes, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return ValueComparator.INSTANCE.compare(
+                            dictionary.decode(o1), dictionary.decode(o2));
+                }
+            });
+
+            codeRanks = new int[dictionary.size()];
+            int rank = -1;
+            Object previous = null;
+            for (int i = 0; i < codes.size(); i++) {
+                Object value = dictionary.decode(codes.get(i));
+                if (i == 0 || ValueComparator.INSTANCE.compare(previous,
+                        value) != 0) {
+                    rank++;
+                }
+                codeRanks[codes.get(i)] = rank;
+                previous = value;
+            }
+            count = rank + 1;
+        }
+
+        @Override
+        public int rank(int row) {
+            return codeRanks[column.getCode(row)];
+        }
+
+        @Override
+        public int count() {
+            return count;
+        }
+    }
+
+    /**
+     * Compares rows by the values of the sort properties and then by their
+     * ids, which is the order that the rank based sort produces.
+     */
+    private static class RowComparator implements Comparator<Integer> {
+
+        private final MockupContainer container;
+
+        private final int[] columns;
+
+        private final boolean[] ascending;
+
+        RowComparator(MockupContainer container, int[] columns,
+                boolean[] ascending) {
+            this.container = container;
+            this.columns = columns;
+            this.ascending = ascending;
+        }
+
+        @Override
+        public int compare(Integer row1, Integer row2) {
+            for (int c = 0; c < columns.length; c++) {
+                int result = ValueComparator.INSTANCE.compare(
+                        container.getValueAt(row1, columns[c]),
+                        container.getValueAt(row2, columns[c]));
+                if (result != 0) {
+                    return c < ascending.length && !ascending[c] ? -result
+                            : result;
+                }
+            }
+            return row1.compareTo(row2);
+        }
+    }
+
+    /**
+     * Orders nulls first, then mutually comparable values in their natural
+     * order and anything else by the string representation.
+     */
+    static class ValueComparator implements Comparator<Object>, Serializable {
+
+        private static final long serialVersionUID = 2049577233632716498L;
+
+        static final ValueComparator INSTANCE = new ValueComparator();
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        @Override
+        public int compare(Object o1, Object o2) {
+            if (o1 == o2) {
+                return 0;
+            } else if (o1 == null) {
+                return -1;
+            } else if (o2 == null) {
+                return 1;
+            } else if (o1 instanceof Comparable
+                    && o1.getClass().isInstance(o2)) {
+                return ((Comparable) o1).compareTo(o2);
+            }
+            return o1.toString().compareTo(o2.toString());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.util.Date;
+
+/**
+ * A {@link LongColumn} of {@link Date Dates}, stored as milliseconds since
+ * the epoch. Every read returns a new <code>Date</code>, so modifying a
+ * returned date doesn't change the column.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+class DateColumn extends LongColumn {
+
+    private static final long serialVersionUID = 1436542810573187962L;
+
+    DateColumn(int size) {
+        super(size);
+    }
+
+    private DateColumn(long[] values) {
+        super(values);
+    }
+
+    @Override
+    LongColumn create(long[] values) {
+        return new DateColumn(values);
+    }
+
+    @Override
+    Object box(int row) {
+        return new Date(getLong(row));
+    }
+
+    @Override
+    void store(int row, Object value) {
+        setLong(row, ((Date) value).getTime());
+    }
+}
@@ -1,5 +1,6 @@
 package org.vaadin.risto.mockupcontainer;
 
+import java.util.Arrays;
 import java.util.Random;
 
 /**
@@ -9,13 +10,20 @@ import java.util.Random;
  * @author Risto Yrjänä / Vaadin Ltd.
  * 
  */
-public class DefaultDataSet implements MockupDataSet {
+public class DefaultDataSet implements VocabularyDataSet {
+
+    private static final long serialVersionUID = 5271337140496411187L;
+
     private static final String DEFAULTDATASTRING = "Lorem ipsum dolor sit amet consectetur adipiscing elit Aenean nunc metus auctor a euismod ac lacinia nec lectus Fusce elit nulla sagittis et cursus non sodales vitae mauris Phasellus sollicitudin aliquam commodo Donec sit amet mattis lacus Maecenas ut elit lectus vel mattis enim Suspendisse metus arcu sagittis et gravida sed semper ut nunc Ut magna tortor luctus ut hendrerit sed dapibus vel ligula Donec ac arcu vel purus bibendum vulputate Cras eu velit ligula Aenean eget sem magna Donec purus risus fermentum nec dapibus eget molestie at ligula Etiam viverra est nec est molestie placerat Donec est ante blandit vitae fringilla a porttitor vitae magna Quisque a felis vel nulla feugiat accumsan Suspendisse fringilla accumsan enim sit amet mattis Nulla at commodo est In hac habitasse platea dictumst Vivamus quis turpis sapien Proin bibendum leo sollicitudin urna egestas adipiscing Vivamus varius mauris eget eros vulputate ut aliquam sapien dignissim Praesent hendrerit justo sit amet elit interdum auctor Nam nec nibh arcu Suspendisse potenti Sed enim eros rhoncus a iaculis suscipit gravida porttitor tortor Praesent pretium auctor ultrices Nunc bibendum metus facilisis justo ullamcorper eget ornare elit gravida Aliquam tortor ante volutpat vel elementum nec hendrerit a odio Aenean bibendum nisi vitae magna elementum et malesuada lacus adipiscing Maecenas adipiscing euismod nibh vel consequat neque condimentum at Donec fermentum aliquam bibendum Nam eleifend purus orci Aenean gravida lectus id varius feugiat enim nisl consectetur mauris at fermentum elit ante eget mauris Nulla in metus sed lorem porta laoreet Nunc lobortis imperdiet lorem nec vestibulum ";
+
+    private static final String[] DEFAULT_VOCABULARY = DEFAULTDATASTRING
+            .split(" ");
+
     private final Random r;
     private final String[] dataSet;
 
     public DefaultDataSet() {
-        this(DEFAULTDATASTRING.split(" "));
+        this(DEFAULT_VOCABULARY.clone());
     }
 
     /**
@@ -23,7 +31,17 @@ public class DefaultDataSet implements MockupDataSet {
      *            the ids and values will be randomised from this array
      */
     public DefaultDataSet(String[] dataSet) {
-        r = new Random(System.currentTimeMillis());
+        this(dataSet, System.currentTimeMillis());
+    }
+
+    /**
+     * @param dataSet
+     *            the ids and values will be randomised from this array
+     * @param seed
+     *            the seed for {@link #nextId()} and {@link #nextValue()}
+     */
+    public DefaultDataSet(String[] dataSet, long seed) {
+        r = new Random(seed);
         this.dataSet = dataSet;
     }
 
@@ -35,7 +53,41 @@ public class DefaultDataSet implements MockupDataSet {
         return getInternalDataSet()[r.nextInt(getInternalDataSet().length)];
     }
 
+    public String getId(long random) {
+        return getInternalDataSet()[MockupRandom.nextInt(random,
+                getInternalDataSet().length)];
+    }
+
+    public String getValue(long random) {
+        return getInternalDataSet()[getValueIndex(random)];
+    }
+
+    public int getVocabularySize() {
+        return getInternalDataSet().length;
+    }
+
+    public String getVocabularyValue(int index) {
+        return getInternalDataSet()[index];
+    }
+
+    public int getValueIndex(long random) {
+        return MockupRandom.nextInt(random, getInternalDataSet().length);
+    }
+
     protected String[] getInternalDataSet() {
         return dataSet;
     }
-}
\ No newline at end of file
+
+    /**
+     * @param dataSet
+     * @return true if the data set is equivalent to a new
+     *         <code>DefaultDataSet</code> for the purpose of generating
+     *         deterministic contents
+     */
+    static boolean isDefault(MockupDataSet dataSet) {
+        return dataSet != null
+                && dataSet.getClass() == DefaultDataSet.class
+                && Arrays.equals(((DefaultDataSet) dataSet).dataSet,
+                        DEFAULT_VOCABULARY);
+    }
+}
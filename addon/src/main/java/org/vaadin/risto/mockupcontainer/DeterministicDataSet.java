@@ -0,0 +1,34 @@
+package org.vaadin.risto.mockupcontainer;
+
+/**
+ * A {@link MockupDataSet} that can also return ids and values for given random
+ * bits instead of drawing them from an internal generator. The
+ * MockupContainer uses these methods, together with {@link MockupRandom}, to
+ * compute every cell directly from its coordinates, which makes the contents
+ * of the container reproducible and independent of the order of access.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public interface DeterministicDataSet extends MockupDataSet {
+
+    /**
+     * Retrieve a String that can be used as a property id. The same random
+     * bits must always return the same id.
+     * 
+     * @param random
+     *            random bits from {@link MockupRandom}
+     * @return
+     */
+    public String getId(long random);
+
+    /**
+     * Retrieve a String that can be used as a property value. The same random
+     * bits must always return the same value.
+     * 
+     * @param random
+     *            random bits from {@link MockupRandom}
+     * @return
+     */
+    public String getValue(long random);
+}
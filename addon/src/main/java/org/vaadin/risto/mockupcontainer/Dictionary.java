@@ -0,0 +1,84 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The distinct values of the {@link DictionaryColumn DictionaryColumns} of a
+ * container. Each value is identified by a small integer code. The dictionary
+ * starts out with the vocabulary of the data set, so generated values can be
+ * encoded without any lookups; values set by the user are appended when they
+ * are first seen.
+ * 
+ * Decoding doesn't lock. Encoding is synchronized, and a new value is stored
+ * before the array that contains it is published.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+class Dictionary implements Serializable {
+
+    private static final long serialVersionUID = -5219325958451315489L;
+
+    private volatile Object[] values;
+
+    private volatile int size;
+
+    private transient Map<Object, Integer> codes;
+
+    Dictionary() {
+        values = new Object[16];
+    }
+
+    Dictionary(VocabularyDataSet dataSet) {
+        int vocabularySize = dataSet.getVocabularySize();
+        Object[] vocabulary = new Object[Math.max(vocabularySize, 16)];
+        for (int i = 0; i < vocabularySize; i++) {
+            vocabulary[i] = dataSet.getVocabularyValue(i);
+        }
+        values = vocabulary;
+        size = vocabularySize;
+    }
+
+    /**
+     * @param values
+     *            the values of the codes, which may contain duplicates
+     */
+    Dictionary(Object[] values) {
+        this.values = Arrays.copyOf(values, Math.max(values.length, 16));
+        size = values.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Object decode(int code) {
+        return values[code];
+    }
+
+    synchronized int encode(Object value) {
+        if (codes == null) {
+            codes = new HashMap<Object, Integer>(size * 2);
+            for (int i = size - 1; i >= 0; i--) {
+                codes.put(values[i], i);
+            }
+        }
+
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = size;
+            Object[] current = values;
+            if (code == current.length) {
+                current = Arrays.copyOf(current, code * 2);
+            }
+            current[code] = value;
+            values = current;
+            size = code + 1;
+            codes.put(value, code);
+        }
+        return code;
+    }
+}
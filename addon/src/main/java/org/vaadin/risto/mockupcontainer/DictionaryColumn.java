@@ -0,0 +1,127 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.util.Arrays;
+
+/**
+ * A {@link CodedColumn} that keeps its codes on the heap, in the narrowest
+ * primitive array that fits the dictionary: a byte per cell for up to 256
+ * distinct values, a short for up to 65536 and an int beyond that. The array
+ * is widened automatically if the dictionary grows. Reads don't lock; a
+ * reader racing with a widening write sees the value from before the write.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+class DictionaryColumn extends CodedColumn {
+
+    private static final long serialVersionUID = 6463018385398232869L;
+
+    private final int size;
+
+    private volatile byte[] byteCodes;
+
+    private volatile short[] shortCodes;
+
+    private volatile int[] intCodes;
+
+    DictionaryColumn(Dictionary dictionary, int size) {
+        super(dictionary);
+        this.size = size;
+        switch (codeWidth(dictionary.size())) {
+        case 1:
+            byteCodes = new byte[size];
+            break;
+        case 2:
+            shortCodes = new short[size];
+            break;
+        default:
+            intCodes = new int[size];
+        }
+    }
+
+    private DictionaryColumn(Dictionary dictionary, int size,
+            byte[] byteCodes, short[] shortCodes, int[] intCodes) {
+        super(dictionary);
+        this.size = size;
+        this.byteCodes = byteCodes;
+        this.shortCodes = shortCodes;
+        this.intCodes = intCodes;
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    Column resize(int size) {
+        byte[] bytes = byteCodes;
+        if (bytes != null) {
+            return new DictionaryColumn(getDictionary(), size, Arrays.copyOf(
+                    bytes, size), null, null);
+        }
+        short[] shorts = shortCodes;
+        if (shorts != null) {
+            return new DictionaryColumn(getDictionary(), size, null,
+                    Arrays.copyOf(shorts, size), null);
+        }
+        return new DictionaryColumn(getDictionary(), size, null, null,
+                Arrays.copyOf(intCodes, size));
+    }
+
+    @Override
+    int getCode(int row) {
+        byte[] bytes = byteCodes;
+        if (bytes != null) {
+            return bytes[row] & 0xff;
+        }
+        short[] shorts = shortCodes;
+        if (shorts != null) {
+            return shorts[row] & 0xffff;
+        }
+        return intCodes[row];
+    }
+
+    @Override
+    void setCode(int row, int code) {
+        if (byteCodes != null) {
+            if (code < BYTE_CODES) {
+                byteCodes[row] = (byte) code;
+                return;
+            }
+            widen();
+        }
+        if (shortCodes != null) {
+            if (code < SHORT_CODES) {
+                shortCodes[row] = (short) code;
+                return;
+            }
+            widen();
+        }
+        intCodes[row] = code;
+    }
+
+    /**
+     * Must be called by a single writer. The wider codes are published before
+     * the narrower ones are dropped, so lock-free readers always find one.
+     */
+    private void widen() {
+        byte[] bytes = byteCodes;
+        if (bytes != null) {
+            short[] widened = new short[size];
+            for (int i = 0; i < size; i++) {
+                widened[i] = (short) (bytes[i] & 0xff);
+            }
+            shortCodes = widened;
+            byteCodes = null;
+        } else {
+            short[] shorts = shortCodes;
+            int[] widened = new int[size];
+            for (int i = 0; i < size; i++) {
+                widened[i] = shorts[i] & 0xffff;
+            }
+            intCodes = widened;
+            shortCodes = null;
+        }
+    }
+}
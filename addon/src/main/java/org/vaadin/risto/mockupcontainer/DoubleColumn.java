@@ -0,0 +1,67 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.util.Arrays;
+
+/**
+ * A {@link PrimitiveColumn} of <code>double</code> values.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+class DoubleColumn extends PrimitiveColumn {
+
+    private static final long serialVersionUID = 7722542117394009478L;
+
+    private final double[] values;
+
+    DoubleColumn(int size) {
+        values = new double[size];
+    }
+
+    private DoubleColumn(double[] values) {
+        this.values = values;
+    }
+
+    double getDouble(int row) {
+        return values[row];
+    }
+
+    void setDouble(int row, double value) {
+        values[row] = value;
+    }
+
+    @Override
+    Object box(int row) {
+        return Double.valueOf(values[row]);
+    }
+
+    @Override
+    void store(int row, Object value) {
+        values[row] = (Double) value;
+    }
+
+    /**
+     * Flips the magnitude bits of negative numbers, so that the signed order
+     * of the bits is the order of {@link Double#compare(double, double)}.
+     */
+    @Override
+    long sortKey(int row) {
+        long bits = Double.doubleToLongBits(values[row]);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    @Override
+    long getBits(int row) {
+        return Double.doubleToRawLongBits(values[row]);
+    }
+
+    @Override
+    int size() {
+        return values.length;
+    }
+
+    @Override
+    PrimitiveColumn copyOf(int size) {
+        return new DoubleColumn(Arrays.copyOf(values, size));
+    }
+}
@@ -0,0 +1,66 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.util.Arrays;
+
+/**
+ * A {@link PrimitiveColumn} of enum constants, stored as their ordinals.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+class EnumColumn extends PrimitiveColumn {
+
+    private static final long serialVersionUID = -3263656128616983719L;
+
+    private final Enum<?>[] constants;
+
+    private final short[] ordinals;
+
+    EnumColumn(Enum<?>[] constants, int size) {
+        this.constants = constants;
+        ordinals = new short[size];
+    }
+
+    private EnumColumn(Enum<?>[] constants, short[] ordinals) {
+        this.constants = constants;
+        this.ordinals = ordinals;
+    }
+
+    int getOrdinal(int row) {
+        return ordinals[row];
+    }
+
+    void setOrdinal(int row, int ordinal) {
+        ordinals[row] = (short) ordinal;
+    }
+
+    @Override
+    Object box(int row) {
+        return constants[ordinals[row]];
+    }
+
+    @Override
+    void store(int row, Object value) {
+        ordinals[row] = (short) ((Enum<?>) value).ordinal();
+    }
+
+    @Override
+    long sortKey(int row) {
+        return ordinals[row];
+    }
+
+    @Override
+    long getBits(int row) {
+        return ordinals[row];
+    }
+
+    @Override
+    int size() {
+        return ordinals.length;
+    }
+
+    @Override
+    PrimitiveColumn copyOf(int size) {
+        return new EnumColumn(constants, Arrays.copyOf(ordinals, size));
+    }
+}
@@ -0,0 +1,23 @@
+package org.vaadin.risto.mockupcontainer;
+
+/**
+ * The file formats written by a {@link ContainerExporter}.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public enum ExportFormat {
+
+    /**
+     * Comma separated values as specified by RFC 4180, with an optional header
+     * row. Null values are written as empty fields.
+     */
+    CSV,
+
+    /**
+     * One JSON object per line, keyed by the property ids. Numbers and
+     * booleans are written as JSON literals, dates as ISO 8601 strings in UTC
+     * and everything else as strings.
+     */
+    JSON_LINES
+}
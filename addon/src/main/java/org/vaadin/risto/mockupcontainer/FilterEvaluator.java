@@ -0,0 +1,90 @@
+package org.vaadin.risto.mockupcontainer;
+
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.util.filter.AbstractJunctionFilter;
+import com.vaadin.data.util.filter.And;
+import com.vaadin.data.util.filter.Between;
+import com.vaadin.data.util.filter.Compare;
+import com.vaadin.data.util.filter.IsNull;
+import com.vaadin.data.util.filter.Like;
+import com.vaadin.data.util.filter.Not;
+import com.vaadin.data.util.filter.Or;
+import com.vaadin.data.util.filter.SimpleStringFilter;
+
+/**
+ * Evaluates container filters into {@link RowBitmap RowBitmaps}. The standard
+ * single-property filters ({@link Compare}, {@link SimpleStringFilter},
+ * {@link Like}, {@link Between} and {@link IsNull}) are answered from the
+ * {@link ColumnIndex} of the property, and {@link And}, {@link Or} and
+ * {@link Not} are evaluated as bitmap operations. Any other filter is
+ * evaluated row by row.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+final class FilterEvaluator {
+
+    private final MockupContainer container;
+
+    FilterEvaluator(MockupContainer container) {
+        this.container = container;
+    }
+
+    /**
+     * @param filter
+     * @return the rows that pass the filter
+     */
+    RowBitmap evaluate(Filter filter) {
+        int rows = container.getItemCount();
+
+        if (filter instanceof And || filter instanceof Or) {
+            boolean and = filter instanceof And;
+            RowBitmap result = new RowBitmap(rows, and);
+            for (Filter subFilter : ((AbstractJunctionFilter) filter)
+                    .getFilters()) {
+                if (and) {
+                    result.and(evaluate(subFilter));
+                } else {
+                    result.or(evaluate(subFilter));
+                }
+            }
+            return result;
+        } else if (filter instanceof Not) {
+            RowBitmap result = evaluate(((Not) filter).getFilter());
+            result.not();
+            return result;
+        }
+
+        Object propertyId = getFilteredPropertyId(filter);
+        if (propertyId != null) {
+            int column = container.indexOfProperty(propertyId);
+            if (column >= 0) {
+                return container.getColumnIndex(column).match(filter,
+                        propertyId);
+            }
+        }
+
+        RowBitmap result = new RowBitmap(rows, false);
+        for (int row = 0; row < rows; row++) {
+            if (filter.passesFilter(row, container.getUnfilteredItem(row))) {
+                result.set(row);
+            }
+        }
+        return result;
+    }
+
+    private static Object getFilteredPropertyId(Filter filter) {
+        if (filter instanceof Compare) {
+            return ((Compare) filter).getPropertyId();
+        } else if (filter instanceof SimpleStringFilter) {
+            return ((SimpleStringFilter) filter).getPropertyId();
+        } else if (filter instanceof Like) {
+            return ((Like) filter).getPropertyId();
+        } else if (filter instanceof Between) {
+            return ((Between) filter).getPropertyId();
+        } else if (filter instanceof IsNull) {
+            return ((IsNull) filter).getPropertyId();
+        }
+        return null;
+    }
+}
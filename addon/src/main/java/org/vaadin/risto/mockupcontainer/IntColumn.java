@@ -0,0 +1,62 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.util.Arrays;
+
+/**
+ * A {@link PrimitiveColumn} of <code>int</code> values.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+class IntColumn extends PrimitiveColumn {
+
+    private static final long serialVersionUID = 4329722311508467474L;
+
+    private final int[] values;
+
+    IntColumn(int size) {
+        values = new int[size];
+    }
+
+    private IntColumn(int[] values) {
+        this.values = values;
+    }
+
+    int getInt(int row) {
+        return values[row];
+    }
+
+    void setInt(int row, int value) {
+        values[row] = value;
+    }
+
+    @Override
+    Object box(int row) {
+        return Integer.valueOf(values[row]);
+    }
+
+    @Override
+    void store(int row, Object value) {
+        values[row] = (Integer) value;
+    }
+
+    @Override
+    long sortKey(int row) {
+        return values[row];
+    }
+
+    @Override
+    long getBits(int row) {
+        return values[row];
+    }
+
+    @Override
+    int size() {
+        return values.length;
+    }
+
+    @Override
+    PrimitiveColumn copyOf(int size) {
+        return new IntColumn(Arrays.copyOf(values, size));
+    }
+}
@@ -0,0 +1,30 @@
+package org.vaadin.risto.mockupcontainer;
+
+import com.vaadin.data.Container.ItemSetChangeEvent;
+
+/**
+ * An {@link ItemSetChangeEvent} fired when items are appended to a
+ * {@link MockupContainer}. Listeners that don't know about this event still
+ * get a normal item set change event. The added items have consecutive ids
+ * and indexes.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public interface ItemAddEvent extends ItemSetChangeEvent {
+
+    /**
+     * @return the id of the first added item
+     */
+    public Object getFirstItemId();
+
+    /**
+     * @return the index of the first added item
+     */
+    public int getFirstIndex();
+
+    /**
+     * @return the number of added items
+     */
+    public int getAddedItemsCount();
+}
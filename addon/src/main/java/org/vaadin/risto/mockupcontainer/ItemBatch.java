@@ -0,0 +1,78 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.vaadin.data.Item;
+
+/**
+ * A page of consecutive items of a {@link MockupContainer}, fetched in one
+ * call with {@link MockupContainer#getItems(int, int)}.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public final class ItemBatch implements Serializable {
+
+    private static final long serialVersionUID = 2484630542818467427L;
+
+    private final int startIndex;
+
+    private final List<Integer> itemIds;
+
+    private final Item[] items;
+
+    ItemBatch(int startIndex, List<Integer> itemIds, Item[] items) {
+        this.startIndex = startIndex;
+        this.itemIds = itemIds;
+        this.items = items;
+    }
+
+    /**
+     * @return the index of the first item of the batch in the container
+     */
+    public int getStartIndex() {
+        return startIndex;
+    }
+
+    /**
+     * @return the number of items in the batch
+     */
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * @return the item ids, in container order
+     */
+    public List<Integer> getItemIds() {
+        return itemIds;
+    }
+
+    /**
+     * @return the items, in the same order as the ids
+     */
+    public List<Item> getItems() {
+        return Collections.unmodifiableList(Arrays.asList(items));
+    }
+
+    /**
+     * @param index
+     *            the index of the item within the batch
+     * @return the id of the item
+     */
+    public Integer getItemId(int index) {
+        return itemIds.get(index);
+    }
+
+    /**
+     * @param index
+     *            the index of the item within the batch
+     * @return the item
+     */
+    public Item getItem(int index) {
+        return items[index];
+    }
+}
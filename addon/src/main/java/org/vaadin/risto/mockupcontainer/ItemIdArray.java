@@ -0,0 +1,94 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list view of item ids in an arbitrary order, backed by an array of
+ * ids and the inverse array of their indexes. <code>get</code>,
+ * <code>contains</code>, <code>indexOf</code> and <code>subList</code> are
+ * constant time operations. The arrays are shared, not copied.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+class ItemIdArray extends AbstractList<Integer> implements RandomAccess,
+        Serializable {
+
+    private static final long serialVersionUID = -6934167096856826848L;
+
+    private final int[] ids;
+
+    private final int[] indexes;
+
+    private final int offset;
+
+    private final int size;
+
+    /**
+     * @param ids
+     *            the ids in order
+     * @param indexes
+     *            for each id, its index in <code>ids</code>, or -1 if the id is
+     *            not in the list
+     * @param offset
+     *            the index of the first id of this view in <code>ids</code>
+     * @param size
+     *            the number of ids in this view
+     */
+    ItemIdArray(int[] ids, int[] indexes, int offset, int size) {
+        this.ids = ids;
+        this.indexes = indexes;
+        this.offset = offset;
+        this.size = Math.max(size, 0);
+    }
+
+    @Override
+    public Integer get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + size);
+        }
+        return Integer.valueOf(ids[offset + index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Integer)) {
+            return -1;
+        }
+        int id = (Integer) o;
+        if (id < 0 || id >= indexes.length || indexes[id] < 0) {
+            return -1;
+        }
+        int index = indexes[id] - offset;
+        return index >= 0 && index < size ? index : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public List<Integer> subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex
+                    + ", toIndex: " + toIndex + ", size: " + size);
+        }
+        return new ItemIdArray(ids, indexes, offset + fromIndex, toIndex
+                - fromIndex);
+    }
+}
@@ -0,0 +1,78 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list view of a continuous range of integer item ids. The ids are
+ * computed on demand, so the list takes constant memory regardless of its
+ * size, and <code>get</code>, <code>contains</code>, <code>indexOf</code> and
+ * <code>subList</code> are constant time operations.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+class ItemIdRange extends AbstractList<Integer> implements RandomAccess,
+        Serializable {
+
+    private static final long serialVersionUID = 3962614150871926463L;
+
+    private final int first;
+
+    private final int size;
+
+    /**
+     * @param first
+     *            the first id in the range
+     * @param size
+     *            the number of ids in the range
+     */
+    ItemIdRange(int first, int size) {
+        this.first = first;
+        this.size = Math.max(size, 0);
+    }
+
+    @Override
+    public Integer get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + size);
+        }
+        return Integer.valueOf(first + index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Integer)) {
+            return -1;
+        }
+        long index = (long) ((Integer) o).intValue() - first;
+        return index >= 0 && index < size ? (int) index : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public List<Integer> subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex
+                    + ", toIndex: " + toIndex + ", size: " + size);
+        }
+        return new ItemIdRange(first + fromIndex, toIndex - fromIndex);
+    }
+}
@@ -0,0 +1,32 @@
+package org.vaadin.risto.mockupcontainer;
+
+import com.vaadin.data.Container.ItemSetChangeEvent;
+
+/**
+ * An {@link ItemSetChangeEvent} fired when a single item is removed with
+ * {@link MockupContainer#removeItem(Object)}, or when items are removed from
+ * the end of a {@link MockupContainer} by lowering its item count. Listeners
+ * that don't know about this event still get a normal item set change event.
+ * Items removed from the end had consecutive indexes, and consecutive ids
+ * apart from the items that had already been removed.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public interface ItemRemoveEvent extends ItemSetChangeEvent {
+
+    /**
+     * @return the id of the first removed item
+     */
+    public Object getFirstItemId();
+
+    /**
+     * @return the index that the first removed item had
+     */
+    public int getFirstIndex();
+
+    /**
+     * @return the number of removed items
+     */
+    public int getRemovedItemsCount();
+}
@@ -0,0 +1,119 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * A concurrent histogram of latencies in nanoseconds with log-linear buckets,
+ * in the style of HdrHistogram. Values below 32 ns have buckets of their own;
+ * above that, every power of two is split into 16 buckets, so any recorded
+ * value is known to within about 6 percent. Latencies up to about 18 minutes
+ * are tracked; longer ones are recorded as the maximum.
+ * </p>
+ * 
+ * <p>
+ * Recording a value is a single atomic increment, and the memory use is
+ * constant.
+ * </p>
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+class LatencyHistogram implements Serializable {
+
+    private static final long serialVersionUID = 4856520052521227521L;
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    private static final long MAX_VALUE = (1L << 40) - 1;
+
+    static final int BUCKETS = bucketOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final StripedCounter sum = new StripedCounter();
+
+    void record(long nanos) {
+        counts.incrementAndGet(bucketOf(nanos));
+        sum.add(nanos);
+    }
+
+    /**
+     * @return a copy of the bucket counts, consistent enough for reporting
+     *         while values are being recorded
+     */
+    long[] copyCounts() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    long sum() {
+        return sum.sum();
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        sum.reset();
+    }
+
+    static int bucketOf(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value)
+                - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS
+                + (int) (value >>> shift) - HALF_SUB_BUCKETS;
+    }
+
+    /**
+     * @param counts
+     *            bucket counts copied with {@link #copyCounts()}
+     * @param count
+     *            the total of the counts
+     * @param percentile
+     *            between 0 and 100, for example 99.9
+     * @return the value that the given share of the recorded values stayed
+     *         under, zero if nothing was recorded
+     */
+    static long valueAtPercentile(long[] counts, long count, double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1,
+                (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return highestValueOf(bucket);
+            }
+        }
+        return highestValueOf(counts.length - 1);
+    }
+
+    /**
+     * @param bucket
+     * @return the largest value that falls into the bucket
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (bucket - SUB_BUCKETS) % HALF_SUB_BUCKETS
+                + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
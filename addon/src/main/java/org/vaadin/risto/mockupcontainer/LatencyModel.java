@@ -0,0 +1,26 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * Decides how long a simulated backend call of a {@link MockupContainer}
+ * takes. Implementations for the common distributions are available from
+ * {@link LatencyModels}.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * @see MockupContainer#setLatencyModel(LatencyModel)
+ */
+public interface LatencyModel extends Serializable {
+
+    /**
+     * Draws the duration of the next simulated call. Called concurrently if
+     * the container is accessed from several threads, so implementations
+     * should keep any state in the given generator.
+     * 
+     * @param random
+     *            the random number generator of the calling thread
+     * @return the delay in nanoseconds, zero or negative for no delay
+     */
+    long nextDelayNanos(Random random);
+}
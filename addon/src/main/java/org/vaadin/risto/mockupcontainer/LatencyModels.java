@@ -0,0 +1,224 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Factory methods for the common {@link LatencyModel LatencyModels}.
+ * 
+ * <pre>
+ * container.setLatencyModel(LatencyModels.withSpikes(
+ *         LatencyModels.percentiles(2, 40, TimeUnit.MILLISECONDS), 0.001, 2,
+ *         TimeUnit.SECONDS));
+ * </pre>
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public final class LatencyModels {
+
+    /**
+     * The 99th percentile of the standard normal distribution.
+     */
+    private static final double Z_99 = 2.3263478740408408;
+
+    private static final LatencyModel NONE = new Constant(0);
+
+    private LatencyModels() {
+        // for static use only
+    }
+
+    /**
+     * @return a model without any delay
+     */
+    public static LatencyModel none() {
+        return NONE;
+    }
+
+    /**
+     * @param delay
+     * @param unit
+     * @return a model where every call takes exactly the given time
+     */
+    public static LatencyModel constant(long delay, TimeUnit unit) {
+        checkNotNegative(delay);
+        return new Constant(unit.toNanos(delay));
+    }
+
+    /**
+     * @param min
+     *            the shortest delay (inclusive)
+     * @param max
+     *            the longest delay (exclusive)
+     * @param unit
+     * @return a model where the delays are distributed evenly between the
+     *         bounds
+     */
+    public static LatencyModel uniform(long min, long max, TimeUnit unit) {
+        checkNotNegative(min);
+        if (max < min) {
+            throw new IllegalArgumentException(
+                    "Maximum delay cannot be less than the minimum");
+        }
+        return new Uniform(unit.toNanos(min), unit.toNanos(max));
+    }
+
+    /**
+     * Creates a log-normal model, which has the long right tail of typical
+     * backend response times.
+     * 
+     * @param median
+     *            the median delay
+     * @param sigma
+     *            the standard deviation of the logarithm of the delay, for
+     *            example 0.5 for a moderate and 1.5 for a very long tail
+     * @param unit
+     *            the unit of the median
+     * @return the model
+     */
+    public static LatencyModel logNormal(long median, double sigma,
+            TimeUnit unit) {
+        if (median <= 0) {
+            throw new IllegalArgumentException("Median must be positive");
+        }
+        if (sigma < 0 || Double.isNaN(sigma)) {
+            throw new IllegalArgumentException("Sigma cannot be negative");
+        }
+        return new LogNormal(unit.toNanos(median), sigma);
+    }
+
+    /**
+     * Creates a log-normal model from the two figures that are usually known
+     * about a backend.
+     * 
+     * @param p50
+     *            the median delay
+     * @param p99
+     *            the delay that 99 percent of the calls stay under
+     * @param unit
+     * @return the model
+     */
+    public static LatencyModel percentiles(long p50, long p99, TimeUnit unit) {
+        if (p50 <= 0) {
+            throw new IllegalArgumentException("Median must be positive");
+        }
+        if (p99 < p50) {
+            throw new IllegalArgumentException(
+                    "99th percentile cannot be less than the median");
+        }
+        return new LogNormal(unit.toNanos(p50), Math.log((double) p99 / p50)
+                / Z_99);
+    }
+
+    /**
+     * Adds occasional spikes, such as garbage collection pauses or lock
+     * contention, to another model.
+     * 
+     * @param model
+     *            the model for the normal calls
+     * @param probability
+     *            the probability of a call being a spike
+     * @param spikeDelay
+     *            the extra delay of a spike
+     * @param unit
+     * @return the model
+     */
+    public static LatencyModel withSpikes(LatencyModel model,
+            double probability, long spikeDelay, TimeUnit unit) {
+        if (model == null) {
+            throw new IllegalArgumentException("Model cannot be null");
+        }
+        if (!(probability >= 0 && probability <= 1)) {
+            throw new IllegalArgumentException(
+                    "Probability must be between 0 and 1");
+        }
+        checkNotNegative(spikeDelay);
+        return new Spikes(model, probability, unit.toNanos(spikeDelay));
+    }
+
+    private static void checkNotNegative(long delay) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("Delay cannot be negative");
+        }
+    }
+
+    private static class Constant implements LatencyModel {
+
+        private static final long serialVersionUID = 6121207938853421536L;
+
+        private final long nanos;
+
+        Constant(long nanos) {
+            this.nanos = nanos;
+        }
+
+        @Override
+        public long nextDelayNanos(Random random) {
+            return nanos;
+        }
+    }
+
+    private static class Uniform implements LatencyModel {
+
+        private static final long serialVersionUID = -2722018398566318604L;
+
+        private final long min;
+
+        private final long range;
+
+        Uniform(long min, long max) {
+            this.min = min;
+            range = max - min;
+        }
+
+        @Override
+        public long nextDelayNanos(Random random) {
+            return min + (long) (random.nextDouble() * range);
+        }
+    }
+
+    private static class LogNormal implements LatencyModel {
+
+        private static final long serialVersionUID = 3437036218898722683L;
+
+        private final double mu;
+
+        private final double sigma;
+
+        LogNormal(long median, double sigma) {
+            mu = Math.log(median);
+            this.sigma = sigma;
+        }
+
+        @Override
+        public long nextDelayNanos(Random random) {
+            return (long) Math.exp(mu + sigma * random.nextGaussian());
+        }
+    }
+
+    private static class Spikes implements LatencyModel {
+
+        private static final long serialVersionUID = -5470153580839838101L;
+
+        private final LatencyModel model;
+
+        private final double probability;
+
+        private final long spikeNanos;
+
+        Spikes(LatencyModel model, double probability, long spikeNanos) {
+            this.model = model;
+            this.probability = probability;
+            this.spikeNanos = spikeNanos;
+        }
+
+        @Override
+        public long nextDelayNanos(Random random) {
+            long delay = model.nextDelayNanos(random);
+            if (random.nextDouble() < probability) {
+                delay += spikeNanos;
+            }
+            return delay;
+        }
+    }
+}
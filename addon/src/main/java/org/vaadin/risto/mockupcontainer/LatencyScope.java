@@ -0,0 +1,27 @@
+package org.vaadin.risto.mockupcontainer;
+
+/**
+ * Defines which calls of a {@link MockupContainer} are charged the delay of
+ * its {@link LatencyModel}.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public enum LatencyScope {
+
+    /**
+     * Every call that concerns a single item is delayed: getting an item and
+     * asking for its parent, children or root status. This is how a backend
+     * that is queried item by item behaves.
+     */
+    ITEM,
+
+    /**
+     * Only queries that return a batch of item ids are delayed, once per
+     * query regardless of its size: a page of ids, all ids, the children of an
+     * item or the roots. Getting the items of a page is then free, which is
+     * how a backend that returns whole pages of rows behaves, and how a lazy
+     * loading <code>Table</code> uses the container.
+     */
+    PAGE
+}
@@ -0,0 +1,58 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.util.Arrays;
+
+/**
+ * Copy-on-write arrays of listeners. Adding or removing a listener replaces
+ * the array, so firing an event iterates a plain array without locking or
+ * allocating, and a listener can remove itself while the event is being
+ * fired. A null array stands for no listeners. The array is kept in a
+ * volatile field, and the methods that replace it are synchronized so that
+ * concurrent changes are not lost.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+final class ListenerArrays {
+
+    private ListenerArrays() {
+        // for static use only
+    }
+
+    /**
+     * @param listeners
+     *            the current listeners
+     * @param listener
+     * @return a copy of the array with the listener added at the end
+     */
+    static <T> T[] add(T[] listeners, T listener) {
+        T[] copy = Arrays.copyOf(listeners, listeners.length + 1);
+        copy[listeners.length] = listener;
+        return copy;
+    }
+
+    /**
+     * @param listeners
+     *            the current listeners, may be null
+     * @param listener
+     * @return a copy of the array without the first occurrence of the
+     *         listener, the same array if it doesn't contain the listener,
+     *         or null if no listeners remain
+     */
+    static <T> T[] remove(T[] listeners, Object listener) {
+        if (listeners == null) {
+            return null;
+        }
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i].equals(listener)) {
+                if (listeners.length == 1) {
+                    return null;
+                }
+                T[] copy = Arrays.copyOf(listeners, listeners.length - 1);
+                System.arraycopy(listeners, i + 1, copy, i, copy.length - i);
+                return copy;
+            }
+        }
+        return listeners;
+    }
+}
@@ -0,0 +1,70 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.util.Arrays;
+
+/**
+ * A {@link PrimitiveColumn} of <code>long</code> values.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+class LongColumn extends PrimitiveColumn {
+
+    private static final long serialVersionUID = -8530930425001446005L;
+
+    private final long[] values;
+
+    LongColumn(int size) {
+        values = new long[size];
+    }
+
+    LongColumn(long[] values) {
+        this.values = values;
+    }
+
+    long getLong(int row) {
+        return values[row];
+    }
+
+    void setLong(int row, long value) {
+        values[row] = value;
+    }
+
+    @Override
+    Object box(int row) {
+        return Long.valueOf(values[row]);
+    }
+
+    @Override
+    void store(int row, Object value) {
+        values[row] = (Long) value;
+    }
+
+    @Override
+    long sortKey(int row) {
+        return values[row];
+    }
+
+    @Override
+    long getBits(int row) {
+        return values[row];
+    }
+
+    @Override
+    int size() {
+        return values.length;
+    }
+
+    @Override
+    PrimitiveColumn copyOf(int size) {
+        return create(Arrays.copyOf(values, size));
+    }
+
+    /**
+     * @param values
+     * @return a column of the same type with the given values
+     */
+    LongColumn create(long[] values) {
+        return new LongColumn(values);
+    }
+}
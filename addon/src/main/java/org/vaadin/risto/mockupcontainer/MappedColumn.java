@@ -0,0 +1,194 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+/**
+ * A read-only {@link PrimitiveColumn} over the raw values of a typed
+ * property in a snapshot file. The values and the null flags stay in the
+ * mapped file, in the layout that {@link ContainerSnapshot} writes: integers
+ * as four bytes, longs, dates and doubles as eight, enum ordinals as two and
+ * booleans and null flags as bits packed into longs. Serializing the column
+ * copies the values to the heap.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+class MappedColumn extends PrimitiveColumn {
+
+    private static final long serialVersionUID = 5097713612457396342L;
+
+    private final byte tag;
+
+    private final Enum<?>[] constants;
+
+    private final int size;
+
+    private transient ByteBuffer values;
+
+    private transient ByteBuffer nulls;
+
+    /**
+     * @param generator
+     *            a generator with a type tag, see
+     *            {@link ValueGenerators#getTag(ValueGenerator)}
+     * @param size
+     *            the number of rows
+     * @param values
+     *            the values, {@link #valuesLength(byte, int)} bytes
+     * @param nulls
+     *            the null flags, or null if no row is null
+     */
+    MappedColumn(ValueGenerator<?> generator, int size, ByteBuffer values,
+            ByteBuffer nulls) {
+        tag = ValueGenerators.getTag(generator);
+        constants = (Enum<?>[]) (tag == ValueGenerators.ENUMS ? generator
+                .getType().getEnumConstants() : null);
+        this.size = size;
+        this.values = values;
+        this.nulls = nulls;
+    }
+
+    /**
+     * @param tag
+     *            the type tag of the generator
+     * @param size
+     *            the number of rows
+     * @return the number of bytes that the values of a column take
+     */
+    static long valuesLength(byte tag, int size) {
+        switch (tag) {
+        case ValueGenerators.INTEGERS:
+            return 4L * size;
+        case ValueGenerators.ENUMS:
+            return 2L * size;
+        case ValueGenerators.BOOLEANS:
+            return nullsLength(size);
+        default:
+            return 8L * size;
+        }
+    }
+
+    /**
+     * @param size
+     *            the number of rows
+     * @return the number of bytes that the null flags of a column take
+     */
+    static long nullsLength(int size) {
+        return 8L * ((size + 63) >>> 6);
+    }
+
+    @Override
+    boolean isNull(int row) {
+        return nulls != null && isSet(nulls, row);
+    }
+
+    private static boolean isSet(ByteBuffer bits, int row) {
+        return (bits.getLong((row >>> 6) << 3) & (1L << row)) != 0;
+    }
+
+    @Override
+    Object box(int row) {
+        switch (tag) {
+        case ValueGenerators.INTEGERS:
+            return Integer.valueOf(values.getInt(row << 2));
+        case ValueGenerators.LONGS:
+            return Long.valueOf(values.getLong(row << 3));
+        case ValueGenerators.DOUBLES:
+            return Double.valueOf(values.getDouble(row << 3));
+        case ValueGenerators.BOOLEANS:
+            return Boolean.valueOf(isSet(values, row));
+        case ValueGenerators.DATES:
+            return new Date(values.getLong(row << 3));
+        default:
+            return constants[values.getShort(row << 1)];
+        }
+    }
+
+    @Override
+    long getBits(int row) {
+        switch (tag) {
+        case ValueGenerators.INTEGERS:
+            return values.getInt(row << 2);
+        case ValueGenerators.BOOLEANS:
+            return isSet(values, row) ? 1 : 0;
+        case ValueGenerators.ENUMS:
+            return values.getShort(row << 1);
+        default:
+            return values.getLong(row << 3);
+        }
+    }
+
+    /**
+     * Like {@link DoubleColumn#sortKey(int)} for doubles, otherwise the
+     * stored bits.
+     */
+    @Override
+    long sortKey(int row) {
+        long bits = getBits(row);
+        if (tag == ValueGenerators.DOUBLES) {
+            bits = Double.doubleToLongBits(Double.longBitsToDouble(bits));
+            return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+        }
+        return bits;
+    }
+
+    @Override
+    void set(int row, Object value) {
+        throw new UnsupportedOperationException(
+                "Snapshot columns are read-only");
+    }
+
+    @Override
+    void store(int row, Object value) {
+        throw new UnsupportedOperationException(
+                "Snapshot columns are read-only");
+    }
+
+    @Override
+    PrimitiveColumn copyOf(int size) {
+        throw new UnsupportedOperationException(
+                "Snapshot columns are read-only");
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        writeBuffer(out, values);
+        out.writeBoolean(nulls != null);
+        if (nulls != null) {
+            writeBuffer(out, nulls);
+        }
+    }
+
+    private static void writeBuffer(ObjectOutputStream out, ByteBuffer buffer)
+            throws IOException {
+        byte[] bytes = new byte[buffer.capacity()];
+        ByteBuffer source = buffer.duplicate();
+        source.clear();
+        source.get(bytes);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        values = readBuffer(in);
+        nulls = in.readBoolean() ? readBuffer(in) : null;
+    }
+
+    private static ByteBuffer readBuffer(ObjectInputStream in)
+            throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+}
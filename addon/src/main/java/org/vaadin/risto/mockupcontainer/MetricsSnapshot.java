@@ -0,0 +1,126 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * An immutable copy of the {@link AccessMetrics} of a container at one point
+ * in time.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public final class MetricsSnapshot implements Serializable {
+
+    private static final long serialVersionUID = -4131700769640755301L;
+
+    private final Date timestamp;
+
+    private final long[][] histograms;
+
+    private final long[] counts;
+
+    private final long[] sums;
+
+    private final long distinctRows;
+
+    MetricsSnapshot(long[][] histograms, long[] sums, long distinctRows) {
+        timestamp = new Date();
+        this.histograms = histograms;
+        this.sums = sums;
+        this.distinctRows = distinctRows;
+        counts = new long[histograms.length];
+        for (int i = 0; i < histograms.length; i++) {
+            for (long count : histograms[i]) {
+                counts[i] += count;
+            }
+        }
+    }
+
+    public Date getTimestamp() {
+        return new Date(timestamp.getTime());
+    }
+
+    /**
+     * @param operation
+     * @return the number of calls
+     */
+    public long getCallCount(ContainerOperation operation) {
+        return counts[operation.ordinal()];
+    }
+
+    /**
+     * @return the number of calls of all the operations
+     */
+    public long getTotalCallCount() {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of distinct items whose contents or hierarchy were
+     *         requested
+     */
+    public long getDistinctRowsTouched() {
+        return distinctRows;
+    }
+
+    /**
+     * @param operation
+     * @param percentile
+     *            between 0 and 100, for example 99.9
+     * @return the latency in nanoseconds that the given share of the calls
+     *         stayed under, zero if there were no calls
+     */
+    public long getLatencyAtPercentile(ContainerOperation operation,
+            double percentile) {
+        return LatencyHistogram.valueAtPercentile(
+                histograms[operation.ordinal()], getCallCount(operation),
+                percentile);
+    }
+
+    /**
+     * @param operation
+     * @return the longest latency in nanoseconds
+     */
+    public long getMaxLatency(ContainerOperation operation) {
+        return getLatencyAtPercentile(operation, 100);
+    }
+
+    /**
+     * @param operation
+     * @return the mean latency in nanoseconds
+     */
+    public double getMeanLatency(ContainerOperation operation) {
+        long count = getCallCount(operation);
+        return count == 0 ? 0 : (double) sums[operation.ordinal()] / count;
+    }
+
+    /**
+     * @return a table of the calls and latencies of each operation that was
+     *         called
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-24s %10s %10s %10s %10s %10s%n",
+                "operation", "calls", "p50 us", "p99 us", "p99.9 us",
+                "max us"));
+        for (ContainerOperation operation : ContainerOperation.values()) {
+            if (getCallCount(operation) > 0) {
+                builder.append(String.format(
+                        "%-24s %10d %10.1f %10.1f %10.1f %10.1f%n", operation,
+                        getCallCount(operation),
+                        getLatencyAtPercentile(operation, 50) / 1000.0,
+                        getLatencyAtPercentile(operation, 99) / 1000.0,
+                        getLatencyAtPercentile(operation, 99.9) / 1000.0,
+                        getMaxLatency(operation) / 1000.0));
+            }
+        }
+        builder.append("distinct rows touched: ").append(distinctRows);
+        return builder.toString();
+    }
+}
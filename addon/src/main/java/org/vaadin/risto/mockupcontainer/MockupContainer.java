@@ -1,17 +1,33 @@
 package org.vaadin.risto.mockupcontainer;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.vaadin.data.Container;
-import com.vaadin.data.ContainerHelpers;
 import com.vaadin.data.Item;
 import com.vaadin.data.Property;
+import com.vaadin.data.util.filter.SimpleStringFilter;
+import com.vaadin.data.util.filter.UnsupportedFilterException;
 
 /**
  * <p>
@@ -36,25 +52,167 @@ import com.vaadin.data.Property;
  * </p>
  * 
  * <p>
+ * When the data set is a {@link DeterministicDataSet}, every property id and
+ * value is computed from the seed of the container and the coordinates of
+ * the cell using {@link MockupRandom}. Two containers with the same
+ * configuration and seed have identical contents, regardless of the order in
+ * which the contents are accessed. The seed can be set with
+ * {@link #setSeed(long)}.
+ * </p>
+ * 
+ * <p>
+ * Sorting never moves the items: the container keeps the sorted order as a
+ * permutation of the item ids, which all the {@link Container.Indexed}
+ * methods follow. The hierarchy is not affected by sorting.
+ * </p>
+ * 
+ * <p>
+ * Filters are evaluated against bitmap indexes that are built lazily for each
+ * filtered property, with one compressed bitmap of rows per distinct value.
+ * The standard single-property filters are tested once per distinct value
+ * instead of once per item, and combined filters are evaluated as bitmap
+ * operations. Filtering affects the {@link Container.Indexed} view of the
+ * container, but not the hierarchy.
+ * </p>
+ * 
+ * <p>
+ * A container can be shared by many sessions and threads once it has been
+ * configured. Reading is safe from any number of threads without locking:
+ * getting items, ids and property values, navigating the hierarchy and
+ * fetching batches. Each property of a stored item is created at most once.
+ * Property values can also be set concurrently; writes to the same property
+ * column are serialized by striped locks, and a reader racing with a writer
+ * sees either the old or the new value. Listeners can be added and removed
+ * from any thread, also while events are being fired. Structural changes,
+ * such as changing the configuration, sorting, filtering and adding or
+ * removing items, are not thread-safe and must not overlap with other
+ * access.
+ * </p>
+ * 
+ * <p>
+ * A serialized container with a {@link DeterministicDataSet} contains only
+ * its configuration, sort order, filters, listeners and the cells that have
+ * been modified; the rest of the contents are generated again when it is
+ * deserialized. Items and properties serialized separately from their
+ * container are restored as copies that are no longer part of it.
+ * </p>
+ * 
+ * <p>
  * The user can also set a delay for the retrieval of an item, simulating for
  * example a slow DB connection. The given delay is imposed on <i>every</i>
  * {@link #getItem(Object)} operation, so small values should be used.
  * </p>
  * 
+ * <p>
+ * By default every item is generated up front and kept in memory. For very
+ * large containers the {@link StorageMode#VIRTUAL virtual} storage mode can be
+ * used instead, in which case items are built from their id only when they
+ * are requested and the container itself keeps nothing but its
+ * configuration.
+ * </p>
+ * 
  * @author Risto Yrjänä / Vaadin
  * 
  */
 public class MockupContainer implements Container, Container.Indexed,
-        Container.Hierarchical, Container.ItemSetChangeNotifier,
+        Container.Hierarchical, Container.Sortable, Container.Filterable,
+        Container.SimpleFilterable, Container.ItemSetChangeNotifier,
         Container.PropertySetChangeNotifier {
 
     private static final long serialVersionUID = 7609410632305455153L;
 
+    /**
+     * The state of the container is written by
+     * {@link #writeObject(ObjectOutputStream)}, not field by field.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {};
+
+    /**
+     * Number of cells below which contents are always generated in the
+     * calling thread.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * Number of rows generated by a single fork/join task.
+     */
+    private static final int ROWS_PER_TASK = 1 << 12;
+
+    /**
+     * Number of locks that serialize the writes to the columns. Must be a
+     * power of two.
+     */
+    private static final int WRITE_LOCK_STRIPES = 16;
+
     private int propertyCount;
 
     private String[] containerPropertyArray;
 
-    private final LinkedHashMap<Integer, MockupItem> itemMap;
+    private Map<String, ValueGenerator<?>> typedProperties;
+
+    /**
+     * The generators of the typed properties, in the order of
+     * <code>containerPropertyArray</code>. Null for the generated string
+     * properties.
+     */
+    private ValueGenerator<?>[] generators;
+
+    private MockupItem[] items;
+
+    private Column[] columns;
+
+    private boolean vocabularyCodes;
+
+    /**
+     * The cells written through {@link #setStoredValue(int, int, Object)}
+     * since the contents were generated, as <code>row << 32 | column</code>.
+     */
+    private Set<Long> modifiedCells = createCellSet();
+
+    private int parallelism;
+
+    private Object[] sortPropertyIds;
+
+    private boolean[] sortAscending;
+
+    private int[] sortedIds;
+
+    private int[] sortedIndexes;
+
+    private List<Filter> filters;
+
+    private ReentrantLock[] writeLocks = createWriteLocks();
+
+    private transient ColumnIndex[] columnIndexes;
+
+    private RowBitmap filteredRows;
+
+    /**
+     * The positions in {@link #sortedIds} of the items in
+     * {@link #filteredRows}. Only needed if the container is both sorted and
+     * filtered.
+     */
+    private RowBitmap visiblePositions;
+
+    /**
+     * True if a view of the item ids may still read the current
+     * {@link #filteredRows} and {@link #visiblePositions}, so that they must
+     * be copied before an item is removed from them.
+     */
+    private boolean visibleRowsShared;
+
+    /**
+     * The items removed with {@link #removeItem(Object)} since the contents
+     * were generated, or null if there are none. Removed items keep their
+     * storage so that the ids of the other items never change.
+     */
+    private RowBitmap removedRows;
+
+    private int removedCount;
+
+    private int[] appliedSortColumns;
+
+    private boolean[] appliedSortDirections;
 
     private int itemCount;
 
@@ -62,11 +220,41 @@ public class MockupContainer implements Container, Container.Indexed,
 
     private MockupDataSet dataSet;
 
+    private long seed;
+
+    private StorageMode storageMode;
+
     private int getItemDelay;
 
-    private List<ItemSetChangeListener> itemSetChangeListeners;
+    private LatencyModel latencyModel;
+
+    private LatencyScope latencyScope;
+
+    private AccessMetrics metrics;
 
-    private List<PropertySetChangeListener> propertySetChangeListeners;
+    private transient AccessTraceRecorder traceRecorder;
+
+    /**
+     * True while the contents are read from a snapshot file.
+     */
+    private boolean snapshotContents;
+
+    private volatile ItemSetChangeListener[] itemSetChangeListeners;
+
+    private volatile PropertySetChangeListener[] propertySetChangeListeners;
+
+    /**
+     * The number of transactions begun and not yet committed.
+     */
+    private int transactionDepth;
+
+    private boolean pendingPropertySetChange;
+
+    /**
+     * The events of the current transaction merged into one, or null if
+     * there were none.
+     */
+    private ItemSetChangeEvent pendingItemSetChange;
 
     /**
      * Default constructor. By default the MockupContainer contains 20 items,
@@ -95,84 +283,422 @@ public class MockupContainer implements Container, Container.Indexed,
      */
     public MockupContainer(int itemCount, int propertyCount,
             int numberOfChildren, MockupDataSet dataSet) {
-        if (dataSet == null) {
-            throw new IllegalArgumentException("Dataset cannot be null");
-        }
+        this(new Builder().itemCount(itemCount).propertyCount(propertyCount)
+                .numberOfChildren(numberOfChildren).dataSet(dataSet));
+    }
 
-        this.itemCount = itemCount;
-        this.propertyCount = propertyCount;
-        this.numberOfChildren = numberOfChildren;
-        itemMap = new LinkedHashMap<Integer, MockupItem>(itemCount);
-        this.setDataSet(dataSet);
+    /**
+     * Creates a container with the settings of the given builder. The
+     * contents are generated exactly once.
+     * 
+     * @param builder
+     * @see Builder#build()
+     */
+    protected MockupContainer(Builder builder) {
+        readConfiguration(builder);
 
         generateProperties();
-        generateItemIds();
         generateItems();
     }
 
-    protected void generateItemIds() {
-        itemMap.clear();
-        for (int i = 0; i < itemCount; i++) {
-            itemMap.put(Integer.valueOf(i), null);
+    /**
+     * Creates a container over the contents of an opened snapshot.
+     * 
+     * @param snapshot
+     */
+    private MockupContainer(ContainerSnapshot snapshot) {
+        Builder builder = new Builder().itemCount(snapshot.itemCount)
+                .propertyCount(snapshot.propertyCount)
+                .numberOfChildren(snapshot.numberOfChildren)
+                .seed(snapshot.seed).storageMode(StorageMode.MAPPED);
+        for (int column = 0; column < snapshot.propertyIds.length; column++) {
+            if (snapshot.generators[column] != null) {
+                builder.typedProperty(snapshot.propertyIds[column],
+                        snapshot.generators[column]);
+            }
+        }
+        readConfiguration(builder);
+
+        containerPropertyArray = snapshot.propertyIds;
+        generators = snapshot.generators;
+        columns = snapshot.columns;
+        snapshotContents = true;
+        if (snapshot.removedRows != null) {
+            removedRows = snapshot.removedRows;
+            removedRows.buildRankIndex();
+            removedCount = removedRows.cardinality();
+            applyFilters();
+        }
+    }
+
+    /**
+     * <p>
+     * Opens a snapshot saved with {@link #saveSnapshot(File)}. The contents
+     * are not generated: the string properties are mapped read-only from the
+     * file, so opening is fast even for very large containers, and containers
+     * in several JVMs that open the same file share its pages in memory.
+     * </p>
+     * 
+     * <p>
+     * The contents of the returned container cannot be modified. It can be
+     * sorted and filtered as usual. Changing a setting that regenerates the
+     * contents, such as the item count, discards the snapshot and generates
+     * new contents in the {@link StorageMode#MAPPED} mode with the default
+     * data set.
+     * </p>
+     * 
+     * @param file
+     * @return a new container with the contents of the snapshot
+     * @throws IOException
+     *             if the file cannot be read or is not a snapshot
+     */
+    public static MockupContainer openSnapshot(File file) throws IOException {
+        return new MockupContainer(ContainerSnapshot.read(file));
+    }
+
+    /**
+     * Saves the contents of this container to a versioned binary snapshot
+     * file that can be opened with {@link #openSnapshot(File)}. The snapshot
+     * includes any modifications and the items removed with
+     * {@link #removeItem(Object)}. The sort order, filters and latency
+     * settings are not saved.
+     * 
+     * @param file
+     * @throws IOException
+     */
+    public void saveSnapshot(File file) throws IOException {
+        ContainerSnapshot.write(this, file);
+    }
+
+    /**
+     * @return a new {@link Builder} with the default settings
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return a new {@link Builder} initialized with the current settings of
+     *         this container
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder().itemCount(itemCount)
+                .propertyCount(propertyCount)
+                .numberOfChildren(numberOfChildren).dataSet(dataSet)
+                .seed(seed).storageMode(storageMode)
+                .itemDelay(getItemDelay).latencyModel(latencyModel)
+                .latencyScope(latencyScope).parallelism(parallelism)
+                .metrics(metrics != null);
+        builder.typedProperties.putAll(typedProperties);
+        return builder;
+    }
+
+    /**
+     * Applies all the settings of the given builder to this container at
+     * once. Unlike calling the individual setters, the contents are
+     * regenerated at most once and a single set of change events is fired. If
+     * only the latency settings change, nothing is regenerated, and if only
+     * the item count changes, items are added or removed as in
+     * {@link #setItemCount(int)}.
+     * 
+     * @param configuration
+     * @throws IllegalArgumentException
+     *             if the number of children exceeds the item count, in which
+     *             case nothing is changed
+     */
+    public void configure(Builder configuration) {
+        configuration.validate();
+        int oldItemCount = itemCount;
+        boolean rebuild = propertyCount != configuration.propertyCount
+                || numberOfChildren != configuration.numberOfChildren
+                || dataSet != configuration.getDataSet()
+                || seed != configuration.seed
+                || storageMode != configuration.storageMode
+                || !typedProperties.equals(configuration.typedProperties);
+
+        readConfiguration(configuration);
+        if (rebuild) {
+            rebuildContents();
+        } else if (itemCount != oldItemCount) {
+            changeItemCount(oldItemCount);
         }
     }
 
+    private void readConfiguration(Builder configuration) {
+        itemCount = configuration.itemCount;
+        propertyCount = configuration.propertyCount;
+        numberOfChildren = configuration.numberOfChildren;
+        dataSet = configuration.getDataSet();
+        seed = configuration.seed;
+        storageMode = configuration.storageMode;
+        typedProperties = new LinkedHashMap<String, ValueGenerator<?>>(
+                configuration.typedProperties);
+        getItemDelay = configuration.itemDelay;
+        latencyModel = configuration.latencyModel;
+        latencyScope = configuration.latencyScope;
+        parallelism = configuration.parallelism;
+        setMetricsEnabled(configuration.metrics);
+    }
+
+    /**
+     * Generates the ids of the string properties and merges them with the ids
+     * of the typed properties.
+     */
     protected void generateProperties() {
-        List<String> containerProperties = new ArrayList<String>(propertyCount);
+        List<String> containerProperties = new ArrayList<String>(
+                typedProperties.keySet());
         for (int i = 0; i < propertyCount; i++) {
             String nextId = null;
+            int attempt = 0;
             do {
-                nextId = getDataSet().nextId();
+                nextId = generatePropertyId(i, attempt++);
             } while (containerProperties.contains(nextId));
             containerProperties.add(nextId);
         }
 
         containerPropertyArray = containerProperties
-                .toArray(new String[propertyCount]);
+                .toArray(new String[containerProperties.size()]);
         Arrays.sort(containerPropertyArray);
+
+        generators = new ValueGenerator<?>[containerPropertyArray.length];
+        for (int column = 0; column < generators.length; column++) {
+            generators[column] = typedProperties
+                    .get(containerPropertyArray[column]);
+        }
     }
 
+    /**
+     * Generates the items. The item ids are implicit: they are the integers
+     * from zero to <code>itemCount - 1</code>, and the item with id
+     * <code>n</code> is stored at index <code>n</code>.
+     */
     protected void generateItems() {
-        int lastUnfullParent = 0;
-        for (int i = 0; i < itemCount; i++) {
+        items = null;
+        columns = null;
+        vocabularyCodes = false;
+        snapshotContents = false;
+        modifiedCells.clear();
+        removedRows = null;
+        removedCount = 0;
+
+        switch (storageMode) {
+        case VIRTUAL:
+            return;
+        case ITEMS:
+            items = new MockupItem[itemCount];
+            break;
+        default:
+            createColumns();
+        }
 
-            MockupItem item = new MockupItem(containerPropertyArray,
-                    getDataSet());
-            itemMap.put(i, item);
+        generateRange(0, itemCount);
+    }
 
-            // set item parent properties
-            if (i < numberOfChildren) {
-                item.setParent(null); // root level
-            } else {
-                MockupItem parent = itemMap.get(lastUnfullParent);
-                parent.getChildren().add(i);
-                item.setParent(lastUnfullParent);
+    /**
+     * Generates a range of rows, in parallel if possible.
+     */
+    private void generateRange(int firstRow, int endRow) {
+        if (canGenerateInParallel(endRow - firstRow)) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new GenerateRowsTask(firstRow, endRow));
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            generateRows(firstRow, endRow);
+        }
+    }
+
+    /**
+     * Creates one empty column per property for the column based storage
+     * modes. Typed properties get the column of their generator. With a
+     * {@link VocabularyDataSet} the dictionary is the vocabulary of the data
+     * set, and the codes can be drawn directly without looking up or
+     * comparing any values. Other data sets get a dictionary built from the
+     * generated values.
+     */
+    private void createColumns() {
+        columns = new Column[containerPropertyArray.length];
+        for (int column = 0; column < columns.length; column++) {
+            if (generators[column] != null) {
+                columns[column] = generators[column].createColumn(itemCount);
+            }
+        }
+        if (storageMode == StorageMode.COLUMNAR) {
+            for (int column = 0; column < columns.length; column++) {
+                if (columns[column] == null) {
+                    columns[column] = new ObjectColumn(itemCount);
+                }
+            }
+            return;
+        }
+
+        Dictionary dictionary;
+        if (getDataSet() instanceof VocabularyDataSet) {
+            dictionary = new Dictionary((VocabularyDataSet) getDataSet());
+            vocabularyCodes = true;
+        } else {
+            dictionary = new Dictionary();
+        }
+        for (int column = 0; column < columns.length; column++) {
+            if (columns[column] == null) {
+                columns[column] = createCodedColumn(dictionary);
+            }
+        }
+    }
+
+    /**
+     * Generation runs in parallel only if the result doesn't depend on the
+     * order in which the rows are generated: the values must be computed from
+     * the seed, and new values must not be added to a shared dictionary.
+     */
+    private boolean canGenerateInParallel(int rows) {
+        if (parallelism <= 1
+                || (long) rows * Math.max(1, containerPropertyArray.length) < PARALLEL_THRESHOLD
+                || !(getDataSet() instanceof DeterministicDataSet)) {
+            return false;
+        }
+        return columns == null || storageMode == StorageMode.COLUMNAR
+                || vocabularyCodes;
+    }
+
+    /**
+     * Generates the stored contents of the given range of rows. Distinct
+     * ranges are independent of each other and may be generated concurrently.
+     * 
+     * @param firstRow
+     *            the first row to generate
+     * @param endRow
+     *            the row after the last row to generate
+     */
+    protected void generateRows(int firstRow, int endRow) {
+        if (items != null) {
+            for (int row = firstRow; row < endRow; row++) {
+                items[row] = new MockupItem(containerPropertyArray, this, row);
+            }
+        }
 
-                if (parent.getChildren().size() == numberOfChildren) {
-                    lastUnfullParent++;
+        if (columns != null) {
+            for (int column = 0; column < columns.length; column++) {
+                ValueGenerator<?> generator = generators[column];
+                if (generator != null) {
+                    for (int row = firstRow; row < endRow; row++) {
+                        generator.generateInto(columns[column], row,
+                                MockupRandom.hash(seed, row, column));
+                    }
+                } else if (vocabularyCodes) {
+                    VocabularyDataSet vocabulary = (VocabularyDataSet) dataSet;
+                    CodedColumn codedColumn = (CodedColumn) columns[column];
+                    for (int row = firstRow; row < endRow; row++) {
+                        codedColumn.setCode(row, vocabulary
+                                .getValueIndex(MockupRandom.hash(seed, row,
+                                        column)));
+                    }
+                } else {
+                    for (int row = firstRow; row < endRow; row++) {
+                        columns[column].set(row, generateValue(row, column));
+                    }
                 }
             }
         }
     }
 
+    /**
+     * Generates a candidate property id. Deterministic data sets get the id
+     * from the seed, the index of the property and the number of the attempt.
+     * 
+     * @param index
+     *            the index of the property being generated
+     * @param attempt
+     *            the number of previous attempts that produced a duplicate
+     * @return a property id candidate
+     */
+    protected String generatePropertyId(int index, int attempt) {
+        if (getDataSet() instanceof DeterministicDataSet) {
+            return ((DeterministicDataSet) getDataSet()).getId(MockupRandom
+                    .hash(seed, -1 - index, attempt));
+        }
+        return getDataSet().nextId();
+    }
+
+    /**
+     * Generates the value of a single cell. Typed properties and
+     * deterministic data sets get the value from the seed and the coordinates
+     * of the cell, so the same cell always gets the same value.
+     * 
+     * @param itemId
+     * @param propertyId
+     * @return the generated value
+     */
+    protected Object generateValue(int itemId, Object propertyId) {
+        return generateValue(itemId,
+                Arrays.binarySearch(containerPropertyArray, propertyId));
+    }
+
+    /**
+     * @param itemId
+     * @param column
+     *            the index of the property in the sorted property ids
+     * @return the generated value
+     * @see #generateValue(int, Object)
+     */
+    protected Object generateValue(int itemId, int column) {
+        if (generators[column] != null) {
+            return generators[column].generate(MockupRandom.hash(seed, itemId,
+                    column));
+        } else if (getDataSet() instanceof DeterministicDataSet) {
+            return ((DeterministicDataSet) getDataSet()).getValue(MockupRandom
+                    .hash(seed, itemId, column));
+        }
+        return getDataSet().nextValue();
+    }
+
     protected void rebuildContents() {
         generateProperties();
         firePropertySetChangeEvent();
 
-        generateItemIds();
         generateItems();
+        columnIndexes = null;
+        if (metrics != null) {
+            metrics.resize(itemCount);
+        }
+        applySort();
+        applyFilters();
         fireItemSetChangeEvent();
     }
 
+    private CodedColumn createCodedColumn(Dictionary dictionary) {
+        switch (storageMode) {
+        case OFF_HEAP:
+            return new OffHeapColumn(dictionary, itemCount, false);
+        case MAPPED:
+            return new OffHeapColumn(dictionary, itemCount, true);
+        default:
+            return new DictionaryColumn(dictionary, itemCount);
+        }
+    }
+
     @Override
     public boolean addContainerProperty(Object propertyId, Class<?> type,
             Object defaultValue) throws UnsupportedOperationException {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Appends an item with generated values after the last item, like
+     * growing the item count by one with {@link #setItemCount(int)}.
+     * 
+     * @return the id of the new item
+     * @throws UnsupportedOperationException
+     *             if the contents come from a snapshot
+     */
     @Override
     public Object addItem() throws UnsupportedOperationException {
-        throw new UnsupportedOperationException();
+        checkModifiable();
+        int itemId = itemCount;
+        setItemCount(itemCount + 1);
+        return itemId;
     }
 
     @Override
@@ -183,29 +709,69 @@ public class MockupContainer implements Container, Container.Indexed,
 
     @Override
     public boolean containsId(Object itemId) {
+        traceItem(ContainerOperation.CONTAINS_ID, itemId);
+        long start = startTiming();
+        try {
+            return isVisible(itemId);
+        } finally {
+            stopTiming(ContainerOperation.CONTAINS_ID, start);
+        }
+    }
+
+    private boolean isVisible(Object itemId) {
         checkItemIdType(itemId);
 
-        return itemIdIsPossible((Integer) itemId);
+        return itemIdIsPossible((Integer) itemId)
+                && (filteredRows == null || filteredRows.get((Integer) itemId));
     }
 
     @Override
     public Property<?> getContainerProperty(Object itemId, Object propertyId) {
-        if (propertyId instanceof String
-                && Arrays.binarySearch(containerPropertyArray, propertyId) < 0) {
-            return null;
-        }
+        traceProperty(itemId, propertyId);
+        long start = startTiming();
+        try {
+            if (propertyId instanceof String
+                    && Arrays.binarySearch(containerPropertyArray, propertyId) < 0) {
+                return null;
+            }
 
-        return getItem(itemId).getItemProperty(propertyId);
+            return fetchItem(itemId).getItemProperty(propertyId);
+        } finally {
+            stopTiming(ContainerOperation.GET_CONTAINER_PROPERTY, start);
+        }
     }
 
     @Override
     public Collection<String> getContainerPropertyIds() {
+        traceCall(ContainerOperation.GET_CONTAINER_PROPERTY_IDS);
+        long start = startTiming();
+        try {
+            return getPropertyIds();
+        } finally {
+            stopTiming(ContainerOperation.GET_CONTAINER_PROPERTY_IDS, start);
+        }
+    }
+
+    /**
+     * @return the property ids, without counting or tracing the call
+     */
+    Collection<String> getPropertyIds() {
         return Collections.unmodifiableCollection(Arrays
                 .asList(containerPropertyArray));
     }
 
     @Override
     public Item getItem(Object itemId) {
+        traceItem(ContainerOperation.GET_ITEM, itemId);
+        long start = startTiming();
+        try {
+            return fetchItem(itemId);
+        } finally {
+            stopTiming(ContainerOperation.GET_ITEM, start);
+        }
+    }
+
+    private Item fetchItem(Object itemId) {
         if (itemId == null) {
             return null;
         }
@@ -215,15 +781,9 @@ public class MockupContainer implements Container, Container.Indexed,
         } catch (IllegalArgumentException e) {
             return null;
         }
-        if (itemIdIsPossible((Integer) itemId)) {
-
-            if (getGetItemDelay() > 0) {
-                try {
-                    Thread.sleep(getGetItemDelay());
-                } catch (InterruptedException e) {
-                    // ignored
-                }
-            }
+        if (isVisible(itemId)) {
+            simulateDelay();
+            touch((Integer) itemId);
             return internalGetItem(itemId);
 
         } else {
@@ -231,6 +791,73 @@ public class MockupContainer implements Container, Container.Indexed,
         }
     }
 
+    /**
+     * Fetches a page of items in one call, the way a page oriented backend
+     * returns whole rows for a query. The simulated delay is charged once for
+     * the whole batch instead of once per item. In the
+     * {@link StorageMode#VIRTUAL virtual} storage mode the values of the batch
+     * are generated up front, one property at a time.
+     * 
+     * @param startIndex
+     *            the index of the first item
+     * @param count
+     *            the maximum number of items
+     * @return the ids and the items, fewer than requested at the end of the
+     *         container
+     */
+    public ItemBatch getItems(int startIndex, int count) {
+        traceRange(ContainerOperation.GET_ITEMS, startIndex, count);
+        long start = startTiming();
+        try {
+            return fetchItems(startIndex, count);
+        } finally {
+            stopTiming(ContainerOperation.GET_ITEMS, start);
+        }
+    }
+
+    private ItemBatch fetchItems(int startIndex, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException(
+                    "Cannot get negative amount of items! received " + count);
+        }
+        int size = visibleSize();
+        if (startIndex < 0 || startIndex > size) {
+            throw new IndexOutOfBoundsException("Start index " + startIndex
+                    + " is outside of the container");
+        }
+        simulateDelay(latencyScope);
+
+        // copied, so that removing items needn't copy the filter results
+        int endIndex = startIndex + Math.min(count, size - startIndex);
+        List<Integer> ids = Collections.unmodifiableList(new ArrayList<Integer>(
+                itemIdsView().subList(startIndex, endIndex)));
+        Item[] batch = new Item[ids.size()];
+        if (metrics != null) {
+            for (Integer id : ids) {
+                metrics.touch(id);
+            }
+        }
+        if (storageMode == StorageMode.VIRTUAL) {
+            int columnCount = containerPropertyArray.length;
+            Object[][] values = new Object[batch.length][columnCount];
+            for (int column = 0; column < columnCount; column++) {
+                for (int i = 0; i < batch.length; i++) {
+                    values[i][column] = generateValue(ids.get(i).intValue(),
+                            column);
+                }
+            }
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = new MockupItem(containerPropertyArray, this,
+                        ids.get(i), values[i]);
+            }
+        } else {
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = internalGetItem(ids.get(i));
+            }
+        }
+        return new ItemBatch(startIndex, ids, batch);
+    }
+
     /**
      * This method doesn't have the set delay.
      * 
@@ -238,40 +865,474 @@ public class MockupContainer implements Container, Container.Indexed,
      * @return
      */
     protected Item internalGetItem(Object itemId) {
-        Item item = itemMap.get(itemId);
-        return item;
+        switch (storageMode) {
+        case VIRTUAL:
+            return materializeItem((Integer) itemId);
+        case COLUMNAR:
+        case DICTIONARY:
+        case OFF_HEAP:
+        case MAPPED:
+            return new ColumnItem(this, (Integer) itemId);
+        default:
+            return items[(Integer) itemId];
+        }
     }
 
-    protected void checkItemIdType(Object itemId) {
-        if (itemId == null || !(itemId instanceof Integer)) {
-            throw new IllegalArgumentException(
-                    "Item id's must be non-null and of type integer");
+    /**
+     * @param itemId
+     * @return the item regardless of filters, without the item delay
+     */
+    Item getUnfilteredItem(int itemId) {
+        return internalGetItem(itemId);
+    }
+
+    /**
+     * @param propertyId
+     * @return the index of the property in the sorted property ids, or a
+     *         negative value if the container doesn't have the property
+     */
+    int indexOfProperty(Object propertyId) {
+        if (!(propertyId instanceof String)) {
+            return -1;
         }
+        return Arrays.binarySearch(containerPropertyArray, propertyId);
     }
 
-    protected boolean itemIdIsPossible(Integer itemId) {
-        return ((itemId >= 0 && itemId < itemCount));
+    String getPropertyId(int column) {
+        return containerPropertyArray[column];
     }
 
-    @Override
-    public Collection<Integer> getItemIds() {
-        return Collections.unmodifiableSet(itemMap.keySet());
+    /**
+     * Reads a cell without creating its property in the ITEMS mode, unless
+     * the data set is not deterministic, in which case the value exists only
+     * once the property has been created.
+     * 
+     * @param itemId
+     * @param column
+     * @return the current value of the cell, without the item delay
+     */
+    Object getValueAt(int itemId, int column) {
+        switch (storageMode) {
+        case VIRTUAL:
+            return generateValue(itemId, column);
+        case ITEMS:
+            MockupItem item = items[itemId];
+            MockupProperty<?> property = item.getCreatedProperty(column);
+            if (property != null) {
+                return property.getValue();
+            } else if (generators[column] != null
+                    || getDataSet() instanceof DeterministicDataSet) {
+                return generateValue(itemId, column);
+            }
+            return item.getItemProperty(getPropertyId(column)).getValue();
+        default:
+            return columns[column].get(itemId);
+        }
     }
 
-    @Override
-    public List<?> getItemIds(int startIndex, int numberOfItems) {
-        return ContainerHelpers.getItemIdsUsingGetIdByIndex(startIndex,
-                numberOfItems, this);
+    /**
+     * @param column
+     * @return the storage of the column, or null if the storage mode is not
+     *         column based
+     */
+    Column getColumn(int column) {
+        return columns != null ? columns[column] : null;
     }
 
-    @Override
-    public Class<String> getType(Object propertyId) {
-        return String.class;
+    Object getStoredValue(int itemId, int column) {
+        return columns[column].get(itemId);
     }
 
+    /**
+     * Writes to the same column are serialized by one of a fixed set of
+     * striped locks, so that a dictionary column can be widened safely.
+     * Readers never lock.
+     */
+    void setStoredValue(int itemId, int column, Object value) {
+        ReentrantLock lock = writeLocks[column & (WRITE_LOCK_STRIPES - 1)];
+        lock.lock();
+        try {
+            columns[column].set(itemId, value);
+            modifiedCells.add((long) itemId << 32 | column);
+            ColumnIndex[] indexes = columnIndexes;
+            if (indexes != null) {
+                indexes[column] = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static ReentrantLock[] createWriteLocks() {
+        ReentrantLock[] locks = new ReentrantLock[WRITE_LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+
+    private static Set<Long> createCellSet() {
+        return Collections
+                .newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    }
+
+    /**
+     * Returns the bitmap index of a column, building it if necessary. The
+     * indexes of column based storage modes are kept until the column is
+     * modified. In the {@link StorageMode#ITEMS items} storage mode the values
+     * can change without the container noticing, so the index is always
+     * rebuilt.
+     * 
+     * @param column
+     * @return the index
+     */
+    ColumnIndex getColumnIndex(int column) {
+        if (storageMode == StorageMode.ITEMS) {
+            return ColumnIndex.build(this, column);
+        }
+        if (columnIndexes == null) {
+            columnIndexes = new ColumnIndex[containerPropertyArray.length];
+        }
+        if (columnIndexes[column] == null) {
+            columnIndexes[column] = ColumnIndex.build(this, column);
+        }
+        return columnIndexes[column];
+    }
+
+    /**
+     * Builds a new item for the given id without storing it anywhere. Used in
+     * the {@link StorageMode#VIRTUAL virtual} storage mode.
+     * 
+     * @param itemId
+     * @return a new, lightweight item
+     */
+    protected MockupItem materializeItem(int itemId) {
+        return new MockupItem(containerPropertyArray, this, itemId);
+    }
+
+    /**
+     * Computes the parent of an item. The hierarchy is a regular fan-out that
+     * is never stored: the first <code>numberOfChildren</code> items are
+     * roots, the next <code>numberOfChildren</code> are the children of item 0
+     * and so on. If the number of children is zero, all items are roots.
+     * The children of a removed item become roots.
+     * 
+     * @param itemId
+     * @return the parent id, or null for root items
+     */
+    protected Integer computeParent(int itemId) {
+        int parent = parentOf(itemId);
+        return parent >= 0 ? Integer.valueOf(parent) : null;
+    }
+
+    /**
+     * @param itemId
+     * @return the parent id, or -1 for root items
+     * @see #computeParent(int)
+     */
+    int parentOf(int itemId) {
+        if (numberOfChildren <= 0 || itemId < numberOfChildren) {
+            return -1;
+        }
+        int parent = itemId / numberOfChildren - 1;
+        return isRemoved(parent) ? -1 : parent;
+    }
+
+    /**
+     * Computes the children of an item. See {@link #computeParent(int)} for
+     * the structure of the hierarchy.
+     * 
+     * @param itemId
+     * @return a random-access view of the ids of the children, never null
+     */
+    protected List<Integer> computeChildren(int itemId) {
+        if (numberOfChildren <= 0) {
+            return Collections.emptyList();
+        }
+        long firstChild = (itemId + 1L) * numberOfChildren;
+        if (firstChild >= itemCount) {
+            return Collections.emptyList();
+        }
+        List<Integer> children = new ItemIdRange((int) firstChild,
+                (int) Math.min(numberOfChildren, itemCount - firstChild));
+        if (removedCount == 0) {
+            return children;
+        }
+        List<Integer> remaining = new ArrayList<Integer>(children.size());
+        for (Integer child : children) {
+            if (!isRemoved(child)) {
+                remaining.add(child);
+            }
+        }
+        return Collections.unmodifiableList(remaining);
+    }
+
+    /**
+     * @return the roots: the first items that have not been removed and the
+     *         remaining children of the removed items, in the order of their
+     *         ids
+     */
+    private List<Integer> computeRoots() {
+        int naturalRoots = numberOfChildren <= 0 ? itemCount : Math.min(
+                numberOfChildren, itemCount);
+        if (removedCount == 0) {
+            return new ItemIdRange(0, naturalRoots);
+        }
+        List<Integer> roots = new ArrayList<Integer>();
+        for (int itemId = 0; itemId < naturalRoots; itemId++) {
+            if (!isRemoved(itemId)) {
+                roots.add(itemId);
+            }
+        }
+        if (numberOfChildren > 0) {
+            for (int removed = removedRows.nextSetBit(0); removed >= 0; removed = removedRows
+                    .nextSetBit(removed + 1)) {
+                roots.addAll(computeChildren(removed));
+            }
+        }
+        return Collections.unmodifiableList(roots);
+    }
+
+    private boolean isRemoved(int itemId) {
+        return removedCount > 0 && removedRows.get(itemId);
+    }
+
+    private long startTiming() {
+        return metrics != null ? System.nanoTime() : 0;
+    }
+
+    private void stopTiming(ContainerOperation operation, long start) {
+        AccessMetrics current = metrics;
+        if (current != null && start != 0) {
+            current.record(operation, start);
+        }
+    }
+
+    private void traceCall(ContainerOperation operation) {
+        AccessTraceRecorder recorder = traceRecorder;
+        if (recorder != null) {
+            recorder.recordCall(operation);
+        }
+    }
+
+    private void traceItem(ContainerOperation operation, Object itemId) {
+        AccessTraceRecorder recorder = traceRecorder;
+        if (recorder != null) {
+            recorder.recordItem(operation, itemId);
+        }
+    }
+
+    private void traceProperty(Object itemId, Object propertyId) {
+        AccessTraceRecorder recorder = traceRecorder;
+        if (recorder != null) {
+            recorder.recordProperty(itemId, propertyId);
+        }
+    }
+
+    private void tracePropertyId(ContainerOperation operation,
+            Object propertyId) {
+        AccessTraceRecorder recorder = traceRecorder;
+        if (recorder != null) {
+            recorder.recordPropertyId(operation, propertyId);
+        }
+    }
+
+    private void traceIndex(ContainerOperation operation, int index) {
+        AccessTraceRecorder recorder = traceRecorder;
+        if (recorder != null) {
+            recorder.recordIndex(operation, index);
+        }
+    }
+
+    private void traceRange(ContainerOperation operation, int start, int count) {
+        AccessTraceRecorder recorder = traceRecorder;
+        if (recorder != null) {
+            recorder.recordRange(operation, start, count);
+        }
+    }
+
+    private void touch(int itemId) {
+        AccessMetrics current = metrics;
+        if (current != null) {
+            current.touch(itemId);
+        }
+    }
+
+    /**
+     * Imposes the delay of a single item call on the calling thread.
+     * 
+     * @see #simulateDelay(LatencyScope)
+     */
+    protected void simulateDelay() {
+        simulateDelay(LatencyScope.ITEM);
+    }
+
+    /**
+     * Imposes a delay drawn from the latency model on the calling thread, if
+     * the container charges calls of the given scope. The thread is parked
+     * instead of sleeping, so delays are precise well below a millisecond. An
+     * interrupt ends the delay early and is left pending for the caller.
+     * 
+     * @param scope
+     *            the scope of the call being made
+     */
+    protected void simulateDelay(LatencyScope scope) {
+        if (scope != latencyScope) {
+            return;
+        }
+        LatencyModel model = getLatencyModel();
+        long delay = model.nextDelayNanos(ThreadLocalRandom.current());
+        if (delay <= 0) {
+            return;
+        }
+
+        long deadline = System.nanoTime() + delay;
+        while (delay > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(this, delay);
+            delay = deadline - System.nanoTime();
+        }
+    }
+
+    protected void checkItemIdType(Object itemId) {
+        if (itemId == null || !(itemId instanceof Integer)) {
+            throw new IllegalArgumentException(
+                    "Item id's must be non-null and of type integer");
+        }
+    }
+
+    protected boolean itemIdIsPossible(Integer itemId) {
+        return ((itemId >= 0 && itemId < itemCount && !isRemoved(itemId)));
+    }
+
+    /**
+     * @return an immutable, random-access view of the item ids. The view
+     *         takes constant memory and answers <code>contains</code> and
+     *         <code>indexOf</code> in constant time.
+     */
+    @Override
+    public List<Integer> getItemIds() {
+        traceCall(ContainerOperation.GET_ITEM_IDS);
+        long start = startTiming();
+        try {
+            simulateDelay(LatencyScope.PAGE);
+            return visibleItemIds();
+        } finally {
+            stopTiming(ContainerOperation.GET_ITEM_IDS, start);
+        }
+    }
+
+    /**
+     * @return the visible item ids in their current order, without the delay
+     */
+    List<Integer> visibleItemIds() {
+        if (filteredRows != null) {
+            visibleRowsShared = true;
+        }
+        return itemIdsView();
+    }
+
+    /**
+     * @return a view of the visible item ids that is only read before the
+     *         next change of the container
+     */
+    private List<Integer> itemIdsView() {
+        if (visiblePositions != null) {
+            return new BitmapItemIds(visiblePositions, sortedIds,
+                    sortedIndexes, 0, visiblePositions.cardinality());
+        } else if (filteredRows != null) {
+            return new BitmapItemIds(filteredRows, 0,
+                    filteredRows.cardinality());
+        } else if (sortedIds != null) {
+            return new ItemIdArray(sortedIds, sortedIndexes, 0, itemCount);
+        }
+        return new ItemIdRange(0, itemCount);
+    }
+
+    /**
+     * @return an immutable, random-access view of the requested range of item
+     *         ids
+     */
+    @Override
+    public List<Integer> getItemIds(int startIndex, int numberOfItems) {
+        traceRange(ContainerOperation.GET_ITEM_IDS_RANGE, startIndex,
+                numberOfItems);
+        long start = startTiming();
+        try {
+            if (numberOfItems < 0) {
+                throw new IllegalArgumentException(
+                        "Cannot get negative amount of items! received "
+                                + numberOfItems);
+            }
+            int size = visibleSize();
+            if (startIndex < 0 || startIndex > size) {
+                throw new IndexOutOfBoundsException("Start index "
+                        + startIndex + " is outside of the container");
+            }
+            simulateDelay(LatencyScope.PAGE);
+            return visibleItemIds().subList(startIndex,
+                    startIndex + Math.min(numberOfItems, size - startIndex));
+        } finally {
+            stopTiming(ContainerOperation.GET_ITEM_IDS_RANGE, start);
+        }
+    }
+
+    @Override
+    public Class<?> getType(Object propertyId) {
+        tracePropertyId(ContainerOperation.GET_TYPE, propertyId);
+        long start = startTiming();
+        try {
+            int column = indexOfProperty(propertyId);
+            return column >= 0 ? getType(column) : null;
+        } finally {
+            stopTiming(ContainerOperation.GET_TYPE, start);
+        }
+    }
+
+    /**
+     * @param column
+     * @return the generator of a typed property, or null for the generated
+     *         string properties
+     */
+    ValueGenerator<?> getGenerator(int column) {
+        return generators[column];
+    }
+
+    /**
+     * @return the removed items, or null if none have been removed. The
+     *         bitmap may have room for more rows than the item count.
+     */
+    RowBitmap getRemovedRows() {
+        return removedCount > 0 ? removedRows : null;
+    }
+
+    /**
+     * @return true if the contents are read-only, because they are mapped
+     *         from a snapshot file
+     */
+    boolean isSnapshotContents() {
+        return snapshotContents;
+    }
+
+    /**
+     * @param column
+     * @return the type of the property, String unless the property is typed
+     */
+    Class<?> getType(int column) {
+        return generators[column] != null ? generators[column].getType()
+                : String.class;
+    }
+
+    /**
+     * Removes all the items by setting the item count to zero.
+     * 
+     * @throws UnsupportedOperationException
+     *             if the contents come from a snapshot
+     */
     @Override
     public boolean removeAllItems() throws UnsupportedOperationException {
-        throw new UnsupportedOperationException();
+        checkModifiable();
+        setItemCount(0);
+        return true;
     }
 
     @Override
@@ -280,14 +1341,101 @@ public class MockupContainer implements Container, Container.Indexed,
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Removes an item. The ids of the other items do not change, and the
+     * children of the removed item become roots, as in
+     * {@link com.vaadin.data.util.HierarchicalContainer}. The listeners get an
+     * {@link ItemRemoveEvent} if the item was visible.
+     * 
+     * @return true if the item was removed, false if there is no such item
+     * @throws UnsupportedOperationException
+     *             if the contents come from a snapshot
+     */
     @Override
     public boolean removeItem(Object itemId)
             throws UnsupportedOperationException {
-        throw new UnsupportedOperationException();
+        checkModifiable();
+        checkItemIdType(itemId);
+        if (!itemIdIsPossible((Integer) itemId)) {
+            return false;
+        }
+
+        int row = (Integer) itemId;
+        int index = visibleIndexOf(itemId);
+        if (removedRows == null) {
+            removedRows = new RowBitmap(itemCount, false);
+        }
+        removedRows.set(row);
+        removedCount++;
+        removeVisibleRow(row);
+
+        if (index >= 0) {
+            fireItemRemoveEvent(row, index, 1);
+        } else {
+            fireItemSetChangeEvent();
+        }
+        return true;
+    }
+
+    /**
+     * Takes a removed item out of the filter results and the visible order
+     * in logarithmic time. They are copied first only if a view of the item
+     * ids may still read them, so a series of removals between the calls to
+     * {@link #getItemIds()} copies them at most once.
+     * 
+     * @param row
+     */
+    private void removeVisibleRow(int row) {
+        if (filteredRows == null) {
+            filteredRows = new RowBitmap(itemCount, true);
+            filteredRows.buildRankIndex();
+            updateVisiblePositions();
+        } else if (visibleRowsShared) {
+            filteredRows = filteredRows.copyOf(itemCount);
+            filteredRows.buildRankIndex();
+            if (visiblePositions != null) {
+                visiblePositions = visiblePositions.copyOf(itemCount);
+                visiblePositions.buildRankIndex();
+            }
+        }
+        visibleRowsShared = false;
+        filteredRows.clear(row);
+        if (visiblePositions != null) {
+            visiblePositions.clear(sortedIndexes[row]);
+        }
+    }
+
+    private void checkModifiable() {
+        if (snapshotContents) {
+            throw new UnsupportedOperationException(
+                    "The contents of a snapshot cannot be modified");
+        }
     }
 
+    /**
+     * @return the number of items that pass the filters
+     */
     @Override
     public int size() {
+        traceCall(ContainerOperation.SIZE);
+        long start = startTiming();
+        try {
+            return visibleSize();
+        } finally {
+            stopTiming(ContainerOperation.SIZE, start);
+        }
+    }
+
+    /**
+     * @return the number of visible items, without counting or tracing the
+     *         call
+     */
+    int visibleSize() {
+        if (visiblePositions != null) {
+            return visiblePositions.cardinality();
+        } else if (filteredRows != null) {
+            return filteredRows.cardinality();
+        }
         return itemCount;
     }
 
@@ -304,18 +1452,70 @@ public class MockupContainer implements Container, Container.Indexed,
 
     @Override
     public Object getIdByIndex(int index) {
-        if (index < 0 || index >= itemCount) {
+        traceIndex(ContainerOperation.GET_ID_BY_INDEX, index);
+        long start = startTiming();
+        try {
+            return idAt(index);
+        } finally {
+            stopTiming(ContainerOperation.GET_ID_BY_INDEX, start);
+        }
+    }
+
+    /**
+     * @param index
+     * @return the id of the visible item at the index, without counting or
+     *         tracing the call
+     */
+    Integer idAt(int index) {
+        if (index < 0 || index >= visibleSize()) {
             throw new IllegalArgumentException("Illegal index");
         }
+        if (visiblePositions != null) {
+            return Integer.valueOf(sortedIds[visiblePositions.select(index)]);
+        } else if (filteredRows != null) {
+            return Integer.valueOf(filteredRows.select(index));
+        } else if (sortedIds != null) {
+            return Integer.valueOf(sortedIds[index]);
+        }
         return Integer.valueOf(index);
     }
 
     @Override
     public int indexOfId(Object itemId) {
+        traceItem(ContainerOperation.INDEX_OF_ID, itemId);
+        long start = startTiming();
+        try {
+            return visibleIndexOf(itemId);
+        } finally {
+            stopTiming(ContainerOperation.INDEX_OF_ID, start);
+        }
+    }
+
+    private int visibleIndexOf(Object itemId) {
         checkItemIdType(itemId);
-        itemIdIsPossible((Integer) itemId);
+        if (!itemIdIsPossible((Integer) itemId)) {
+            return -1;
+        }
 
-        return ((Integer) itemId).intValue();
+        return indexOfRow((Integer) itemId);
+    }
+
+    /**
+     * @param id
+     *            the id of an item that has not been removed
+     * @return the index of the item in the current visible order, or -1 if
+     *         it is filtered out
+     */
+    private int indexOfRow(int id) {
+        if (visiblePositions != null) {
+            return filteredRows.get(id) ? visiblePositions
+                    .rank(sortedIndexes[id]) : -1;
+        } else if (filteredRows != null) {
+            return filteredRows.get(id) ? filteredRows.rank(id) : -1;
+        } else if (sortedIndexes != null) {
+            return sortedIndexes[id];
+        }
+        return id;
     }
 
     @Override
@@ -332,94 +1532,397 @@ public class MockupContainer implements Container, Container.Indexed,
 
     @Override
     public Object firstItemId() {
-        return itemMap.get(0);
+        traceCall(ContainerOperation.FIRST_ITEM_ID);
+        long start = startTiming();
+        try {
+            return visibleSize() > 0 ? idAt(0) : null;
+        } finally {
+            stopTiming(ContainerOperation.FIRST_ITEM_ID, start);
+        }
     }
 
     @Override
     public boolean isFirstId(Object itemId) {
-        return firstItemId().equals(itemId);
+        traceItem(ContainerOperation.IS_FIRST_ID, itemId);
+        long start = startTiming();
+        try {
+            return visibleSize() > 0 && idAt(0).equals(itemId);
+        } finally {
+            stopTiming(ContainerOperation.IS_FIRST_ID, start);
+        }
     }
 
     @Override
     public boolean isLastId(Object itemId) {
-        return lastItemId().equals(itemId);
+        traceItem(ContainerOperation.IS_LAST_ID, itemId);
+        long start = startTiming();
+        try {
+            return visibleSize() > 0 && idAt(visibleSize() - 1).equals(itemId);
+        } finally {
+            stopTiming(ContainerOperation.IS_LAST_ID, start);
+        }
     }
 
     @Override
     public Object lastItemId() {
-        return itemMap.get(itemCount - 1);
+        traceCall(ContainerOperation.LAST_ITEM_ID);
+        long start = startTiming();
+        try {
+            return visibleSize() > 0 ? idAt(visibleSize() - 1) : null;
+        } finally {
+            stopTiming(ContainerOperation.LAST_ITEM_ID, start);
+        }
     }
 
     @Override
     public Object nextItemId(Object itemId) {
-        checkItemIdType(itemId);
-        itemIdIsPossible((Integer) itemId);
-
-        return itemMap.get(((Integer) itemId) + 1);
+        traceItem(ContainerOperation.NEXT_ITEM_ID, itemId);
+        long start = startTiming();
+        try {
+            int index = visibleIndexOf(itemId);
+            if (index < 0 || index + 1 >= visibleSize()) {
+                return null;
+            }
+            return idAt(index + 1);
+        } finally {
+            stopTiming(ContainerOperation.NEXT_ITEM_ID, start);
+        }
     }
 
     @Override
     public Object prevItemId(Object itemId) {
-        checkItemIdType(itemId);
-        itemIdIsPossible((Integer) itemId);
+        traceItem(ContainerOperation.PREV_ITEM_ID, itemId);
+        long start = startTiming();
+        try {
+            int index = visibleIndexOf(itemId);
+            if (index <= 0) {
+                return null;
+            }
+            return idAt(index - 1);
+        } finally {
+            stopTiming(ContainerOperation.PREV_ITEM_ID, start);
+        }
+    }
+
+    /**
+     * Sorts the container by keeping a permutation of the item ids. The
+     * values of each sort property are ranked once, and the permutation is
+     * computed with a parallel primitive sort. Equal items keep their relative
+     * order. Unknown property ids are ignored. The sort order is reapplied
+     * whenever the contents are regenerated.
+     */
+    @Override
+    public void sort(Object[] propertyId, boolean[] ascending) {
+        AccessTraceRecorder recorder = traceRecorder;
+        if (recorder != null) {
+            recorder.recordSort(propertyId, ascending);
+        }
+        long start = startTiming();
+        try {
+            sortPropertyIds = propertyId.clone();
+            sortAscending = ascending.clone();
+            applySort();
+            updateVisiblePositions();
+            fireItemSetChangeEvent();
+        } finally {
+            stopTiming(ContainerOperation.SORT, start);
+        }
+    }
+
+    /**
+     * All properties are sortable.
+     */
+    @Override
+    public Collection<?> getSortableContainerPropertyIds() {
+        return getPropertyIds();
+    }
+
+    private void applySort() {
+        sortedIds = null;
+        sortedIndexes = null;
+        appliedSortColumns = null;
+        appliedSortDirections = null;
+        if (sortPropertyIds == null) {
+            return;
+        }
+
+        List<Integer> sortColumns = new ArrayList<Integer>();
+        List<Boolean> sortDirections = new ArrayList<Boolean>();
+        for (int i = 0; i < sortPropertyIds.length; i++) {
+            int column = indexOfProperty(sortPropertyIds[i]);
+            if (column >= 0) {
+                sortColumns.add(column);
+                sortDirections.add(i >= sortAscending.length
+                        || sortAscending[i]);
+            }
+        }
+        if (sortColumns.isEmpty()) {
+            return;
+        }
 
-        return itemMap.get(((Integer) itemId) - 1);
+        int[] sortColumnIndexes = new int[sortColumns.size()];
+        boolean[] directions = new boolean[sortColumns.size()];
+        for (int i = 0; i < sortColumnIndexes.length; i++) {
+            sortColumnIndexes[i] = sortColumns.get(i);
+            directions[i] = sortDirections.get(i);
+        }
+
+        appliedSortColumns = sortColumnIndexes;
+        appliedSortDirections = directions;
+        sortedIds = ContainerSorter.sort(this, sortColumnIndexes, directions,
+                parallelism);
+        indexSortedIds();
+    }
+
+    private void indexSortedIds() {
+        sortedIndexes = new int[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            sortedIndexes[sortedIds[i]] = i;
+        }
+    }
+
+    @Override
+    public void addContainerFilter(Filter filter)
+            throws UnsupportedFilterException {
+        traceCall(ContainerOperation.ADD_CONTAINER_FILTER);
+        long start = startTiming();
+        try {
+            if (filter == null) {
+                throw new IllegalArgumentException("Filter cannot be null");
+            }
+            if (filters == null) {
+                filters = new ArrayList<Filter>();
+            }
+            filters.add(filter);
+            applyFilters();
+            fireItemSetChangeEvent();
+        } finally {
+            stopTiming(ContainerOperation.ADD_CONTAINER_FILTER, start);
+        }
+    }
+
+    @Override
+    public void addContainerFilter(Object propertyId, String filterString,
+            boolean ignoreCase, boolean onlyMatchPrefix) {
+        addContainerFilter(new SimpleStringFilter(propertyId, filterString,
+                ignoreCase, onlyMatchPrefix));
+    }
+
+    @Override
+    public void removeContainerFilter(Filter filter) {
+        traceCall(ContainerOperation.REMOVE_CONTAINER_FILTER);
+        long start = startTiming();
+        try {
+            if (filters != null && filters.remove(filter)) {
+                applyFilters();
+                fireItemSetChangeEvent();
+            }
+        } finally {
+            stopTiming(ContainerOperation.REMOVE_CONTAINER_FILTER, start);
+        }
+    }
+
+    @Override
+    public void removeContainerFilters(Object propertyId) {
+        tracePropertyId(ContainerOperation.REMOVE_CONTAINER_FILTERS,
+                propertyId);
+        long start = startTiming();
+        try {
+            if (filters == null) {
+                return;
+            }
+
+            boolean removed = false;
+            for (Iterator<Filter> i = filters.iterator(); i.hasNext();) {
+                if (i.next().appliesToProperty(propertyId)) {
+                    i.remove();
+                    removed = true;
+                }
+            }
+            if (removed) {
+                applyFilters();
+                fireItemSetChangeEvent();
+            }
+        } finally {
+            stopTiming(ContainerOperation.REMOVE_CONTAINER_FILTERS, start);
+        }
+    }
+
+    @Override
+    public void removeAllContainerFilters() {
+        traceCall(ContainerOperation.REMOVE_ALL_CONTAINER_FILTERS);
+        long start = startTiming();
+        try {
+            if (filters != null && !filters.isEmpty()) {
+                filters.clear();
+                applyFilters();
+                fireItemSetChangeEvent();
+            }
+        } finally {
+            stopTiming(ContainerOperation.REMOVE_ALL_CONTAINER_FILTERS, start);
+        }
+    }
+
+    @Override
+    public Collection<Filter> getContainerFilters() {
+        if (filters == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(filters);
+    }
+
+    private void applyFilters() {
+        filteredRows = null;
+        if (filters != null && !filters.isEmpty()) {
+            FilterEvaluator evaluator = new FilterEvaluator(this);
+            filteredRows = evaluator.evaluate(filters.get(0));
+            for (int i = 1; i < filters.size(); i++) {
+                filteredRows.and(evaluator.evaluate(filters.get(i)));
+            }
+        }
+        if (removedCount > 0) {
+            if (filteredRows == null) {
+                filteredRows = new RowBitmap(itemCount, true);
+            }
+            filteredRows.andNot(removedRows);
+        }
+        if (filteredRows != null) {
+            filteredRows.buildRankIndex();
+        }
+        visibleRowsShared = false;
+        updateVisiblePositions();
+    }
+
+    private boolean hasFilters() {
+        return filters != null && !filters.isEmpty();
+    }
+
+    private boolean passesFilters(int itemId) {
+        if (hasFilters()) {
+            Item item = getUnfilteredItem(itemId);
+            for (Filter filter : filters) {
+                if (!filter.passesFilter(itemId, item)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Combines the sort order and the filter result. Only needed if both are
+     * present; otherwise the permutation or the bitmap is used directly.
+     */
+    private void updateVisiblePositions() {
+        visiblePositions = null;
+        if (sortedIds == null || filteredRows == null) {
+            return;
+        }
+
+        visiblePositions = new RowBitmap(itemCount, false);
+        for (int position = 0; position < itemCount; position++) {
+            if (filteredRows.get(sortedIds[position])) {
+                visiblePositions.set(position);
+            }
+        }
+        visiblePositions.buildRankIndex();
     }
 
     @Override
     public boolean areChildrenAllowed(Object itemId) {
-        checkItemIdType(itemId);
-        return itemIdIsPossible((Integer) itemId);
+        traceItem(ContainerOperation.ARE_CHILDREN_ALLOWED, itemId);
+        long start = startTiming();
+        try {
+            checkItemIdType(itemId);
+            return itemIdIsPossible((Integer) itemId);
+        } finally {
+            stopTiming(ContainerOperation.ARE_CHILDREN_ALLOWED, start);
+        }
     }
 
     @Override
     public Collection<Integer> getChildren(Object itemId) {
-        checkItemIdType(itemId);
-        if (itemIdIsPossible((Integer) itemId)) {
-            return ((MockupItem) getItem(itemId)).getChildren();
-        } else {
-            return null;
+        traceItem(ContainerOperation.GET_CHILDREN, itemId);
+        long start = startTiming();
+        try {
+            checkItemIdType(itemId);
+            if (itemIdIsPossible((Integer) itemId)) {
+                simulateDelay();
+                simulateDelay(LatencyScope.PAGE);
+                touch((Integer) itemId);
+                return computeChildren((Integer) itemId);
+            } else {
+                return null;
+            }
+        } finally {
+            stopTiming(ContainerOperation.GET_CHILDREN, start);
         }
     }
 
     @Override
     public Object getParent(Object itemId) {
-        checkItemIdType(itemId);
-        if (itemIdIsPossible((Integer) itemId)) {
-            return ((MockupItem) getItem(itemId)).getParent();
-        } else {
-            return null;
+        traceItem(ContainerOperation.GET_PARENT, itemId);
+        long start = startTiming();
+        try {
+            checkItemIdType(itemId);
+            if (itemIdIsPossible((Integer) itemId)) {
+                simulateDelay();
+                touch((Integer) itemId);
+                return computeParent((Integer) itemId);
+            } else {
+                return null;
+            }
+        } finally {
+            stopTiming(ContainerOperation.GET_PARENT, start);
         }
     }
 
     @Override
     public boolean hasChildren(Object itemId) {
-        checkItemIdType(itemId);
-        if (itemIdIsPossible((Integer) itemId)) {
-            return !((MockupItem) getItem(itemId)).getChildren().isEmpty();
-        } else {
-            return false;
+        traceItem(ContainerOperation.HAS_CHILDREN, itemId);
+        long start = startTiming();
+        try {
+            checkItemIdType(itemId);
+            if (itemIdIsPossible((Integer) itemId)) {
+                simulateDelay();
+                touch((Integer) itemId);
+                return !computeChildren((Integer) itemId).isEmpty();
+            } else {
+                return false;
+            }
+        } finally {
+            stopTiming(ContainerOperation.HAS_CHILDREN, start);
         }
     }
 
     @Override
     public boolean isRoot(Object itemId) {
-        checkItemIdType(itemId);
-        if (itemIdIsPossible((Integer) itemId)) {
-            return ((MockupItem) getItem(itemId)).isRoot();
-        } else {
-            return false;
+        traceItem(ContainerOperation.IS_ROOT, itemId);
+        long start = startTiming();
+        try {
+            checkItemIdType(itemId);
+            if (itemIdIsPossible((Integer) itemId)) {
+                simulateDelay();
+                touch((Integer) itemId);
+                return parentOf((Integer) itemId) < 0;
+            } else {
+                return false;
+            }
+        } finally {
+            stopTiming(ContainerOperation.IS_ROOT, start);
         }
     }
 
     @Override
     public Collection<Integer> rootItemIds() {
-        ArrayList<Integer> rootIds = new ArrayList<Integer>(numberOfChildren);
-        for (int i = 0; i < numberOfChildren; i++) {
-            rootIds.add(i);
+        traceCall(ContainerOperation.ROOT_ITEM_IDS);
+        long start = startTiming();
+        try {
+            simulateDelay(LatencyScope.PAGE);
+            return computeRoots();
+        } finally {
+            stopTiming(ContainerOperation.ROOT_ITEM_IDS, start);
         }
-
-        return rootIds;
     }
 
     @Override
@@ -428,35 +1931,295 @@ public class MockupContainer implements Container, Container.Indexed,
         throw new UnsupportedOperationException();
     }
 
-    @Override
-    public boolean setParent(Object itemId, Object newParentId)
-            throws UnsupportedOperationException {
-        throw new UnsupportedOperationException();
+    @Override
+    public boolean setParent(Object itemId, Object newParentId)
+            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Set a delay (milliseconds) for all the get item operations. Can be used
+     * to simulate slow containers. Only used if no latency model has been
+     * set.
+     * 
+     * @param getItemDelay
+     * @see #setLatencyModel(LatencyModel)
+     */
+    public void setItemDelay(int getItemDelay) {
+        this.getItemDelay = getItemDelay;
+    }
+
+    public int getGetItemDelay() {
+        return this.getItemDelay;
+    }
+
+    /**
+     * Sets the model that decides how long each simulated backend call takes.
+     * Overrides the fixed item delay.
+     * 
+     * @param latencyModel
+     *            the model, or <code>null</code> to use the item delay
+     * @see LatencyModels
+     */
+    public void setLatencyModel(LatencyModel latencyModel) {
+        this.latencyModel = latencyModel;
+    }
+
+    /**
+     * @return the latency model in use, a constant model of the item delay if
+     *         none has been set
+     */
+    public LatencyModel getLatencyModel() {
+        if (latencyModel != null) {
+            return latencyModel;
+        } else if (getItemDelay > 0) {
+            return LatencyModels.constant(getItemDelay, TimeUnit.MILLISECONDS);
+        }
+        return LatencyModels.none();
+    }
+
+    /**
+     * Turns the collection of {@link AccessMetrics} on or off. Turning the
+     * metrics off discards them.
+     * 
+     * @param enabled
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        if (enabled && metrics == null) {
+            metrics = new AccessMetrics(itemCount);
+        } else if (!enabled && metrics != null) {
+            metrics.unregisterMBean();
+            metrics = null;
+        }
+    }
+
+    /**
+     * @return the metrics of the calls made to this container, or null if
+     *         they are not enabled
+     * @see #setMetricsEnabled(boolean)
+     */
+    public AccessMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Starts recording the calls made to this container into an access trace,
+     * or stops recording if the recorder is null. The recorder is not closed
+     * when the recording is stopped.
+     * 
+     * @param traceRecorder
+     * @see AccessTraceReplayer
+     */
+    public void setTraceRecorder(AccessTraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    public AccessTraceRecorder getTraceRecorder() {
+        return traceRecorder;
+    }
+
+    /**
+     * Sets which calls are charged the delay. Defaults to
+     * {@link LatencyScope#ITEM}.
+     * 
+     * @param latencyScope
+     */
+    public void setLatencyScope(LatencyScope latencyScope) {
+        if (latencyScope == null) {
+            throw new IllegalArgumentException("Latency scope cannot be null");
+        }
+        this.latencyScope = latencyScope;
+    }
+
+    public LatencyScope getLatencyScope() {
+        return latencyScope;
+    }
+
+    /**
+     * <p>
+     * Set the number of items. The existing items keep their values and
+     * place in the hierarchy: growing appends new items after the last one
+     * and shrinking removes items from the end, so the cost depends on the
+     * number of items added or removed. Storage grows by half of its size
+     * at a time, which keeps the cost of growing in small steps constant per
+     * added item.
+     * </p>
+     * 
+     * <p>
+     * Only the added items are sorted and filtered, unless there are many of
+     * them compared to the existing items. The listeners get an
+     * {@link ItemAddEvent} or an {@link ItemRemoveEvent} if the changed items
+     * are consecutive in the visible order, otherwise a plain item set change
+     * event. The contents of a snapshot are regenerated completely.
+     * </p>
+     * 
+     * @param itemCount
+     */
+    public void setItemCount(int itemCount) {
+        if (itemCount < 0) {
+            throw new IllegalArgumentException(
+                    "Item count cannot be negative");
+        }
+        int oldItemCount = this.itemCount;
+        this.itemCount = itemCount;
+        changeItemCount(oldItemCount);
+    }
+
+    /**
+     * Adds or removes items at the end after the item count has been
+     * changed.
+     * 
+     * @param oldItemCount
+     *            the item count before the change
+     */
+    private void changeItemCount(int oldItemCount) {
+        if (itemCount == oldItemCount) {
+            return;
+        }
+        if (snapshotContents) {
+            rebuildContents();
+            return;
+        }
+
+        // the order and the filter results still describe the old items
+        boolean growing = itemCount > oldItemCount;
+        int oldSize = filteredRows != null ? visibleSize() : oldItemCount;
+        int firstChanged = growing ? oldItemCount : itemCount;
+        while (firstChanged < oldItemCount && isRemoved(firstChanged)) {
+            firstChanged++;
+        }
+        int firstIndex = firstChanged < oldItemCount ? indexOfRow(firstChanged)
+                : -1;
+
+        if (growing) {
+            appendRows(oldItemCount);
+        } else {
+            removeRows(oldItemCount);
+        }
+        columnIndexes = null;
+        if (metrics != null) {
+            metrics.grow(itemCount);
+        }
+        updateOrder(oldItemCount);
+
+        // the changed items are consecutive in the visible order only if
+        // they are all visible and not scattered by the sort order
+        int changed = Math.abs(visibleSize() - oldSize);
+        if (changed == 0 || hasFilters() || sortedIds != null && changed > 1) {
+            fireItemSetChangeEvent();
+        } else if (growing) {
+            fireItemAddEvent(firstChanged, indexOfRow(firstChanged), changed);
+        } else {
+            fireItemRemoveEvent(firstChanged, firstIndex, changed);
+        }
+    }
+
+    /**
+     * Brings the sort order and the filter results up to date after items
+     * have been added or removed at the end. Only the added items are sorted
+     * and filtered, unless there are many of them compared to the existing
+     * items.
+     */
+    private void updateOrder(int oldItemCount) {
+        if (itemCount - oldItemCount > oldItemCount >>> 3) {
+            applySort();
+            applyFilters();
+            return;
+        }
+
+        if (sortedIds != null) {
+            if (itemCount > oldItemCount) {
+                sortedIds = ContainerSorter.insert(this, sortedIds,
+                        oldItemCount, appliedSortColumns, appliedSortDirections);
+            } else {
+                int[] remaining = new int[itemCount];
+                int index = 0;
+                for (int id : sortedIds) {
+                    if (id < itemCount) {
+                        remaining[index++] = id;
+                    }
+                }
+                sortedIds = remaining;
+            }
+            indexSortedIds();
+        }
+        if (filteredRows != null) {
+            if (!hasFilters() && removedCount == 0) {
+                filteredRows = null;
+            } else {
+                RowBitmap rows = filteredRows.copyOf(itemCount);
+                for (int row = oldItemCount; row < itemCount; row++) {
+                    if (passesFilters(row)) {
+                        rows.set(row);
+                    }
+                }
+                rows.buildRankIndex();
+                filteredRows = rows;
+            }
+            visibleRowsShared = false;
+        }
+        updateVisiblePositions();
+    }
+
+    private void appendRows(int oldItemCount) {
+        if (items != null && itemCount > items.length) {
+            items = Arrays.copyOf(items, grownSize(items.length, itemCount));
+        }
+        if (columns != null) {
+            for (int column = 0; column < columns.length; column++) {
+                int size = columns[column].size();
+                if (itemCount > size) {
+                    columns[column] = columns[column].resize(grownSize(size,
+                            itemCount));
+                }
+            }
+        }
+        if (removedRows != null && itemCount > removedRows.size()) {
+            removedRows = removedRows.copyOf(grownSize(removedRows.size(),
+                    itemCount));
+        }
+        generateRange(oldItemCount, itemCount);
     }
 
     /**
-     * Set a delay (milliseconds) for all the get item operations. Can be used
-     * to simulate slow containers.
-     * 
-     * @param getItemDelay
+     * Drops the removed rows, and the storage too if less than a quarter of
+     * it remains in use.
      */
-    public void setItemDelay(int getItemDelay) {
-        this.getItemDelay = getItemDelay;
-    }
-
-    public int getGetItemDelay() {
-        return this.getItemDelay;
+    private void removeRows(int oldItemCount) {
+        if (items != null) {
+            if (itemCount < items.length >>> 2) {
+                items = Arrays.copyOf(items, itemCount);
+            } else {
+                Arrays.fill(items, itemCount, oldItemCount, null);
+            }
+        }
+        if (columns != null) {
+            for (int column = 0; column < columns.length; column++) {
+                if (itemCount < columns[column].size() >>> 2) {
+                    columns[column] = columns[column].resize(itemCount);
+                } else {
+                    columns[column].clear(itemCount, oldItemCount);
+                }
+            }
+        }
+        for (Iterator<Long> i = modifiedCells.iterator(); i.hasNext();) {
+            if (i.next() >>> 32 >= itemCount) {
+                i.remove();
+            }
+        }
+        if (removedRows != null) {
+            removedRows = removedRows.copyOf(itemCount);
+            removedRows.buildRankIndex();
+            removedCount = removedRows.cardinality();
+            if (removedCount == 0) {
+                removedRows = null;
+            }
+        }
     }
 
-    /**
-     * Set the number of items. Setting this effectively rebuilds the whole
-     * container.
-     * 
-     * @param itemCount
-     */
-    public void setItemCount(int itemCount) {
-        this.itemCount = itemCount;
-        rebuildContents();
+    private static int grownSize(int size, int required) {
+        long grown = size + (size >>> 1);
+        return (int) Math.max(required, Math.min(grown, Integer.MAX_VALUE - 8));
     }
 
     public int getItemCount() {
@@ -512,74 +2275,323 @@ public class MockupContainer implements Container, Container.Indexed,
         return dataSet;
     }
 
+    /**
+     * Set the seed from which the contents of this container are computed.
+     * Containers with equal configurations and seeds have identical contents
+     * when a {@link DeterministicDataSet} is used. Causes the container to
+     * regenerate all contents.
+     * 
+     * @param seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        rebuildContents();
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Set the maximum number of threads used to generate the contents of this
+     * container. The generated contents don't depend on this setting. Takes
+     * effect the next time the contents are generated.
+     * 
+     * @param parallelism
+     *            1 to generate the contents in the calling thread
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(
+                    "Parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Set the {@link StorageMode} of this container. Causes the container to
+     * regenerate all contents.
+     * 
+     * @param storageMode
+     */
+    public void setStorageMode(StorageMode storageMode) {
+        if (storageMode == null) {
+            throw new IllegalArgumentException("Storage mode cannot be null");
+        }
+        this.storageMode = storageMode;
+        rebuildContents();
+    }
+
+    public StorageMode getStorageMode() {
+        return storageMode;
+    }
+
     /* Listener methods */
 
+    /**
+     * <p>
+     * Starts a transaction. Until it is committed, the item set and property
+     * set change events are collected instead of fired, so that a number of
+     * changes, for example reconfiguring the container with several setters,
+     * reach the listeners as at most one event of each type: a single
+     * repaint of a Table instead of one per change.
+     * </p>
+     * 
+     * <p>
+     * The changes themselves take effect immediately and cannot be rolled
+     * back. Transactions can be nested; the events are fired when the
+     * outermost one is committed. The value change events of the properties
+     * are not deferred.
+     * </p>
+     * 
+     * @see #commitTransaction()
+     */
+    public void beginTransaction() {
+        transactionDepth++;
+    }
+
+    /**
+     * Ends a transaction. When the outermost transaction ends, the listeners
+     * get a property set change event if the properties changed, and then an
+     * item set change event if the items changed. Added items are reported
+     * with a single {@link ItemAddEvent} if nothing else changed and they
+     * were added one after another; otherwise the item set change event is a
+     * plain one.
+     * 
+     * @throws IllegalStateException
+     *             if no transaction has been begun
+     */
+    public void commitTransaction() {
+        if (transactionDepth == 0) {
+            throw new IllegalStateException("No transaction to commit");
+        }
+        if (--transactionDepth > 0) {
+            return;
+        }
+
+        boolean propertySetChanged = pendingPropertySetChange;
+        ItemSetChangeEvent itemSetChange = pendingItemSetChange;
+        pendingPropertySetChange = false;
+        pendingItemSetChange = null;
+        if (propertySetChanged) {
+            firePropertySetChangeEvent();
+        }
+        if (itemSetChange != null) {
+            fireItemSetChangeEvent(itemSetChange);
+        }
+    }
+
+    /**
+     * @return true if a transaction has been begun and not yet committed
+     */
+    public boolean isInTransaction() {
+        return transactionDepth > 0;
+    }
+
     protected void fireItemSetChangeEvent() {
-        if (itemSetChangeListeners != null) {
-            for (ItemSetChangeListener listener : itemSetChangeListeners) {
-                listener.containerItemSetChange(new ItemSetChangeEvent() {
+        if (itemSetChangeListeners != null || transactionDepth > 0) {
+            fireItemSetChangeEvent(new ItemSetChangeEvent() {
 
-                    private static final long serialVersionUID = -8976859511605227196L;
+                private static final long serialVersionUID = -8976859511605227196L;
 
-                    @Override
-                    public Container getContainer() {
-                        return MockupContainer.this;
-                    }
+                @Override
+                public Container getContainer() {
+                    return MockupContainer.this;
+                }
+
+            });
+        }
+    }
+
+    /**
+     * Sends an event to the item set change listeners, or merges it with the
+     * other events of the current transaction.
+     * 
+     * @param event
+     */
+    private void fireItemSetChangeEvent(ItemSetChangeEvent event) {
+        if (transactionDepth > 0) {
+            pendingItemSetChange = pendingItemSetChange == null ? event
+                    : mergeItemSetChanges(pendingItemSetChange, event);
+            return;
+        }
+        ItemSetChangeListener[] listeners = itemSetChangeListeners;
+        if (listeners != null) {
+            for (ItemSetChangeListener listener : listeners) {
+                listener.containerItemSetChange(event);
+            }
+        }
+    }
 
-                });
+    /**
+     * @return a single event that describes both changes
+     */
+    private ItemSetChangeEvent mergeItemSetChanges(ItemSetChangeEvent first,
+            ItemSetChangeEvent second) {
+        if (first instanceof ItemAddEvent && second instanceof ItemAddEvent) {
+            ItemAddEvent added = (ItemAddEvent) first;
+            ItemAddEvent next = (ItemAddEvent) second;
+            int count = added.getAddedItemsCount();
+            if ((Integer) added.getFirstItemId() + count == (Integer) next
+                    .getFirstItemId()
+                    && added.getFirstIndex() + count == next.getFirstIndex()) {
+                return createItemAddEvent((Integer) added.getFirstItemId(),
+                        added.getFirstIndex(),
+                        count + next.getAddedItemsCount());
             }
         }
+        return new ItemSetChangeEvent() {
+
+            private static final long serialVersionUID = 7316473893413318426L;
+
+            @Override
+            public Container getContainer() {
+                return MockupContainer.this;
+            }
+        };
     }
 
-    protected void firePropertySetChangeEvent() {
-        if (propertySetChangeListeners != null) {
+    /**
+     * @param firstItemId
+     *            the id of the first added item
+     * @param firstIndex
+     *            the visible index of the first added item
+     * @param count
+     *            the number of added items
+     */
+    protected void fireItemAddEvent(int firstItemId, int firstIndex, int count) {
+        if (itemSetChangeListeners != null || transactionDepth > 0) {
+            fireItemSetChangeEvent(createItemAddEvent(firstItemId, firstIndex,
+                    count));
+        }
+    }
 
-            for (PropertySetChangeListener listener : propertySetChangeListeners) {
-                listener.containerPropertySetChange(new PropertySetChangeEvent() {
+    private ItemAddEvent createItemAddEvent(final int firstItemId,
+            final int firstIndex, final int count) {
+        return new ItemAddEvent() {
 
-                    private static final long serialVersionUID = -2869862286777960682L;
+            private static final long serialVersionUID = 4606425287374853021L;
 
-                    @Override
-                    public Container getContainer() {
-                        return MockupContainer.this;
-                    }
-                });
+            @Override
+            public Container getContainer() {
+                return MockupContainer.this;
+            }
+
+            @Override
+            public Object getFirstItemId() {
+                return firstItemId;
+            }
+
+            @Override
+            public int getFirstIndex() {
+                return firstIndex;
+            }
+
+            @Override
+            public int getAddedItemsCount() {
+                return count;
+            }
+        };
+    }
+
+    /**
+     * @param firstItemId
+     *            the id of the first removed item
+     * @param firstIndex
+     *            the visible index of the first removed item
+     * @param count
+     *            the number of removed items
+     */
+    protected void fireItemRemoveEvent(final int firstItemId,
+            final int firstIndex, final int count) {
+        if (itemSetChangeListeners != null || transactionDepth > 0) {
+            fireItemSetChangeEvent(new ItemRemoveEvent() {
+
+                private static final long serialVersionUID = -1409626497373562770L;
+
+                @Override
+                public Container getContainer() {
+                    return MockupContainer.this;
+                }
+
+                @Override
+                public Object getFirstItemId() {
+                    return firstItemId;
+                }
+
+                @Override
+                public int getFirstIndex() {
+                    return firstIndex;
+                }
+
+                @Override
+                public int getRemovedItemsCount() {
+                    return count;
+                }
+            });
+        }
+    }
+
+    protected void firePropertySetChangeEvent() {
+        if (transactionDepth > 0) {
+            pendingPropertySetChange = true;
+            return;
+        }
+        PropertySetChangeListener[] listeners = propertySetChangeListeners;
+        if (listeners != null) {
+            PropertySetChangeEvent event = new PropertySetChangeEvent() {
+
+                private static final long serialVersionUID = -2869862286777960682L;
+
+                @Override
+                public Container getContainer() {
+                    return MockupContainer.this;
+                }
+            };
+            for (PropertySetChangeListener listener : listeners) {
+                listener.containerPropertySetChange(event);
             }
         }
     }
 
     @Override
-    public void addPropertySetChangeListener(PropertySetChangeListener listener) {
+    public synchronized void addPropertySetChangeListener(
+            PropertySetChangeListener listener) {
         if (propertySetChangeListeners == null) {
-            propertySetChangeListeners = new LinkedList<PropertySetChangeListener>();
+            propertySetChangeListeners = new PropertySetChangeListener[] { listener };
+        } else {
+            propertySetChangeListeners = ListenerArrays.add(
+                    propertySetChangeListeners, listener);
         }
-        propertySetChangeListeners.add(listener);
     }
 
     @Override
-    public void removePropertySetChangeListener(
+    public synchronized void removePropertySetChangeListener(
             PropertySetChangeListener listener) {
-        if (propertySetChangeListeners == null) {
-            return;
-        }
-        propertySetChangeListeners.remove(listener);
+        propertySetChangeListeners = ListenerArrays.remove(
+                propertySetChangeListeners, listener);
     }
 
     @Override
-    public void addItemSetChangeListener(ItemSetChangeListener listener) {
+    public synchronized void addItemSetChangeListener(
+            ItemSetChangeListener listener) {
         if (itemSetChangeListeners == null) {
-            itemSetChangeListeners = new LinkedList<ItemSetChangeListener>();
+            itemSetChangeListeners = new ItemSetChangeListener[] { listener };
+        } else {
+            itemSetChangeListeners = ListenerArrays.add(itemSetChangeListeners,
+                    listener);
         }
-        itemSetChangeListeners.add(listener);
     }
 
     @Override
-    public void removeItemSetChangeListener(ItemSetChangeListener listener) {
-
-        if (itemSetChangeListeners == null) {
-            return;
-        }
-        itemSetChangeListeners.remove(listener);
+    public synchronized void removeItemSetChangeListener(
+            ItemSetChangeListener listener) {
+        itemSetChangeListeners = ListenerArrays.remove(itemSetChangeListeners,
+                listener);
     }
 
     @Override
@@ -606,4 +2618,408 @@ public class MockupContainer implements Container, Container.Indexed,
         removePropertySetChangeListener(listener);
     }
 
+    /* Serialization */
+
+    /**
+     * Writes the configuration, the sort order, the filters and the listeners
+     * of the container. The contents are written only if they cannot be
+     * generated again: if the data set is not deterministic, if the contents
+     * come from a snapshot, or if this is a subclass that may generate its
+     * contents differently. Otherwise only the cells that differ from the
+     * generated contents are written.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(itemCount);
+        out.writeInt(propertyCount);
+        out.writeInt(numberOfChildren);
+        out.writeLong(seed);
+        out.writeUTF(storageMode.name());
+        out.writeInt(getItemDelay);
+        out.writeUTF(latencyScope.name());
+        out.writeInt(parallelism);
+        out.writeBoolean(metrics != null);
+        out.writeObject(typedProperties.isEmpty() ? null : typedProperties);
+        out.writeObject(latencyModel);
+        // the default data set is created again instead of writing its words
+        out.writeObject(DefaultDataSet.isDefault(dataSet) ? null : dataSet);
+        out.writeObject(sortPropertyIds);
+        out.writeObject(sortAscending);
+        out.writeObject(filters);
+        out.writeObject(itemSetChangeListeners);
+        out.writeObject(propertySetChangeListeners);
+
+        boolean regenerate = canRegenerateContents();
+        out.writeBoolean(regenerate);
+        if (regenerate) {
+            writeModifiedCells(out);
+        } else {
+            out.writeObject(containerPropertyArray);
+            out.writeObject(generators);
+            out.writeObject(items);
+            out.writeObject(columns);
+            out.writeBoolean(vocabularyCodes);
+            out.writeBoolean(snapshotContents);
+        }
+
+        out.writeInt(removedCount);
+        for (int row = removedCount > 0 ? removedRows.nextSetBit(0) : -1; row >= 0; row = removedRows
+                .nextSetBit(row + 1)) {
+            out.writeInt(row);
+        }
+    }
+
+    private boolean canRegenerateContents() {
+        return getClass() == MockupContainer.class && !snapshotContents
+                && getDataSet() instanceof DeterministicDataSet;
+    }
+
+    /**
+     * Writes the modified cells as a count followed by the position and the
+     * value of each cell. Stored items are compared with the generated
+     * values, but only for the properties that have been created; the column
+     * based storage modes know which cells have been written.
+     */
+    private void writeModifiedCells(ObjectOutputStream out) throws IOException {
+        List<Long> cells = new ArrayList<Long>();
+        List<Object> values = new ArrayList<Object>();
+        if (items != null) {
+            for (int row = 0; row < itemCount; row++) {
+                for (int column = 0; column < containerPropertyArray.length; column++) {
+                    MockupProperty<?> property = items[row]
+                            .getCreatedProperty(column);
+                    if (property == null) {
+                        continue;
+                    }
+                    Object value = property.getValue();
+                    Object generated = generateValue(row, column);
+                    if (value == null ? generated != null : !value
+                            .equals(generated)) {
+                        cells.add((long) row << 32 | column);
+                        values.add(value);
+                    }
+                }
+            }
+        } else if (columns != null) {
+            for (Long cell : modifiedCells) {
+                cells.add(cell);
+                values.add(columns[(int) (long) cell].get((int) (cell >>> 32)));
+            }
+        }
+
+        out.writeInt(cells.size());
+        for (int i = 0; i < cells.size(); i++) {
+            out.writeLong(cells.get(i));
+            out.writeObject(values.get(i));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        Builder configuration = new Builder().itemCount(in.readInt())
+                .propertyCount(in.readInt()).numberOfChildren(in.readInt())
+                .seed(in.readLong())
+                .storageMode(StorageMode.valueOf(in.readUTF()))
+                .itemDelay(in.readInt())
+                .latencyScope(LatencyScope.valueOf(in.readUTF()))
+                .parallelism(in.readInt()).metrics(in.readBoolean());
+        Map<String, ValueGenerator<?>> typed = (Map<String, ValueGenerator<?>>) in
+                .readObject();
+        if (typed != null) {
+            configuration.typedProperties.putAll(typed);
+        }
+        configuration.latencyModel((LatencyModel) in.readObject());
+        // null for the default data set
+        configuration.dataSet = (MockupDataSet) in.readObject();
+        writeLocks = createWriteLocks();
+        modifiedCells = createCellSet();
+        readConfiguration(configuration);
+
+        sortPropertyIds = (Object[]) in.readObject();
+        sortAscending = (boolean[]) in.readObject();
+        filters = (List<Filter>) in.readObject();
+        itemSetChangeListeners = (ItemSetChangeListener[]) in.readObject();
+        propertySetChangeListeners = (PropertySetChangeListener[]) in
+                .readObject();
+
+        if (in.readBoolean()) {
+            generateProperties();
+            generateItems();
+            readModifiedCells(in);
+        } else {
+            containerPropertyArray = (String[]) in.readObject();
+            generators = (ValueGenerator<?>[]) in.readObject();
+            items = (MockupItem[]) in.readObject();
+            columns = (Column[]) in.readObject();
+            vocabularyCodes = in.readBoolean();
+            snapshotContents = in.readBoolean();
+        }
+
+        int removed = in.readInt();
+        if (removed > 0) {
+            removedRows = new RowBitmap(itemCount, false);
+            for (int i = 0; i < removed; i++) {
+                removedRows.set(in.readInt());
+            }
+            removedCount = removed;
+        }
+        applySort();
+        applyFilters();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readModifiedCells(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            long cell = in.readLong();
+            int row = (int) (cell >>> 32);
+            int column = (int) cell;
+            Object value = in.readObject();
+            if (items != null) {
+                ((Property<Object>) items[row]
+                        .getItemProperty(containerPropertyArray[column]))
+                        .setValue(value);
+            } else {
+                setStoredValue(row, column, value);
+            }
+        }
+    }
+
+    /**
+     * Splits the generation of a range of rows into independent subranges for
+     * a {@link ForkJoinPool}.
+     */
+    private class GenerateRowsTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 2826213405580891513L;
+
+        private final int firstRow;
+
+        private final int endRow;
+
+        GenerateRowsTask(int firstRow, int endRow) {
+            this.firstRow = firstRow;
+            this.endRow = endRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (endRow - firstRow <= ROWS_PER_TASK) {
+                generateRows(firstRow, endRow);
+            } else {
+                int middle = (firstRow + endRow) >>> 1;
+                invokeAll(new GenerateRowsTask(firstRow, middle),
+                        new GenerateRowsTask(middle, endRow));
+            }
+        }
+    }
+
+    /**
+     * Fluent builder for {@link MockupContainer MockupContainers}. All the
+     * settings are collected first and the contents are generated only once,
+     * either by {@link #build()} or by {@link #applyTo(MockupContainer)}.
+     * 
+     * <pre>
+     * MockupContainer container = MockupContainer.builder().itemCount(500000)
+     *         .propertyCount(30).numberOfChildren(20).seed(1).build();
+     * </pre>
+     */
+    public static class Builder implements Serializable {
+
+        private static final long serialVersionUID = -4305883460151096787L;
+
+        private int itemCount = 20;
+
+        private int propertyCount = 5;
+
+        private int numberOfChildren = 5;
+
+        private MockupDataSet dataSet;
+
+        private long seed = System.currentTimeMillis();
+
+        private StorageMode storageMode = StorageMode.ITEMS;
+
+        private int itemDelay;
+
+        private LatencyModel latencyModel;
+
+        private LatencyScope latencyScope = LatencyScope.ITEM;
+
+        private boolean metrics;
+
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        private final Map<String, ValueGenerator<?>> typedProperties = new LinkedHashMap<String, ValueGenerator<?>>();
+
+        public Builder itemCount(int itemCount) {
+            if (itemCount < 0) {
+                throw new IllegalArgumentException(
+                        "Item count cannot be negative");
+            }
+            this.itemCount = itemCount;
+            return this;
+        }
+
+        public Builder propertyCount(int propertyCount) {
+            if (propertyCount < 0) {
+                throw new IllegalArgumentException(
+                        "Property count cannot be negative");
+            }
+            this.propertyCount = propertyCount;
+            return this;
+        }
+
+        public Builder numberOfChildren(int numberOfChildren) {
+            if (numberOfChildren < 0) {
+                throw new IllegalArgumentException(
+                        "Number of children cannot be negative");
+            }
+            this.numberOfChildren = numberOfChildren;
+            return this;
+        }
+
+        public Builder dataSet(MockupDataSet dataSet) {
+            if (dataSet == null) {
+                throw new IllegalArgumentException("Dataset cannot be null");
+            }
+            this.dataSet = dataSet;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Builder storageMode(StorageMode storageMode) {
+            if (storageMode == null) {
+                throw new IllegalArgumentException(
+                        "Storage mode cannot be null");
+            }
+            this.storageMode = storageMode;
+            return this;
+        }
+
+        /**
+         * Adds a typed property in addition to the generated string
+         * properties.
+         * 
+         * @param propertyId
+         *            the id of the property
+         * @param generator
+         *            the generator of the values, for example from
+         *            {@link ValueGenerators}
+         * @see ValueGenerator
+         */
+        public Builder typedProperty(String propertyId,
+                ValueGenerator<?> generator) {
+            if (propertyId == null || generator == null) {
+                throw new IllegalArgumentException(
+                        "Property id and generator cannot be null");
+            }
+            typedProperties.put(propertyId, generator);
+            return this;
+        }
+
+        public Builder itemDelay(int itemDelay) {
+            this.itemDelay = itemDelay;
+            return this;
+        }
+
+        /**
+         * @param latencyModel
+         *            the model for the delay of the simulated backend calls,
+         *            or <code>null</code> to use the item delay
+         * @see MockupContainer#setLatencyModel(LatencyModel)
+         */
+        public Builder latencyModel(LatencyModel latencyModel) {
+            this.latencyModel = latencyModel;
+            return this;
+        }
+
+        /**
+         * @param latencyScope
+         *            the calls that are charged the delay
+         * @see LatencyScope
+         */
+        public Builder latencyScope(LatencyScope latencyScope) {
+            if (latencyScope == null) {
+                throw new IllegalArgumentException(
+                        "Latency scope cannot be null");
+            }
+            this.latencyScope = latencyScope;
+            return this;
+        }
+
+        /**
+         * @param metrics
+         *            true to collect {@link AccessMetrics}
+         * @see MockupContainer#setMetricsEnabled(boolean)
+         */
+        public Builder metrics(boolean metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param parallelism
+         *            the maximum number of threads used to generate the
+         *            contents, 1 to generate them in the calling thread. The
+         *            generated contents are the same regardless of this
+         *            setting. Defaults to the number of available processors.
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException(
+                        "Parallelism must be at least 1");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * @return a new container with the contents generated once
+         * @throws IllegalArgumentException
+         *             if the number of children exceeds the item count
+         */
+        public MockupContainer build() {
+            validate();
+            return new MockupContainer(this);
+        }
+
+        /**
+         * Applies these settings to an existing container, regenerating its
+         * contents at most once.
+         * 
+         * @param container
+         * @return the given container
+         * @see MockupContainer#configure(Builder)
+         */
+        public MockupContainer applyTo(MockupContainer container) {
+            container.configure(this);
+            return container;
+        }
+
+        /**
+         * Checks the settings that depend on each other, which the
+         * individual setters cannot check.
+         */
+        private void validate() {
+            if (numberOfChildren > itemCount) {
+                throw new IllegalArgumentException(
+                        "Number of children per item cannot exceed the total number of items in the container.");
+            }
+        }
+
+        private MockupDataSet getDataSet() {
+            if (dataSet == null) {
+                dataSet = new DefaultDataSet();
+            }
+            return dataSet;
+        }
+    }
 }
@@ -1,13 +1,16 @@
 package org.vaadin.risto.mockupcontainer;
 
+import java.io.Serializable;
+
 /**
  * Interface for classes that wish to act as data sources for the
- * MockupContainer
+ * MockupContainer. Data sets are serialized with the containers that use
+ * them.
  * 
  * @author Risto Yrjänä / Vaadin Ltd.
  * 
  */
-public interface MockupDataSet {
+public interface MockupDataSet extends Serializable {
 
     /**
      * <p>
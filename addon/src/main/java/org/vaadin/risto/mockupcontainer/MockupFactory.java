@@ -3,6 +3,8 @@
  */
 package org.vaadin.risto.mockupcontainer;
 
+import java.util.Date;
+
 /**
  * Factory methods for for some common MockupContainer use cases. All the
  * properties that are generated are of type String, unless otherwise noted.
@@ -12,6 +14,31 @@ package org.vaadin.risto.mockupcontainer;
  */
 public class MockupFactory {
 
+    /**
+     * Id of the integer property of the typed containers.
+     */
+    public static final String INTEGER_PROPERTY = "integer";
+
+    /**
+     * Id of the long property of the typed containers.
+     */
+    public static final String LONG_PROPERTY = "long";
+
+    /**
+     * Id of the double property of the typed containers.
+     */
+    public static final String DOUBLE_PROPERTY = "double";
+
+    /**
+     * Id of the boolean property of the typed containers.
+     */
+    public static final String BOOLEAN_PROPERTY = "boolean";
+
+    /**
+     * Id of the date property of the typed containers.
+     */
+    public static final String DATE_PROPERTY = "date";
+
     private static MockupDataSet defaultDataSet;
 
     private MockupFactory() {
@@ -67,9 +94,8 @@ public class MockupFactory {
      *         properties and 5 children
      */
     public static MockupContainer getDefaultContainer() {
-        MockupContainer container = new MockupContainer();
-        container.setDataSet(getDataSetOrDefault());
-        return container;
+        return MockupContainer.builder().dataSet(getDataSetOrDefault())
+                .build();
     }
 
     /**
@@ -77,10 +103,7 @@ public class MockupFactory {
      *         of 100ms
      */
     public static MockupContainer getSlowDefaultContainer() {
-        MockupContainer container = new MockupContainer();
-        container.setItemDelay(100);
-
-        return container;
+        return MockupContainer.builder().itemDelay(100).build();
     }
 
     /**
@@ -88,9 +111,8 @@ public class MockupFactory {
      *         properties and 10 children each
      */
     public static MockupContainer getMediumContainer() {
-        MockupContainer container = new MockupContainer(1000, 10, 5);
-        container.setDataSet(getDataSetOrDefault());
-        return container;
+        return MockupContainer.builder().itemCount(1000).propertyCount(10)
+                .numberOfChildren(5).dataSet(getDataSetOrDefault()).build();
     }
 
     /**
@@ -98,9 +120,8 @@ public class MockupFactory {
      *         and 10 children each
      */
     public static MockupContainer getLargeContainer() {
-        MockupContainer container = new MockupContainer(20000, 20, 10);
-        container.setDataSet(getDataSetOrDefault());
-        return container;
+        return MockupContainer.builder().itemCount(20000).propertyCount(20)
+                .numberOfChildren(10).dataSet(getDataSetOrDefault()).build();
     }
 
     /**
@@ -108,9 +129,56 @@ public class MockupFactory {
      *         properties and 20 children each
      */
     public static MockupContainer getGiganticContainer() {
-        MockupContainer container = new MockupContainer(500000, 30, 20);
-        container.setDataSet(getDataSetOrDefault());
-        return container;
+        return MockupContainer.builder().itemCount(500000).propertyCount(30)
+                .numberOfChildren(20).dataSet(getDataSetOrDefault()).build();
+    }
+
+    /**
+     * @return a MockupContainer with the default values of 20 items, 5
+     *         properties and 5 children, and one typed property of each
+     *         basic type
+     * @see #getTypedContainer(int)
+     */
+    public static MockupContainer getTypedContainer() {
+        return getTypedContainer(20);
+    }
+
+    /**
+     * Creates a container that has, in addition to 5 string properties, the
+     * typed properties {@link #INTEGER_PROPERTY}, {@link #LONG_PROPERTY},
+     * {@link #DOUBLE_PROPERTY}, {@link #BOOLEAN_PROPERTY} and
+     * {@link #DATE_PROPERTY}. The values are stored in primitive columns.
+     * 
+     * @param itemCount
+     * @return a typed MockupContainer with 5 children per item
+     */
+    public static MockupContainer getTypedContainer(int itemCount) {
+        return getTypedBuilder(itemCount).dataSet(getDataSetOrDefault())
+                .build();
+    }
+
+    /**
+     * @param itemCount
+     * @return a MockupContainer with only the typed properties of
+     *         {@link #getTypedContainer(int)}, and no string properties
+     */
+    public static MockupContainer getNumericContainer(int itemCount) {
+        return getTypedBuilder(itemCount).propertyCount(0).build();
+    }
+
+    private static MockupContainer.Builder getTypedBuilder(int itemCount) {
+        return MockupContainer.builder().itemCount(itemCount)
+                .storageMode(StorageMode.COLUMNAR)
+                .typedProperty(INTEGER_PROPERTY,
+                        ValueGenerators.integers(0, 1000))
+                .typedProperty(LONG_PROPERTY,
+                        ValueGenerators.longs(0, Long.MAX_VALUE))
+                .typedProperty(DOUBLE_PROPERTY,
+                        ValueGenerators.doubles(0, 1000))
+                .typedProperty(BOOLEAN_PROPERTY, ValueGenerators.booleans())
+                .typedProperty(DATE_PROPERTY,
+                        ValueGenerators.dates(new Date(0),
+                                new Date(1577836800000L)));
     }
 
     /**
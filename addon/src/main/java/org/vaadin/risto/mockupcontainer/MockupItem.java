@@ -6,9 +6,7 @@ package org.vaadin.risto.mockupcontainer;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import com.vaadin.data.Item;
 import com.vaadin.data.Property;
@@ -19,7 +17,13 @@ import com.vaadin.data.Property;
  * Methods that modify the properties of this item are not supported.
  * 
  * MockupItem is meant to be used with String values from a
- * {@link MockupDataSet}
+ * {@link MockupDataSet}, and the typed values of a container with typed
+ * properties. Items that belong to a MockupContainer get their
+ * values from the container, so that the value of a property depends only on
+ * the seed of the container and the ids of the item and the property.
+ * 
+ * Properties are created lazily, at most once per property, without locking:
+ * concurrent readers of the same item always get the same property object.
  * 
  * @author Risto Yrjänä / Vaadin
  * 
@@ -28,16 +32,45 @@ public class MockupItem implements Item {
 
     private static final long serialVersionUID = -8932204044098491445L;
     private final String[] itemPropertyArray;
-    private final Map<String, MockupProperty<String>> propertyMap;
-    private Integer parent;
-    private Collection<Integer> children;
+    private final AtomicReferenceArray<MockupProperty<?>> properties;
     private final MockupDataSet dataSet;
+    private final MockupContainer container;
+    private final int itemId;
 
     protected MockupItem(String[] propertyArray, MockupDataSet dataSet) {
         this.itemPropertyArray = propertyArray;
         this.dataSet = dataSet;
-        propertyMap = new HashMap<String, MockupProperty<String>>();
-        setChildren(new LinkedList<Integer>());
+        this.container = null;
+        this.itemId = -1;
+        this.properties = new AtomicReferenceArray<MockupProperty<?>>(
+                propertyArray.length);
+    }
+
+    protected MockupItem(String[] propertyArray, MockupContainer container,
+            int itemId) {
+        this.itemPropertyArray = propertyArray;
+        this.dataSet = container.getDataSet();
+        this.container = container;
+        this.itemId = itemId;
+        this.properties = new AtomicReferenceArray<MockupProperty<?>>(
+                propertyArray.length);
+    }
+
+    /**
+     * Creates an item of the container with its values already generated.
+     * 
+     * @param propertyArray
+     * @param container
+     * @param itemId
+     * @param values
+     *            the values, in the order of the property ids
+     */
+    protected MockupItem(String[] propertyArray, MockupContainer container,
+            int itemId, Object[] values) {
+        this(propertyArray, container, itemId);
+        for (int i = 0; i < propertyArray.length; i++) {
+            properties.set(i, createProperty(values[i], container.getType(i)));
+        }
     }
 
     @SuppressWarnings("rawtypes")
@@ -48,24 +81,61 @@ public class MockupItem implements Item {
     }
 
     @Override
-    public Property<String> getItemProperty(Object id) {
+    public Property<?> getItemProperty(Object id) {
         if (id == null || !(id instanceof String)) {
             throw new IllegalArgumentException(
                     "MockupItem property id's must be of type String");
         }
 
-        MockupProperty<String> property = null;
-        if (!propertyMap.containsKey(id)) {
-            property = new MockupProperty<String>(dataSet.nextValue(),
-                    String.class);
-            propertyMap.put((String) id, property);
-        } else {
-            property = propertyMap.get(id);
+        int index = indexOfProperty(id);
+        if (index < 0) {
+            return null;
         }
 
+        MockupProperty<?> property = properties.get(index);
+        if (property == null) {
+            if (container != null) {
+                property = createProperty(
+                        container.generateValue(itemId, index),
+                        container.getType(index));
+            } else {
+                property = new MockupProperty<String>(dataSet.nextValue(),
+                        String.class);
+            }
+            // a racing thread may have won, in which case its property is used
+            properties.compareAndSet(index, null, property);
+            property = properties.get(index);
+        }
         return property;
     }
 
+    /**
+     * @param index
+     *            the index of the property in the property ids
+     * @return the property if it has been created, otherwise null
+     */
+    MockupProperty<?> getCreatedProperty(int index) {
+        return properties.get(index);
+    }
+
+    private static <T> MockupProperty<T> createProperty(Object value,
+            Class<T> type) {
+        return new MockupProperty<T>(type.cast(value), type);
+    }
+
+    private int indexOfProperty(Object id) {
+        if (container != null) {
+            // the property ids of a container are sorted
+            return Arrays.binarySearch(itemPropertyArray, id);
+        }
+        for (int i = 0; i < itemPropertyArray.length; i++) {
+            if (itemPropertyArray[i].equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     @Override
     public Collection<String> getItemPropertyIds() {
         return Collections.unmodifiableCollection(Arrays
@@ -78,24 +148,4 @@ public class MockupItem implements Item {
         throw new UnsupportedOperationException();
     }
 
-    protected Collection<Integer> getChildren() {
-        return children;
-    }
-
-    protected void setChildren(Collection<Integer> children) {
-        this.children = children;
-    }
-
-    protected boolean isRoot() {
-        return getParent() == null;
-    }
-
-    protected Integer getParent() {
-        return parent;
-    }
-
-    protected void setParent(Integer id) {
-        this.parent = id;
-    }
-
 }
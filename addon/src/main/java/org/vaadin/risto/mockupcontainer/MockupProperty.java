@@ -3,8 +3,6 @@
  */
 package org.vaadin.risto.mockupcontainer;
 
-import java.util.LinkedList;
-
 import com.vaadin.data.Property;
 import com.vaadin.data.Property.ValueChangeNotifier;
 import com.vaadin.data.util.converter.Converter.ConversionException;
@@ -12,8 +10,10 @@ import com.vaadin.data.util.converter.Converter.ConversionException;
 /**
  * Implementation of the {@link com.vaadin.data.Property} interface for the
  * {@link org.vaadin.risto.mockupcontainer.MockupContainer MockupContainer}. The
- * value can be set freely. Note that the MockupProperties from a
- * MockupContainer are always of type String.
+ * value can be set freely, and setting it notifies the value change
+ * listeners. The generated properties of a MockupContainer are of type
+ * String, and its typed properties have the type of their
+ * {@link ValueGenerator}.
  * 
  * @author Risto Yrjänä / Vaadin Ltd.
  * 
@@ -22,11 +22,11 @@ public class MockupProperty<T> implements Property<T>, ValueChangeNotifier {
 
     private static final long serialVersionUID = -2472420731149739734L;
 
-    private T value;
+    private volatile T value;
 
-    private LinkedList<ValueChangeListener> propertyValueListeners;
+    private volatile ValueChangeListener[] propertyValueListeners;
 
-    private boolean readOnly;
+    private volatile boolean readOnly;
 
     private final Class<T> type;
 
@@ -63,6 +63,7 @@ public class MockupProperty<T> implements Property<T>, ValueChangeNotifier {
         }
 
         value = newValue;
+        fireValueChangeEvent();
     }
 
     @Override
@@ -71,33 +72,37 @@ public class MockupProperty<T> implements Property<T>, ValueChangeNotifier {
     }
 
     @Override
-    public void addValueChangeListener(ValueChangeListener listener) {
+    public synchronized void addValueChangeListener(
+            ValueChangeListener listener) {
         if (propertyValueListeners == null) {
-            propertyValueListeners = new LinkedList<ValueChangeListener>();
+            propertyValueListeners = new ValueChangeListener[] { listener };
+        } else {
+            propertyValueListeners = ListenerArrays.add(propertyValueListeners,
+                    listener);
         }
-        propertyValueListeners.add(listener);
     }
 
     @Override
-    public void removeValueChangeListener(ValueChangeListener listener) {
-        if (propertyValueListeners == null) {
-            return;
-        }
-        propertyValueListeners.remove(listener);
+    public synchronized void removeValueChangeListener(
+            ValueChangeListener listener) {
+        propertyValueListeners = ListenerArrays.remove(propertyValueListeners,
+                listener);
     }
 
     protected void fireValueChangeEvent() {
-        if (propertyValueListeners != null) {
-            for (ValueChangeListener listener : propertyValueListeners) {
-                listener.valueChange(new Property.ValueChangeEvent() {
-
-                    private static final long serialVersionUID = 1795990032860967900L;
-
-                    @Override
-                    public Property<T> getProperty() {
-                        return MockupProperty.this;
-                    }
-                });
+        ValueChangeListener[] listeners = propertyValueListeners;
+        if (listeners != null) {
+            Property.ValueChangeEvent event = new Property.ValueChangeEvent() {
+
+                private static final long serialVersionUID = 1795990032860967900L;
+
+                @Override
+                public Property<T> getProperty() {
+                    return MockupProperty.this;
+                }
+            };
+            for (ValueChangeListener listener : listeners) {
+                listener.valueChange(event);
             }
         }
     }
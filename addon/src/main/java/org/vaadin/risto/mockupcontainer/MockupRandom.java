@@ -0,0 +1,76 @@
+package org.vaadin.risto.mockupcontainer;
+
+/**
+ * <p>
+ * Counter-based random number generation for the MockupContainer. Instead of
+ * drawing numbers from a shared, stateful generator, every random value is
+ * computed directly from a seed and the coordinates of the cell it belongs
+ * to. The same coordinates always produce the same value, in any order, in
+ * any thread and in any JVM.
+ * </p>
+ * 
+ * <p>
+ * The mixing function is the finalizer of the SplitMix64 generator.
+ * </p>
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public final class MockupRandom {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private MockupRandom() {
+        // for static use only
+    }
+
+    /**
+     * @param seed
+     *            the seed of the container
+     * @param row
+     *            the row (item) coordinate
+     * @param column
+     *            the column (property) coordinate
+     * @return 64 random bits, determined only by the given arguments
+     */
+    public static long hash(long seed, long row, long column) {
+        long h = mix(seed + GOLDEN_GAMMA);
+        h = mix(h + (row + 1) * GOLDEN_GAMMA);
+        return mix(h ^ (column + 1) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Maps random bits uniformly to the range [0, bound).
+     * 
+     * @param random
+     *            random bits, for example from
+     *            {@link #hash(long, long, long)}
+     * @param bound
+     *            the upper bound (exclusive), must be positive
+     * @return an integer between zero (inclusive) and the bound (exclusive)
+     */
+    public static int nextInt(long random, int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive");
+        }
+        return (int) (((random >>> 32) * bound) >>> 32);
+    }
+
+    /**
+     * Maps random bits uniformly to the range [0, 1).
+     * 
+     * @param random
+     *            random bits, for example from
+     *            {@link #hash(long, long, long)}
+     * @return a double between zero (inclusive) and one (exclusive)
+     */
+    public static double nextDouble(long random) {
+        return (random >>> 11) * 0x1.0p-53;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
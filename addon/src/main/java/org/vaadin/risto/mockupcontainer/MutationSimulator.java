@@ -0,0 +1,424 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import com.vaadin.data.Property;
+
+/**
+ * <p>
+ * Drives a live {@link MockupContainer} from a background thread with a
+ * configurable mix of inserts, removals and value updates at a steady rate,
+ * to see how a view copes with data that keeps changing. Inserts call
+ * {@link MockupContainer#addItem()}, removals call
+ * {@link MockupContainer#removeItem(Object)} on a random visible item and
+ * updates copy the value of a random cell into another cell of the same
+ * property, so the values stay realistic.
+ * </p>
+ * 
+ * <p>
+ * The operations are scheduled at fixed intervals. Each one is timed from the
+ * start of the mutation until the container has notified all its listeners,
+ * which is the dispatch latency, and the lag from the scheduled time to the
+ * start is recorded as well. A rate that the container and its listeners
+ * cannot keep up with shows as growing lag and a lower achieved throughput.
+ * </p>
+ * 
+ * <p>
+ * With a coalescing window, the operations due within each window are
+ * applied in one {@link MockupContainer#beginTransaction() transaction}, so
+ * the listeners get at most one event of each type per window. The dispatch
+ * latency is then the time to commit each transaction.
+ * </p>
+ * 
+ * <p>
+ * The container is not thread-safe. By default the operations run in the
+ * driver thread, so nothing else may use the container meanwhile. With a
+ * Vaadin UI, set an {@link Executor} that runs the operations while holding
+ * the session lock:
+ * </p>
+ * 
+ * <pre>
+ * simulator.setExecutor(new Executor() {
+ *     public void execute(Runnable command) {
+ *         ui.access(command);
+ *     }
+ * });
+ * </pre>
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public final class MutationSimulator {
+
+    /**
+     * The maximum number of operations handed to the executor and not yet
+     * run. Operations due while the limit is reached are dropped.
+     */
+    private static final int MAX_PENDING = 1024;
+
+    private static final int INSERT = 0;
+
+    private static final int REMOVE = 1;
+
+    private static final int UPDATE = 2;
+
+    private static final int SKIPPED = 3;
+
+    private final MockupContainer container;
+
+    private double opsPerSecond = 100;
+
+    private int insertWeight = 1;
+
+    private int removeWeight = 1;
+
+    private int updateWeight = 1;
+
+    private long seed;
+
+    private Executor executor;
+
+    private long coalescingWindow;
+
+    private volatile Thread driver;
+
+    private volatile long startTime;
+
+    private volatile long stopTime;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SKIPPED + 1);
+
+    private final LatencyHistogram dispatchLatencies = new LatencyHistogram();
+
+    private final LatencyHistogram lags = new LatencyHistogram();
+
+    private final Runnable beginTransaction = new Runnable() {
+
+        @Override
+        public void run() {
+            container.beginTransaction();
+        }
+    };
+
+    private final Runnable commitTransaction = new Runnable() {
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            container.commitTransaction();
+            dispatchLatencies.record(System.nanoTime() - start);
+        }
+    };
+
+    /**
+     * @param container
+     *            the container to modify
+     */
+    public MutationSimulator(MockupContainer container) {
+        if (container == null) {
+            throw new IllegalArgumentException("Container cannot be null");
+        }
+        this.container = container;
+    }
+
+    /**
+     * @param opsPerSecond
+     *            the number of operations to apply per second, 100 by default
+     */
+    public void setRate(double opsPerSecond) {
+        if (!(opsPerSecond > 0)) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        checkStopped();
+        this.opsPerSecond = opsPerSecond;
+    }
+
+    public double getRate() {
+        return opsPerSecond;
+    }
+
+    /**
+     * Sets the relative weights of the operations. The default mix has an
+     * equal share of each.
+     * 
+     * @param inserts
+     * @param removes
+     * @param updates
+     */
+    public void setMix(int inserts, int removes, int updates) {
+        if (inserts < 0 || removes < 0 || updates < 0
+                || inserts + (long) removes + updates == 0) {
+            throw new IllegalArgumentException(
+                    "Weights must be non-negative and not all zero");
+        }
+        checkStopped();
+        insertWeight = inserts;
+        removeWeight = removes;
+        updateWeight = updates;
+    }
+
+    /**
+     * @param seed
+     *            the seed for choosing the operations and their targets
+     */
+    public void setSeed(long seed) {
+        checkStopped();
+        this.seed = seed;
+    }
+
+    /**
+     * @param executor
+     *            runs each operation, or null to run them in the driver
+     *            thread
+     */
+    public void setExecutor(Executor executor) {
+        checkStopped();
+        this.executor = executor;
+    }
+
+    /**
+     * @param duration
+     *            the length of the window that the events of the operations
+     *            are coalesced over, or zero to fire the events of each
+     *            operation right away
+     * @param unit
+     */
+    public void setCoalescingWindow(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException(
+                    "Window cannot be negative");
+        }
+        checkStopped();
+        coalescingWindow = unit.toNanos(duration);
+    }
+
+    /**
+     * @param unit
+     * @return the coalescing window in the given unit
+     */
+    public long getCoalescingWindow(TimeUnit unit) {
+        return unit.convert(coalescingWindow, TimeUnit.NANOSECONDS);
+    }
+
+    private void checkStopped() {
+        if (isRunning()) {
+            throw new IllegalStateException(
+                    "The simulator cannot be configured while running");
+        }
+    }
+
+    public boolean isRunning() {
+        return driver != null;
+    }
+
+    /**
+     * Starts applying operations from a new daemon thread and resets the
+     * statistics.
+     */
+    public synchronized void start() {
+        checkStopped();
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        dispatchLatencies.reset();
+        lags.reset();
+
+        final Random random = new Random(seed);
+        final long interval = Math.max(1, Math.round(1e9 / opsPerSecond));
+        final int[] weights = { insertWeight, removeWeight, updateWeight };
+        final long window = coalescingWindow;
+        final Executor operationExecutor = executor;
+        Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                drive(random, interval, window, weights, operationExecutor);
+            }
+        }, "MockupContainer mutations");
+        thread.setDaemon(true);
+        startTime = System.nanoTime();
+        stopTime = 0;
+        driver = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the driver thread and waits for it to finish. Operations already
+     * handed to the executor may still run.
+     */
+    public synchronized void stop() {
+        Thread thread = driver;
+        if (thread == null) {
+            return;
+        }
+        driver = null;
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        stopTime = System.nanoTime();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the statistics since the last start, consistent enough for
+     *         reporting while the simulator is running
+     */
+    public MutationStatistics getStatistics() {
+        long start = startTime;
+        long stop = stopTime;
+        long elapsed = start == 0 ? 0 : (stop != 0 ? stop : System
+                .nanoTime()) - start;
+        return new MutationStatistics(counts.get(INSERT), counts.get(REMOVE),
+                counts.get(UPDATE), counts.get(SKIPPED), elapsed,
+                dispatchLatencies.copyCounts(), lags.copyCounts());
+    }
+
+    private void drive(final Random random, long interval, long window,
+            int[] weights, Executor operationExecutor) {
+        int totalWeight = weights[INSERT] + weights[REMOVE] + weights[UPDATE];
+        final Semaphore pending = new Semaphore(MAX_PENDING);
+        final boolean coalesced = window > 0;
+        boolean inTransaction = false;
+        long windowEnd = 0;
+        long due = System.nanoTime();
+        while (true) {
+            if (inTransaction && windowEnd <= due) {
+                if (!waitUntil(windowEnd)) {
+                    break;
+                }
+                execute(commitTransaction, operationExecutor);
+                inTransaction = false;
+            }
+            if (!waitUntil(due)) {
+                break;
+            }
+            if (coalesced && !inTransaction) {
+                execute(beginTransaction, operationExecutor);
+                inTransaction = true;
+                windowEnd = due + window;
+            }
+
+            int choice = random.nextInt(totalWeight);
+            final int operation = choice < weights[INSERT] ? INSERT
+                    : choice < weights[INSERT] + weights[REMOVE] ? REMOVE
+                            : UPDATE;
+            final long scheduled = due;
+            if (operationExecutor == null) {
+                apply(operation, scheduled, random, !coalesced);
+            } else if (pending.tryAcquire()) {
+                operationExecutor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            apply(operation, scheduled, random, !coalesced);
+                        } finally {
+                            pending.release();
+                        }
+                    }
+                });
+            } else {
+                counts.incrementAndGet(SKIPPED);
+            }
+            due += interval;
+        }
+        if (inTransaction) {
+            execute(commitTransaction, operationExecutor);
+        }
+    }
+
+    private static void execute(Runnable command, Executor operationExecutor) {
+        if (operationExecutor == null) {
+            command.run();
+        } else {
+            operationExecutor.execute(command);
+        }
+    }
+
+    /**
+     * @return false if the simulator was stopped while waiting
+     */
+    private boolean waitUntil(long deadline) {
+        long remaining;
+        while (driver == Thread.currentThread()
+                && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+        return driver == Thread.currentThread();
+    }
+
+    /**
+     * Chooses the target of an operation and applies it. Only the mutation
+     * itself is timed, not the calls that choose the target. They use the
+     * package-private paths of the container, so they are not counted in its
+     * metrics, recorded in its trace or delayed like the calls of a client.
+     * 
+     * @param timed
+     *            false if the events are fired later by a commit
+     */
+    @SuppressWarnings("unchecked")
+    private void apply(int operation, long scheduled, Random random,
+            boolean timed) {
+        long start;
+        switch (operation) {
+        case INSERT:
+            start = begin(scheduled);
+            container.addItem();
+            break;
+        case REMOVE:
+            int size = container.visibleSize();
+            if (size == 0) {
+                counts.incrementAndGet(SKIPPED);
+                return;
+            }
+            Object itemId = container.idAt(random.nextInt(size));
+            start = begin(scheduled);
+            container.removeItem(itemId);
+            break;
+        default:
+            int itemCount = container.visibleSize();
+            int propertyCount = container.getPropertyIds().size();
+            if (itemCount == 0 || propertyCount == 0
+                    || container.getStorageMode() == StorageMode.VIRTUAL) {
+                counts.incrementAndGet(SKIPPED);
+                return;
+            }
+            int column = random.nextInt(propertyCount);
+            Property<Object> property = (Property<Object>) container
+                    .getUnfilteredItem(
+                            container.idAt(random.nextInt(itemCount)))
+                    .getItemProperty(container.getPropertyId(column));
+            if (property.isReadOnly()) {
+                counts.incrementAndGet(SKIPPED);
+                return;
+            }
+            Object value = container.getValueAt(
+                    container.idAt(random.nextInt(itemCount)), column);
+            start = begin(scheduled);
+            property.setValue(value);
+        }
+        if (timed) {
+            dispatchLatencies.record(System.nanoTime() - start);
+        }
+        counts.incrementAndGet(operation);
+    }
+
+    private long begin(long scheduled) {
+        long start = System.nanoTime();
+        lags.record(start - scheduled);
+        return start;
+    }
+}
@@ -0,0 +1,135 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.Serializable;
+
+/**
+ * An immutable copy of the statistics of a {@link MutationSimulator} at one
+ * point in time.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public final class MutationStatistics implements Serializable {
+
+    private static final long serialVersionUID = 6803335214178392717L;
+
+    private final long insertCount;
+
+    private final long removeCount;
+
+    private final long updateCount;
+
+    private final long skippedCount;
+
+    private final long elapsedNanos;
+
+    private final long[] dispatchLatencies;
+
+    private final long[] lags;
+
+    private final long dispatchCount;
+
+    MutationStatistics(long insertCount, long removeCount, long updateCount,
+            long skippedCount, long elapsedNanos, long[] dispatchLatencies,
+            long[] lags) {
+        this.insertCount = insertCount;
+        this.removeCount = removeCount;
+        this.updateCount = updateCount;
+        this.skippedCount = skippedCount;
+        this.elapsedNanos = elapsedNanos;
+        this.dispatchLatencies = dispatchLatencies;
+        this.lags = lags;
+        long count = 0;
+        for (long bucketCount : dispatchLatencies) {
+            count += bucketCount;
+        }
+        dispatchCount = count;
+    }
+
+    public long getInsertCount() {
+        return insertCount;
+    }
+
+    public long getRemoveCount() {
+        return removeCount;
+    }
+
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    /**
+     * @return the number of operations applied
+     */
+    public long getOperationCount() {
+        return insertCount + removeCount + updateCount;
+    }
+
+    /**
+     * @return the number of operations that were not applied: removals and
+     *         updates of an empty container, updates of read-only contents
+     *         and operations dropped because the executor fell behind
+     */
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * @return the time since the simulator was started, or the duration of
+     *         the run if it has been stopped
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return the operations applied per second
+     */
+    public double getThroughput() {
+        return elapsedNanos > 0 ? getOperationCount() * 1e9 / elapsedNanos
+                : 0;
+    }
+
+    /**
+     * @return the number of times the listeners were notified: once per
+     *         operation, or once per coalescing window
+     */
+    public long getDispatchCount() {
+        return dispatchCount;
+    }
+
+    /**
+     * @param percentile
+     *            between 0 and 100, for example 99.9
+     * @return the time in nanoseconds that the given share of the mutations,
+     *         or of the commits with a coalescing window, took, including
+     *         notifying the listeners of the container
+     */
+    public long getDispatchLatencyAtPercentile(double percentile) {
+        return LatencyHistogram.valueAtPercentile(dispatchLatencies,
+                dispatchCount, percentile);
+    }
+
+    /**
+     * @param percentile
+     *            between 0 and 100, for example 99.9
+     * @return the delay in nanoseconds from the scheduled time to the start
+     *         of the mutation that the given share of the mutations stayed
+     *         under
+     */
+    public long getLagAtPercentile(double percentile) {
+        return LatencyHistogram.valueAtPercentile(lags, getOperationCount(),
+                percentile);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d inserts, %d removes, %d updates, %d skipped"
+                + " in %.1f s: %.1f ops/s, dispatch p50 %.1f us,"
+                + " p99 %.1f us, lag p99 %.1f us", insertCount, removeCount,
+                updateCount, skippedCount, elapsedNanos / 1e9,
+                getThroughput(), getDispatchLatencyAtPercentile(50) / 1000.0,
+                getDispatchLatencyAtPercentile(99) / 1000.0,
+                getLagAtPercentile(99) / 1000.0);
+    }
+}
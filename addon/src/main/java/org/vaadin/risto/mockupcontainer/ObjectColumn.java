@@ -0,0 +1,51 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.util.Arrays;
+
+/**
+ * A {@link Column} backed by a plain array of references. The generated
+ * values are shared with the vocabulary of the data set, so every cell costs
+ * only the size of one reference.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+class ObjectColumn extends Column {
+
+    private static final long serialVersionUID = 2180709937434474226L;
+
+    private final Object[] values;
+
+    ObjectColumn(int size) {
+        values = new Object[size];
+    }
+
+    private ObjectColumn(Object[] values) {
+        this.values = values;
+    }
+
+    @Override
+    Object get(int row) {
+        return values[row];
+    }
+
+    @Override
+    void set(int row, Object value) {
+        values[row] = value;
+    }
+
+    @Override
+    int size() {
+        return values.length;
+    }
+
+    @Override
+    Column resize(int size) {
+        return new ObjectColumn(Arrays.copyOf(values, size));
+    }
+
+    @Override
+    void clear(int fromRow, int toRow) {
+        Arrays.fill(values, fromRow, toRow, null);
+    }
+}
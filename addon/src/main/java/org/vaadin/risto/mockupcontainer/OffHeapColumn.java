@@ -0,0 +1,208 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link CodedColumn} that keeps its codes outside of the Java heap, either
+ * in a direct {@link ByteBuffer} or in a memory-mapped temporary file. The
+ * heap footprint of the column is constant regardless of the number of rows,
+ * and the codes are never scanned by the garbage collector. Like
+ * {@link DictionaryColumn}, each code takes one, two or four bytes depending
+ * on the size of the dictionary.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+class OffHeapColumn extends CodedColumn {
+
+    private static final long serialVersionUID = -5541390301434643917L;
+
+    private final int size;
+
+    private final boolean mapped;
+
+    /**
+     * The buffer and its width are replaced together when the column is
+     * widened, so that lock-free readers never mix the two.
+     */
+    private transient volatile Codes codes;
+
+    /**
+     * @param dictionary
+     * @param size
+     *            the number of rows
+     * @param mapped
+     *            true to keep the codes in a memory-mapped temporary file,
+     *            false to use a direct buffer
+     */
+    OffHeapColumn(Dictionary dictionary, int size, boolean mapped) {
+        super(dictionary);
+        this.size = size;
+        this.mapped = mapped;
+        int width = codeWidth(dictionary.size());
+        codes = new Codes(allocate(size, width), width);
+    }
+
+    /**
+     * Wraps existing codes, for example a read-only mapping of a snapshot
+     * file.
+     * 
+     * @param dictionary
+     * @param size
+     *            the number of rows
+     * @param width
+     *            the number of bytes per code
+     * @param codes
+     */
+    OffHeapColumn(Dictionary dictionary, int size, int width, ByteBuffer codes) {
+        super(dictionary);
+        this.size = size;
+        this.mapped = false;
+        this.codes = new Codes(codes, width);
+    }
+
+    private OffHeapColumn(Dictionary dictionary, int size, boolean mapped,
+            int width) {
+        super(dictionary);
+        this.size = size;
+        this.mapped = mapped;
+        codes = new Codes(allocate(size, width), width);
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    Column resize(int size) {
+        Codes current = codes;
+        OffHeapColumn resized = new OffHeapColumn(getDictionary(), size,
+                mapped, current.width);
+        ByteBuffer source = current.buffer.duplicate();
+        source.position(0).limit(Math.min(size, this.size) * current.width);
+        ByteBuffer target = resized.codes.buffer.duplicate();
+        target.position(0);
+        target.put(source);
+        return resized;
+    }
+
+    @Override
+    int getCode(int row) {
+        Codes current = codes;
+        return read(current.buffer, current.width, row);
+    }
+
+    @Override
+    void setCode(int row, int code) {
+        Codes current = codes;
+        if (codeWidth(code + 1) > current.width) {
+            current = widen(current, codeWidth(code + 1));
+        }
+        write(current.buffer, current.width, row, code);
+    }
+
+    private Codes widen(Codes current, int newWidth) {
+        ByteBuffer widened = allocate(size, newWidth);
+        for (int row = 0; row < size; row++) {
+            write(widened, newWidth, row,
+                    read(current.buffer, current.width, row));
+        }
+        codes = new Codes(widened, newWidth);
+        return codes;
+    }
+
+    private static int read(ByteBuffer buffer, int width, int row) {
+        switch (width) {
+        case 1:
+            return buffer.get(row) & 0xff;
+        case 2:
+            return buffer.getShort(row << 1) & 0xffff;
+        default:
+            return buffer.getInt(row << 2);
+        }
+    }
+
+    private static void write(ByteBuffer buffer, int width, int row, int code) {
+        switch (width) {
+        case 1:
+            buffer.put(row, (byte) code);
+            break;
+        case 2:
+            buffer.putShort(row << 1, (short) code);
+            break;
+        default:
+            buffer.putInt(row << 2, code);
+        }
+    }
+
+    private ByteBuffer allocate(int rows, int bytesPerCode) {
+        long bytes = (long) rows * bytesPerCode;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A column of " + rows
+                    + " rows doesn't fit in a single buffer");
+        }
+        return allocate((int) bytes);
+    }
+
+    private ByteBuffer allocate(int bytes) {
+        if (!mapped) {
+            return ByteBuffer.allocateDirect(bytes);
+        }
+
+        try {
+            File file = File.createTempFile("mockupcontainer", ".column");
+            file.deleteOnExit();
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file,
+                    "rw");
+            try {
+                randomAccessFile.setLength(bytes);
+                return randomAccessFile.getChannel().map(
+                        FileChannel.MapMode.READ_WRITE, 0, bytes);
+            } finally {
+                // the mapping stays valid after the file is closed
+                randomAccessFile.close();
+                file.delete();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                    "Could not map a temporary file for the column", e);
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(codes.width);
+        for (int row = 0; row < size; row++) {
+            out.writeInt(getCode(row));
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException,
+            ClassNotFoundException {
+        in.defaultReadObject();
+        int width = in.readInt();
+        codes = new Codes(allocate(size, width), width);
+        for (int row = 0; row < size; row++) {
+            setCode(row, in.readInt());
+        }
+    }
+
+    private static final class Codes {
+
+        private final ByteBuffer buffer;
+
+        private final int width;
+
+        Codes(ByteBuffer buffer, int width) {
+            this.buffer = buffer;
+            this.width = width;
+        }
+    }
+}
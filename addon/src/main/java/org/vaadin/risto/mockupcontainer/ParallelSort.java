@@ -0,0 +1,98 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorts primitive long arrays with a fork/join merge sort. Small arrays, or a
+ * parallelism of one, fall back to {@link Arrays#sort(long[])}.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+final class ParallelSort {
+
+    /**
+     * Number of elements that a single task sorts with
+     * {@link Arrays#sort(long[], int, int)}.
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+    private ParallelSort() {
+        // for static use only
+    }
+
+    /**
+     * Sorts the given array into ascending order.
+     * 
+     * @param values
+     * @param parallelism
+     *            the maximum number of threads to use
+     */
+    static void sort(long[] values, int parallelism) {
+        if (parallelism <= 1 || values.length <= SEQUENTIAL_THRESHOLD) {
+            Arrays.sort(values);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new SortTask(values, new long[values.length], 0,
+                    values.length));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static class SortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = -2140709307916011946L;
+
+        private final long[] values;
+
+        private final long[] buffer;
+
+        private final int from;
+
+        private final int to;
+
+        SortTask(long[] values, long[] buffer, int from, int to) {
+            this.values = values;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                Arrays.sort(values, from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new SortTask(values, buffer, from, middle), new SortTask(
+                    values, buffer, middle, to));
+            merge(middle);
+        }
+
+        private void merge(int middle) {
+            if (values[middle - 1] <= values[middle]) {
+                return; // already in order
+            }
+
+            System.arraycopy(values, from, buffer, from, to - from);
+            int left = from;
+            int right = middle;
+            for (int i = from; i < to; i++) {
+                if (right >= to
+                        || (left < middle && buffer[left] <= buffer[right])) {
+                    values[i] = buffer[left++];
+                } else {
+                    values[i] = buffer[right++];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.util.Arrays;
+
+/**
+ * A {@link Column} that keeps its values in a primitive array. Values are
+ * boxed only when they are read through {@link #get(int)}, and sorting uses
+ * primitive keys that don't need boxing at all. Nulls are
+ * remembered in a bit set that is allocated when the first null is stored.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+abstract class PrimitiveColumn extends Column {
+
+    private static final long serialVersionUID = -2996208000014981592L;
+
+    private volatile long[] nulls;
+
+    @Override
+    Object get(int row) {
+        return isNull(row) ? null : box(row);
+    }
+
+    @Override
+    void set(int row, Object value) {
+        if (value == null) {
+            setNull(row, true);
+        } else {
+            store(row, value);
+            setNull(row, false);
+        }
+    }
+
+    /**
+     * Copies the values and the null flags. The flags of the rows beyond the
+     * new size are dropped, so added rows are not null.
+     */
+    @Override
+    Column resize(int size) {
+        PrimitiveColumn resized = copyOf(size);
+        long[] flags = nulls;
+        if (flags != null) {
+            flags = Arrays.copyOf(flags, (size + 63) >>> 6);
+            if ((size & 63) != 0) {
+                flags[flags.length - 1] &= (1L << size) - 1;
+            }
+            resized.nulls = flags;
+        }
+        return resized;
+    }
+
+    @Override
+    void clear(int fromRow, int toRow) {
+        if (nulls != null) {
+            for (int row = fromRow; row < toRow; row++) {
+                setNull(row, false);
+            }
+        }
+    }
+
+    /**
+     * @param size
+     * @return a column of the same type and the given size, with the values
+     *         of the rows that both columns have
+     */
+    abstract PrimitiveColumn copyOf(int size);
+
+    /**
+     * @param row
+     * @return the value of a row that isn't null, boxed
+     */
+    abstract Object box(int row);
+
+    /**
+     * @param row
+     * @param value
+     *            a value of the type of the column, never null
+     */
+    abstract void store(int row, Object value);
+
+    /**
+     * @param row
+     *            a row whose value isn't null
+     * @return a key whose signed order is the natural order of the value
+     */
+    abstract long sortKey(int row);
+
+    /**
+     * @param row
+     * @return the value of the row as it is written to a snapshot: integers,
+     *         longs and ordinals as such, doubles as their raw bits and
+     *         booleans as one or zero
+     */
+    abstract long getBits(int row);
+
+    boolean isNull(int row) {
+        long[] flags = nulls;
+        return flags != null && (flags[row >>> 6] & (1L << row)) != 0;
+    }
+
+    private void setNull(int row, boolean isNull) {
+        long[] flags = nulls;
+        if (flags == null) {
+            if (!isNull) {
+                return;
+            }
+            flags = new long[(size() + 63) >>> 6];
+            nulls = flags;
+        }
+        if (isNull) {
+            flags[row >>> 6] |= 1L << row;
+        } else {
+            flags[row >>> 6] &= ~(1L << row);
+        }
+    }
+}
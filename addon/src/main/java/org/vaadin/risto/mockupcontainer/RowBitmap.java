@@ -0,0 +1,229 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.Serializable;
+
+/**
+ * An uncompressed set of row numbers with rank and select support. Filter
+ * results are combined in this form, after which {@link #buildRankIndex()}
+ * allows finding the n:th row of the set and the position of a row in the set
+ * in logarithmic time, without scanning the whole bitmap. Single rows can
+ * then be added and removed without rebuilding the index.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+final class RowBitmap implements Serializable {
+
+    private static final long serialVersionUID = -4047823514690318311L;
+
+    private final long[] words;
+
+    private final int size;
+
+    /**
+     * Number of set bits in the words as a Fenwick tree: entry i counts the
+     * words from <code>i - (i & -i)</code> to <code>i - 1</code>. Available
+     * after {@link #buildRankIndex()}.
+     */
+    private int[] ranks;
+
+    private int cardinality;
+
+    /**
+     * @param size
+     *            the number of rows
+     * @param full
+     *            true to include every row, false for an empty set
+     */
+    RowBitmap(int size, boolean full) {
+        this.size = size;
+        words = new long[(size + 63) >>> 6];
+        if (full) {
+            not();
+        }
+    }
+
+    long[] getWords() {
+        return words;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean get(int row) {
+        return row >= 0 && row < size
+                && (words[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Adds a row, keeping the rank index up to date if it has been built.
+     * 
+     * @param row
+     */
+    void set(int row) {
+        int word = row >>> 6;
+        long bit = 1L << row;
+        if (ranks != null && (words[word] & bit) == 0) {
+            updateRanks(word, 1);
+        }
+        words[word] |= bit;
+    }
+
+    /**
+     * Removes a row, keeping the rank index up to date if it has been built.
+     * 
+     * @param row
+     */
+    void clear(int row) {
+        int word = row >>> 6;
+        long bit = 1L << row;
+        if (ranks != null && (words[word] & bit) != 0) {
+            updateRanks(word, -1);
+        }
+        words[word] &= ~bit;
+    }
+
+    /**
+     * @param size
+     *            the number of rows in the copy
+     * @return a copy with the rows that both sets can hold. The added rows
+     *         are not in the set.
+     */
+    RowBitmap copyOf(int size) {
+        RowBitmap copy = new RowBitmap(size, false);
+        System.arraycopy(words, 0, copy.words, 0,
+                Math.min(words.length, copy.words.length));
+        if ((size & 63) != 0) {
+            copy.words[copy.words.length - 1] &= (1L << size) - 1;
+        }
+        return copy;
+    }
+
+    /**
+     * @param from
+     * @return the first row in the set at or after the given row, or -1 if
+     *         there is none
+     */
+    int nextSetBit(int from) {
+        int word = from >>> 6;
+        if (from < 0 || word >= words.length) {
+            return -1;
+        }
+        long bits = words[word] & (-1L << from);
+        while (bits == 0) {
+            if (++word == words.length) {
+                return -1;
+            }
+            bits = words[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    void and(RowBitmap other) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= other.words[i];
+        }
+    }
+
+    /**
+     * Removes the rows of another set, which may be of a different size.
+     * 
+     * @param other
+     */
+    void andNot(RowBitmap other) {
+        int length = Math.min(words.length, other.words.length);
+        for (int i = 0; i < length; i++) {
+            words[i] &= ~other.words[i];
+        }
+    }
+
+    void or(RowBitmap other) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] |= other.words[i];
+        }
+    }
+
+    /**
+     * Inverts the set within the rows of the container.
+     */
+    void not() {
+        for (int i = 0; i < words.length; i++) {
+            words[i] = ~words[i];
+        }
+        if ((size & 63) != 0) {
+            words[words.length - 1] &= (1L << size) - 1;
+        }
+    }
+
+    /**
+     * Computes the counts needed by {@link #rank(int)}, {@link #select(int)}
+     * and {@link #cardinality()}. {@link #set(int)} and {@link #clear(int)}
+     * keep them up to date, but this must be called again after the other
+     * changes to the set.
+     */
+    void buildRankIndex() {
+        ranks = new int[words.length + 1];
+        cardinality = 0;
+        for (int i = 1; i <= words.length; i++) {
+            int count = Long.bitCount(words[i - 1]);
+            cardinality += count;
+            ranks[i] += count;
+            int parent = i + (i & -i);
+            if (parent <= words.length) {
+                ranks[parent] += ranks[i];
+            }
+        }
+    }
+
+    private void updateRanks(int word, int delta) {
+        cardinality += delta;
+        for (int i = word + 1; i < ranks.length; i += i & -i) {
+            ranks[i] += delta;
+        }
+    }
+
+    int cardinality() {
+        if (ranks == null) {
+            throw new IllegalStateException("The rank index is not built");
+        }
+        return cardinality;
+    }
+
+    /**
+     * @param row
+     * @return the number of rows in the set before the given row
+     */
+    int rank(int row) {
+        int word = row >>> 6;
+        int rank = Long.bitCount(words[word] & ((1L << row) - 1));
+        for (int i = word; i > 0; i -= i & -i) {
+            rank += ranks[i];
+        }
+        return rank;
+    }
+
+    /**
+     * @param index
+     * @return the row at the given position of the set
+     */
+    int select(int index) {
+        // descend the tree to the last word with at most index rows before it
+        int word = 0;
+        int remaining = index;
+        for (int step = Integer.highestOneBit(words.length); step > 0;) {
+            if (word + step <= words.length
+                    && ranks[word + step] <= remaining) {
+                word += step;
+                remaining -= ranks[word];
+            }
+            step >>>= 1;
+        }
+
+        long bits = words[word];
+        for (int i = remaining; i > 0; i--) {
+            bits &= bits - 1;
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+}
@@ -0,0 +1,64 @@
+package org.vaadin.risto.mockupcontainer;
+
+/**
+ * Defines how a {@link MockupContainer} keeps its generated contents in
+ * memory.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public enum StorageMode {
+
+    /**
+     * Every item is generated up front and kept in the container as a
+     * {@link MockupItem}. Values and modifications are retained for the
+     * lifetime of the container. Memory use grows linearly with the item
+     * count.
+     */
+    ITEMS,
+
+    /**
+     * Items are not stored at all. A lightweight {@link MockupItem} is built
+     * from the item id every time one is requested, so the memory use of the
+     * container stays flat regardless of the item count. With a
+     * {@link DeterministicDataSet} every materialized item has the same values
+     * the stored item would have had. Modifications are lost once the item is
+     * discarded.
+     */
+    VIRTUAL,
+
+    /**
+     * Values are stored in one compact array per container property, indexed
+     * by the item id. Items and properties are thin views over the arrays that
+     * are created on demand, so each cell costs only a few bytes instead of a
+     * map entry and a property object. Modifications are retained.
+     */
+    COLUMNAR,
+
+    /**
+     * Like {@link #COLUMNAR}, but each cell stores a <code>byte</code> or
+     * <code>short</code> code into a dictionary of the distinct values instead
+     * of a reference. With a {@link VocabularyDataSet} the dictionary is the
+     * vocabulary of the data set, so for example a container of 500000 items
+     * with 30 properties needs only 15-30 MB. Modifications are retained; new
+     * values are added to the dictionary.
+     */
+    DICTIONARY,
+
+    /**
+     * Like {@link #DICTIONARY}, but the codes are kept outside of the Java
+     * heap in direct byte buffers. The heap usage and garbage collection
+     * pauses stay roughly constant as the item count grows, which allows
+     * containers of tens of millions of items. The hierarchy is computed and
+     * needs no storage. The buffers are limited by
+     * <code>-XX:MaxDirectMemorySize</code>.
+     */
+    OFF_HEAP,
+
+    /**
+     * Like {@link #OFF_HEAP}, but the codes are kept in memory-mapped
+     * temporary files, so the operating system can page them out to disk
+     * when memory runs low.
+     */
+    MAPPED
+}
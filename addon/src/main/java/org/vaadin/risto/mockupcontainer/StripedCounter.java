@@ -0,0 +1,63 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that spreads concurrent increments over several cells, so that
+ * threads incrementing it at the same time rarely contend for the same cache
+ * line. Reading the sum is slower than incrementing, which suits counters
+ * that are updated on every call and read rarely.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+class StripedCounter implements Serializable {
+
+    private static final long serialVersionUID = 3195542637281133829L;
+
+    /**
+     * Distance between the cells, in longs, so that each cell is on a cache
+     * line of its own.
+     */
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray cells;
+
+    private final int mask;
+
+    StripedCounter() {
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime()
+                .availableProcessors()) * 2 - 1);
+        cells = new AtomicLongArray(stripes * PADDING);
+        mask = stripes - 1;
+    }
+
+    void add(long delta) {
+        int stripe = (int) mix(Thread.currentThread().getId()) & mask;
+        cells.addAndGet(stripe * PADDING, delta);
+    }
+
+    void increment() {
+        add(1);
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+
+    void reset() {
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            cells.set(i, 0);
+        }
+    }
+
+    private static long mix(long id) {
+        id *= 0x9e3779b97f4a7c15L;
+        return id ^ (id >>> 32);
+    }
+}
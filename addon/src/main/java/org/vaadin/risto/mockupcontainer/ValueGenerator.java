@@ -0,0 +1,71 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.Serializable;
+
+/**
+ * Generates the values of a typed property of a {@link MockupContainer}.
+ * Every value is computed from random bits that depend only on the seed of
+ * the container and the coordinates of the cell, so typed values are as
+ * deterministic as the generated strings. The generators for the common types
+ * are available from {@link ValueGenerators}; they keep their values in
+ * primitive arrays in the column based storage modes, and values are boxed
+ * only when they are read through a property.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * @param <T>
+ *            the type of the generated values
+ * @see MockupContainer.Builder#typedProperty(String, ValueGenerator)
+ */
+public abstract class ValueGenerator<T> implements Serializable {
+
+    private static final long serialVersionUID = -1840416102442713370L;
+
+    private final Class<T> type;
+
+    protected ValueGenerator(Class<T> type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Type cannot be null");
+        }
+        this.type = type;
+    }
+
+    /**
+     * @return the type of the property
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @param random
+     *            random bits determined by the cell
+     * @return the value of the cell
+     */
+    public abstract T generate(long random);
+
+    /**
+     * Creates the storage of the property for the column based storage modes.
+     * By default the values are stored as objects.
+     * 
+     * @param size
+     *            the number of rows
+     * @return an empty column
+     */
+    Column createColumn(int size) {
+        return new ObjectColumn(size);
+    }
+
+    /**
+     * Generates the value of a cell directly into a column created by
+     * {@link #createColumn(int)}. Generators of primitive values override this
+     * to avoid boxing.
+     * 
+     * @param column
+     * @param row
+     * @param random
+     *            random bits determined by the cell
+     */
+    void generateInto(Column column, int row, long random) {
+        column.set(row, generate(random));
+    }
+}
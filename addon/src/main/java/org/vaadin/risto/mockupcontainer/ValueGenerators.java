@@ -0,0 +1,466 @@
+package org.vaadin.risto.mockupcontainer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Factory methods for the {@link ValueGenerator ValueGenerators} of the common
+ * property types. All of them store their values in primitive arrays in the
+ * column based storage modes.
+ * 
+ * <pre>
+ * MockupContainer container = MockupContainer.builder()
+ *         .typedProperty(&quot;age&quot;, ValueGenerators.integers(18, 100))
+ *         .typedProperty(&quot;active&quot;, ValueGenerators.booleans())
+ *         .storageMode(StorageMode.COLUMNAR).build();
+ * </pre>
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public final class ValueGenerators {
+
+    /*
+     * The type tags of the generators in snapshot files. Zero stands for a
+     * generator that is not created by this class.
+     */
+
+    static final byte INTEGERS = 1;
+
+    static final byte LONGS = 2;
+
+    static final byte DOUBLES = 3;
+
+    static final byte BOOLEANS = 4;
+
+    static final byte DATES = 5;
+
+    static final byte ENUMS = 6;
+
+    private ValueGenerators() {
+        // for static use only
+    }
+
+    /**
+     * @param min
+     *            the smallest value (inclusive)
+     * @param max
+     *            the largest value (exclusive)
+     * @return a generator of evenly distributed integers
+     */
+    public static ValueGenerator<Integer> integers(int min, int max) {
+        checkRange(min, max);
+        return new IntGenerator(min, max);
+    }
+
+    /**
+     * @param min
+     *            the smallest value (inclusive)
+     * @param max
+     *            the largest value (exclusive)
+     * @return a generator of evenly distributed longs
+     */
+    public static ValueGenerator<Long> longs(long min, long max) {
+        checkRange(min, max);
+        return new LongGenerator(min, max);
+    }
+
+    /**
+     * @param min
+     *            the smallest value (inclusive)
+     * @param max
+     *            the largest value (exclusive)
+     * @return a generator of evenly distributed doubles
+     * @throws IllegalArgumentException
+     *             if the maximum is not greater than the minimum, or the
+     *             difference between them is not a finite double
+     */
+    public static ValueGenerator<Double> doubles(double min, double max) {
+        if (!(max > min)) {
+            throw new IllegalArgumentException(
+                    "Maximum must be greater than the minimum");
+        }
+        if (Double.isInfinite(max - min)) {
+            throw new IllegalArgumentException(
+                    "The range of the values must be finite");
+        }
+        return new DoubleGenerator(min, max - min);
+    }
+
+    /**
+     * @return a generator of booleans, half of them true
+     */
+    public static ValueGenerator<Boolean> booleans() {
+        return booleans(0.5);
+    }
+
+    /**
+     * @param probability
+     *            the share of true values
+     * @return a generator of booleans
+     */
+    public static ValueGenerator<Boolean> booleans(double probability) {
+        if (!(probability >= 0 && probability <= 1)) {
+            throw new IllegalArgumentException(
+                    "Probability must be between 0 and 1");
+        }
+        return new BooleanGenerator(probability);
+    }
+
+    /**
+     * @param from
+     *            the earliest date (inclusive)
+     * @param to
+     *            the latest date (exclusive)
+     * @return a generator of evenly distributed dates
+     */
+    public static ValueGenerator<Date> dates(Date from, Date to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Dates cannot be null");
+        }
+        checkRange(from.getTime(), to.getTime());
+        return new DateGenerator(from.getTime(), to.getTime());
+    }
+
+    /**
+     * @param type
+     *            the enum type
+     * @return a generator of evenly distributed constants of the enum
+     */
+    public static <E extends Enum<E>> ValueGenerator<E> enums(Class<E> type) {
+        if (type == null || type.getEnumConstants().length == 0) {
+            throw new IllegalArgumentException(
+                    "Type must be an enum with at least one constant");
+        }
+        return new EnumGenerator<E>(type);
+    }
+
+    /**
+     * @param generator
+     * @return the type tag of the generator, or zero if it was not created
+     *         by this class
+     */
+    static byte getTag(ValueGenerator<?> generator) {
+        if (generator instanceof IntGenerator) {
+            return INTEGERS;
+        } else if (generator instanceof LongGenerator) {
+            return LONGS;
+        } else if (generator instanceof DoubleGenerator) {
+            return DOUBLES;
+        } else if (generator instanceof BooleanGenerator) {
+            return BOOLEANS;
+        } else if (generator instanceof DateGenerator) {
+            return DATES;
+        } else if (generator instanceof EnumGenerator) {
+            return ENUMS;
+        }
+        return 0;
+    }
+
+    /**
+     * Writes the type tag of a generator created by this class followed by
+     * its parameters.
+     * 
+     * @param generator
+     *            a generator whose tag is not zero
+     * @param out
+     * @throws IOException
+     * @see #read(DataInput)
+     */
+    static void write(ValueGenerator<?> generator, DataOutput out)
+            throws IOException {
+        byte tag = getTag(generator);
+        out.writeByte(tag);
+        switch (tag) {
+        case INTEGERS:
+            out.writeInt(((IntGenerator) generator).min);
+            out.writeInt(((IntGenerator) generator).max);
+            break;
+        case LONGS:
+            out.writeLong(((LongGenerator) generator).min);
+            out.writeLong(((LongGenerator) generator).max);
+            break;
+        case DOUBLES:
+            out.writeDouble(((DoubleGenerator) generator).min);
+            out.writeDouble(((DoubleGenerator) generator).range);
+            break;
+        case BOOLEANS:
+            out.writeDouble(((BooleanGenerator) generator).probability);
+            break;
+        case DATES:
+            out.writeLong(((DateGenerator) generator).from);
+            out.writeLong(((DateGenerator) generator).to);
+            break;
+        case ENUMS:
+            out.writeUTF(generator.getType().getName());
+            break;
+        default:
+            throw new IllegalArgumentException(generator.getClass()
+                    .getName() + " has no type tag");
+        }
+    }
+
+    /**
+     * @param in
+     * @return a generator equivalent to the one written by
+     *         {@link #write(ValueGenerator, DataOutput)}
+     * @throws IOException
+     *             if the tag is unknown or the enum type of the generator
+     *             cannot be found
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static ValueGenerator<?> read(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+        case INTEGERS:
+            return new IntGenerator(in.readInt(), in.readInt());
+        case LONGS:
+            return new LongGenerator(in.readLong(), in.readLong());
+        case DOUBLES:
+            return new DoubleGenerator(in.readDouble(), in.readDouble());
+        case BOOLEANS:
+            return new BooleanGenerator(in.readDouble());
+        case DATES:
+            return new DateGenerator(in.readLong(), in.readLong());
+        case ENUMS:
+            String name = in.readUTF();
+            ClassLoader loader = Thread.currentThread()
+                    .getContextClassLoader();
+            Class<?> type;
+            try {
+                type = Class.forName(name, false, loader != null ? loader
+                        : ValueGenerators.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unknown enum type " + name, e);
+            }
+            if (!type.isEnum()) {
+                throw new IOException(name + " is not an enum type");
+            }
+            return new EnumGenerator(type);
+        default:
+            throw new IOException("Unknown generator type " + tag);
+        }
+    }
+
+    private static void checkRange(long min, long max) {
+        if (max <= min) {
+            throw new IllegalArgumentException(
+                    "Maximum must be greater than the minimum");
+        }
+    }
+
+    private static long nextLong(long random, long min, long max) {
+        if (max - min < 0) {
+            // wider than 2^63, which overflows through a double: scale all
+            // 64 bits by the unsigned range, the sum wraps into [min, max)
+            return min + unsignedMultiplyHigh(random, max - min);
+        }
+        double range = (double) max - (double) min;
+        long value = min + (long) (MockupRandom.nextDouble(random) * range);
+        return Math.min(Math.max(value, min), max - 1);
+    }
+
+    /**
+     * @return the upper 64 bits of the 128-bit product of two unsigned longs
+     */
+    private static long unsignedMultiplyHigh(long x, long y) {
+        long x0 = x & 0xffffffffL;
+        long x1 = x >>> 32;
+        long y0 = y & 0xffffffffL;
+        long y1 = y >>> 32;
+        long low = x0 * y0;
+        long middle = x1 * y0 + (low >>> 32);
+        long carry = x0 * y1 + (middle & 0xffffffffL);
+        return x1 * y1 + (middle >>> 32) + (carry >>> 32);
+    }
+
+    private static class IntGenerator extends ValueGenerator<Integer> {
+
+        private static final long serialVersionUID = -1553468612226402475L;
+
+        private final int min;
+
+        private final int max;
+
+        IntGenerator(int min, int max) {
+            super(Integer.class);
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public Integer generate(long random) {
+            return Integer.valueOf(generateInt(random));
+        }
+
+        private int generateInt(long random) {
+            return (int) nextLong(random, min, max);
+        }
+
+        @Override
+        Column createColumn(int size) {
+            return new IntColumn(size);
+        }
+
+        @Override
+        void generateInto(Column column, int row, long random) {
+            ((IntColumn) column).setInt(row, generateInt(random));
+        }
+    }
+
+    private static class LongGenerator extends ValueGenerator<Long> {
+
+        private static final long serialVersionUID = 2216616405637335906L;
+
+        private final long min;
+
+        private final long max;
+
+        LongGenerator(long min, long max) {
+            super(Long.class);
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public Long generate(long random) {
+            return Long.valueOf(nextLong(random, min, max));
+        }
+
+        @Override
+        Column createColumn(int size) {
+            return new LongColumn(size);
+        }
+
+        @Override
+        void generateInto(Column column, int row, long random) {
+            ((LongColumn) column).setLong(row, nextLong(random, min, max));
+        }
+    }
+
+    private static class DoubleGenerator extends ValueGenerator<Double> {
+
+        private static final long serialVersionUID = 5811290938069604545L;
+
+        private final double min;
+
+        private final double range;
+
+        DoubleGenerator(double min, double range) {
+            super(Double.class);
+            this.min = min;
+            this.range = range;
+        }
+
+        @Override
+        public Double generate(long random) {
+            return Double.valueOf(generateDouble(random));
+        }
+
+        private double generateDouble(long random) {
+            return min + MockupRandom.nextDouble(random) * range;
+        }
+
+        @Override
+        Column createColumn(int size) {
+            return new DoubleColumn(size);
+        }
+
+        @Override
+        void generateInto(Column column, int row, long random) {
+            ((DoubleColumn) column).setDouble(row, generateDouble(random));
+        }
+    }
+
+    private static class BooleanGenerator extends ValueGenerator<Boolean> {
+
+        private static final long serialVersionUID = -7360305936102066224L;
+
+        private final double probability;
+
+        BooleanGenerator(double probability) {
+            super(Boolean.class);
+            this.probability = probability;
+        }
+
+        @Override
+        public Boolean generate(long random) {
+            return Boolean.valueOf(generateBoolean(random));
+        }
+
+        private boolean generateBoolean(long random) {
+            return MockupRandom.nextDouble(random) < probability;
+        }
+
+        @Override
+        Column createColumn(int size) {
+            return new BooleanColumn(size);
+        }
+
+        @Override
+        void generateInto(Column column, int row, long random) {
+            ((BooleanColumn) column).setBoolean(row, generateBoolean(random));
+        }
+    }
+
+    private static class DateGenerator extends ValueGenerator<Date> {
+
+        private static final long serialVersionUID = 8497342264939466512L;
+
+        private final long from;
+
+        private final long to;
+
+        DateGenerator(long from, long to) {
+            super(Date.class);
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Date generate(long random) {
+            return new Date(nextLong(random, from, to));
+        }
+
+        @Override
+        Column createColumn(int size) {
+            return new DateColumn(size);
+        }
+
+        @Override
+        void generateInto(Column column, int row, long random) {
+            ((DateColumn) column).setLong(row, nextLong(random, from, to));
+        }
+    }
+
+    private static class EnumGenerator<E extends Enum<E>> extends
+            ValueGenerator<E> {
+
+        private static final long serialVersionUID = 6185316898565001342L;
+
+        private final E[] constants;
+
+        EnumGenerator(Class<E> type) {
+            super(type);
+            constants = type.getEnumConstants();
+        }
+
+        @Override
+        public E generate(long random) {
+            return constants[MockupRandom.nextInt(random, constants.length)];
+        }
+
+        @Override
+        Column createColumn(int size) {
+            return new EnumColumn(constants, size);
+        }
+
+        @Override
+        void generateInto(Column column, int row, long random) {
+            ((EnumColumn) column).setOrdinal(row,
+                    MockupRandom.nextInt(random, constants.length));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.vaadin.risto.mockupcontainer;
+
+/**
+ * A {@link DeterministicDataSet} whose values come from a fixed vocabulary.
+ * Exposing the vocabulary allows the MockupContainer to store each cell as a
+ * small index into the vocabulary instead of a reference to the value, see
+ * {@link StorageMode#DICTIONARY}.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+public interface VocabularyDataSet extends DeterministicDataSet {
+
+    /**
+     * @return the number of words in the vocabulary
+     */
+    public int getVocabularySize();
+
+    /**
+     * @param index
+     *            an index between zero and {@link #getVocabularySize()}
+     * @return the word at the given index
+     */
+    public String getVocabularyValue(int index);
+
+    /**
+     * Draws the index of a value for the given random bits. For the same
+     * random bits, the word at the returned index must be equal to
+     * {@link #getValue(long)}.
+     * 
+     * @param random
+     *            random bits from {@link MockupRandom}
+     * @return an index into the vocabulary
+     */
+    public int getValueIndex(long random);
+}
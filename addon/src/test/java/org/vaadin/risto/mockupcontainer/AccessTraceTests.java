@@ -0,0 +1,160 @@
+package org.vaadin.risto.mockupcontainer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.vaadin.data.util.IndexedContainer;
+
+public class AccessTraceTests {
+
+    private MockupContainer.Builder builder() {
+        return MockupContainer.builder().itemCount(500).propertyCount(4)
+                .numberOfChildren(5).seed(3);
+    }
+
+    private byte[] recordSession(MockupContainer container) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AccessTraceRecorder recorder = new AccessTraceRecorder(bytes);
+        container.setTraceRecorder(recorder);
+
+        Object[] propertyIds = container.getContainerPropertyIds().toArray();
+        container.size();
+        for (Integer itemId : container.getItemIds(0, 20)) {
+            for (Object propertyId : propertyIds) {
+                container.getContainerProperty(itemId, propertyId);
+            }
+        }
+        container.getItems(20, 20);
+        container.getIdByIndex(499);
+        container.nextItemId(-7);
+        container.getItem(null);
+        for (Integer root : container.rootItemIds()) {
+            if (container.hasChildren(root)) {
+                container.getChildren(root);
+            }
+        }
+        container.getParent(42);
+
+        container.setTraceRecorder(null);
+        container.size();
+        recorder.close();
+        assertEquals(19 + 20 * propertyIds.length,
+                recorder.getEventCount());
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testReplayRepeatsRecordedCalls() throws IOException {
+        MockupContainer recorded = builder().metrics(true).build();
+        byte[] trace = recordSession(recorded);
+        MetricsSnapshot expected = recorded.getMetrics().snapshot();
+        assertTrue("Trace should be compact: " + trace.length + " bytes",
+                trace.length < 13 + 120 * 6);
+
+        MockupContainer target = builder().metrics(true).build();
+        AccessTraceReplayer replayer = new AccessTraceReplayer(target);
+        MetricsSnapshot replayed = replayer.replay(new ByteArrayInputStream(
+                trace));
+        MetricsSnapshot observed = target.getMetrics().snapshot();
+
+        assertEquals(0, replayer.getSkippedCount());
+        assertEquals(expected.getTotalCallCount() - 1,
+                replayer.getReplayedCount());
+        for (ContainerOperation operation : ContainerOperation.values()) {
+            long count = expected.getCallCount(operation)
+                    - (operation == ContainerOperation.SIZE ? 1 : 0);
+            assertEquals(operation.name(), count,
+                    observed.getCallCount(operation));
+            assertEquals(operation.name(), count,
+                    replayed.getCallCount(operation));
+        }
+        assertEquals(expected.getDistinctRowsTouched(),
+                observed.getDistinctRowsTouched());
+    }
+
+    @Test
+    public void testReplaySkipsUnsupportedCalls() throws IOException {
+        MockupContainer recorded = builder().build();
+        byte[] trace = recordSession(recorded);
+
+        IndexedContainer target = new IndexedContainer();
+        for (Object propertyId : recorded.getContainerPropertyIds()) {
+            target.addContainerProperty(propertyId, String.class, "");
+        }
+        for (int itemId = 0; itemId < 500; itemId++) {
+            target.addItem(itemId);
+        }
+
+        AccessTraceReplayer replayer = new AccessTraceReplayer(target);
+        MetricsSnapshot replayed = replayer.replay(new ByteArrayInputStream(
+                trace));
+        // rootItemIds, hasChildren, getChildren and getParent
+        assertEquals(1 + 5 + 5 + 1, replayer.getSkippedCount());
+        assertEquals(80,
+                replayed.getCallCount(ContainerOperation.GET_CONTAINER_PROPERTY));
+        assertEquals(1, replayed.getCallCount(ContainerOperation.GET_ITEMS));
+    }
+
+    @Test
+    public void testSortAndFilterCallsAreRecorded() throws IOException {
+        MockupContainer recorded = builder().build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AccessTraceRecorder recorder = new AccessTraceRecorder(bytes);
+        recorded.setTraceRecorder(recorder);
+        Object propertyId = recorded.getPropertyId(1);
+        recorded.sort(new Object[] { propertyId, recorded.getPropertyId(0) },
+                new boolean[] { false, true });
+        recorded.addContainerFilter(propertyId, "a", true, false);
+        recorded.firstItemId();
+        recorded.isLastId(recorded.lastItemId());
+        recorded.getType(propertyId);
+        recorded.areChildrenAllowed(3);
+        recorded.removeAllContainerFilters();
+        recorder.close();
+        assertEquals(8, recorder.getEventCount());
+
+        MockupContainer target = builder().metrics(true).build();
+        AccessTraceReplayer replayer = new AccessTraceReplayer(target);
+        MetricsSnapshot replayed = replayer.replay(new ByteArrayInputStream(
+                bytes.toByteArray()));
+        // the filter itself is not in the trace
+        assertEquals(1, replayer.getSkippedCount());
+        assertEquals(1, replayed.getCallCount(ContainerOperation.SORT));
+        assertEquals(1,
+                replayed.getCallCount(ContainerOperation.IS_LAST_ID));
+        assertEquals(recorded.getItemIds(), target.getItemIds());
+    }
+
+    @Test
+    public void testRealTimeReplayKeepsThePace() throws IOException {
+        MockupContainer container = builder().latencyModel(
+                LatencyModels.constant(2, TimeUnit.MILLISECONDS)).build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AccessTraceRecorder recorder = new AccessTraceRecorder(bytes);
+        container.setTraceRecorder(recorder);
+        for (int itemId = 0; itemId < 10; itemId++) {
+            container.getItem(itemId);
+        }
+        recorder.close();
+
+        AccessTraceReplayer replayer = new AccessTraceReplayer(builder()
+                .build());
+        replayer.setRealTime(true);
+        replayer.replay(new ByteArrayInputStream(bytes.toByteArray()));
+        assertTrue(replayer.getElapsedNanos() >= TimeUnit.MILLISECONDS
+                .toNanos(18));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReplayRejectsOtherFiles() throws IOException {
+        new AccessTraceReplayer(builder().build())
+                .replay(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5 }));
+    }
+}
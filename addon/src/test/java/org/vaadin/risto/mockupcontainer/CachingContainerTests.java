@@ -0,0 +1,111 @@
+package org.vaadin.risto.mockupcontainer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+import com.vaadin.data.Container.ItemSetChangeEvent;
+import com.vaadin.data.Container.ItemSetChangeListener;
+
+public class CachingContainerTests {
+
+    @Test
+    public void testRepeatedRequestsHitTheCache() {
+        CachingContainer cache = new CachingContainer(MockupContainer
+                .builder().itemCount(1000).build(), 100, 0);
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 50; i++) {
+                assertSame(cache.getItem(i), cache.getItem(i));
+            }
+        }
+        assertEquals(50, cache.getMissCount());
+        assertEquals(250, cache.getHitCount());
+
+        for (int i = 0; i < 500; i++) {
+            cache.getItem(i);
+        }
+        assertEquals(100, cache.getCachedItemCount());
+    }
+
+    @Test
+    public void testReadAheadPrefetchesFollowingItems() throws Exception {
+        MockupContainer container = MockupContainer.builder().itemCount(1000)
+                .build();
+        CachingContainer cache = new CachingContainer(container, 100, 20);
+
+        cache.getItem(10);
+        for (int i = 0; i < 500 && cache.getPrefetchCount() < 20; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(20, cache.getPrefetchCount());
+        for (int i = 11; i <= 30; i++) {
+            cache.getItem(i);
+        }
+        assertEquals(1, cache.getMissCount());
+        assertEquals(20, cache.getHitCount());
+
+        container.sort(new Object[] { container.getContainerPropertyIds()
+                .iterator().next() }, new boolean[] { true });
+        assertEquals(0, cache.getCachedItemCount());
+        assertTrue(cache.getHitRatio() > 0.9);
+        cache.shutdown();
+    }
+
+    @Test
+    public void testReadAheadRunsInTheGivenExecutor() {
+        CachingContainer cache = new CachingContainer(MockupContainer
+                .builder().itemCount(1000).build(), 100, 20);
+        final List<Runnable> commands = new ArrayList<Runnable>();
+        cache.setExecutor(new Executor() {
+
+            @Override
+            public void execute(Runnable command) {
+                commands.add(command);
+            }
+        });
+
+        cache.getItem(10);
+        assertEquals(1, commands.size());
+        assertEquals(0, cache.getPrefetchCount());
+        commands.get(0).run();
+        assertEquals(20, cache.getPrefetchCount());
+        assertEquals(21, cache.getCachedItemCount());
+    }
+
+    @Test
+    public void testShutdownDetachesFromContainer() {
+        MockupContainer container = MockupContainer.builder().itemCount(100)
+                .build();
+        CachingContainer cache = new CachingContainer(container, 10, 0);
+        final List<ItemSetChangeEvent> events = new ArrayList<ItemSetChangeEvent>();
+        cache.addItemSetChangeListener(new ItemSetChangeListener() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                events.add(event);
+            }
+        });
+        cache.getItem(1);
+
+        cache.shutdown();
+        container.addItem();
+        assertTrue(events.isEmpty());
+        assertEquals(0, cache.getCachedItemCount());
+        try {
+            cache.getItem(1);
+            fail("A shut down cache was used");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
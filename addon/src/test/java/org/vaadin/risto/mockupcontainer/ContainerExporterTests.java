@@ -0,0 +1,128 @@
+package org.vaadin.risto.mockupcontainer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import com.vaadin.data.Property;
+
+public class ContainerExporterTests {
+
+    private String export(MockupContainer container, ExportFormat format,
+            int bufferSize) throws IOException {
+        ContainerExporter exporter = new ContainerExporter(container, format);
+        exporter.setBufferSize(bufferSize);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(container.size(), exporter.export(out));
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testCsvMatchesContainer() throws IOException {
+        MockupContainer container = MockupContainer.builder().itemCount(200)
+                .propertyCount(3).numberOfChildren(4).seed(5).build();
+        Object[] propertyIds = container.getContainerPropertyIds().toArray();
+
+        String[] lines = export(container, ExportFormat.CSV, 64).split("\r\n");
+        assertEquals(201, lines.length);
+        assertEquals("id,parent," + propertyIds[0] + "," + propertyIds[1]
+                + "," + propertyIds[2], lines[0]);
+        for (int itemId = 0; itemId < 200; itemId++) {
+            Object parent = container.getParent(itemId);
+            StringBuilder expected = new StringBuilder();
+            expected.append(itemId).append(',')
+                    .append(parent == null ? "" : parent);
+            for (Object propertyId : propertyIds) {
+                expected.append(',').append(
+                        container.getContainerProperty(itemId, propertyId)
+                                .getValue());
+            }
+            assertEquals(expected.toString(), lines[itemId + 1]);
+        }
+    }
+
+    @Test
+    public void testItemsModeExportCreatesNoProperties() throws IOException {
+        MockupContainer container = MockupFactory.getTypedContainer(300)
+                .toBuilder().storageMode(StorageMode.ITEMS).seed(7).build();
+        MockupContainer columnar = container.toBuilder()
+                .storageMode(StorageMode.COLUMNAR).build();
+
+        assertEquals(export(columnar, ExportFormat.CSV, 256),
+                export(container, ExportFormat.CSV, 256));
+        int columns = container.getContainerPropertyIds().size();
+        for (int itemId = 0; itemId < 300; itemId++) {
+            MockupItem item = (MockupItem) container.getUnfilteredItem(itemId);
+            for (int column = 0; column < columns; column++) {
+                assertNull(item.getCreatedProperty(column));
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSpecialCharactersAreEscaped() throws IOException {
+        MockupContainer container = MockupContainer.builder().itemCount(3)
+                .propertyCount(1).numberOfChildren(3).seed(5).build();
+        Object propertyId = container.getContainerPropertyIds().iterator()
+                .next();
+        String value = "a,\"b\"\n\u00e4\ud83d\ude00";
+        ((Property<Object>) container.getContainerProperty(1, propertyId))
+                .setValue(value);
+
+        String csv = export(container, ExportFormat.CSV, 64);
+        assertTrue(csv,
+                csv.contains("\r\n1,,\"a,\"\"b\"\"\n\u00e4\ud83d\ude00\"\r\n"));
+
+        String json = export(container, ExportFormat.JSON_LINES, 64);
+        assertTrue(json, json.contains("{\"id\":1,\"parent\":null,\""
+                + propertyId + "\":\"a,\\\"b\\\"\\n\u00e4\ud83d\ude00\"}\n"));
+    }
+
+    @Test
+    public void testJsonLinesWritesTypedValues() throws IOException {
+        MockupContainer container = MockupFactory.getTypedContainer(50)
+                .toBuilder().storageMode(StorageMode.VIRTUAL).build();
+        container.sort(new Object[] { MockupFactory.INTEGER_PROPERTY },
+                new boolean[] { false });
+        SimpleDateFormat dateFormat = new SimpleDateFormat(
+                "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        String[] lines = export(container, ExportFormat.JSON_LINES, 1 << 16)
+                .split("\n");
+        assertEquals(50, lines.length);
+        for (int index = 0; index < 50; index++) {
+            Object itemId = container.getIdByIndex(index);
+            Object date = container.getContainerProperty(itemId,
+                    MockupFactory.DATE_PROPERTY).getValue();
+            String line = lines[index];
+            assertTrue(line, line.startsWith("{\"id\":" + itemId
+                    + ",\"parent\":" + container.getParent(itemId) + ","));
+            assertTrue(line, line.contains("\""
+                    + MockupFactory.INTEGER_PROPERTY
+                    + "\":"
+                    + container.getContainerProperty(itemId,
+                            MockupFactory.INTEGER_PROPERTY).getValue()));
+            assertTrue(line, line.contains("\""
+                    + MockupFactory.BOOLEAN_PROPERTY
+                    + "\":"
+                    + container.getContainerProperty(itemId,
+                            MockupFactory.BOOLEAN_PROPERTY).getValue()));
+            assertTrue(line, line.contains("\"" + MockupFactory.DATE_PROPERTY
+                    + "\":"
+                    + (date == null ? "null" : "\""
+                            + dateFormat.format((Date) date) + "\"")));
+            assertTrue(line, line.endsWith("}"));
+        }
+    }
+}
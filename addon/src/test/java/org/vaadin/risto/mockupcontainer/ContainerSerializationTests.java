@@ -0,0 +1,179 @@
+package org.vaadin.risto.mockupcontainer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import com.vaadin.data.Container;
+import com.vaadin.data.Container.ItemSetChangeEvent;
+import com.vaadin.data.Property;
+import com.vaadin.data.util.filter.Compare;
+
+public class ContainerSerializationTests {
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException,
+            ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+                bytes));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void assertSameContents(MockupContainer expected,
+            MockupContainer actual) {
+        assertEquals(new ArrayList<Object>(expected.getContainerPropertyIds()),
+                new ArrayList<Object>(actual.getContainerPropertyIds()));
+        assertEquals(expected.getItemIds(), actual.getItemIds());
+        for (Object itemId : expected.getItemIds()) {
+            for (Object propertyId : expected.getContainerPropertyIds()) {
+                assertEquals(
+                        expected.getContainerProperty(itemId, propertyId)
+                                .getValue(),
+                        actual.getContainerProperty(itemId, propertyId)
+                                .getValue());
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLargeContainerIsSerializedCompactly() throws Exception {
+        MockupContainer container = MockupContainer.builder()
+                .itemCount(100000).propertyCount(5).seed(8)
+                .storageMode(StorageMode.DICTIONARY).build();
+        assertTrue(serialize(container).length < 256);
+
+        Object propertyId = container.getPropertyId(1);
+        ((Property<Object>) container.getContainerProperty(17, propertyId))
+                .setValue("modified");
+        container.sort(new Object[] { propertyId }, new boolean[] { false });
+        container.addContainerFilter(new Compare.Equal(propertyId, container
+                .getContainerProperty(3, propertyId).getValue()));
+
+        byte[] bytes = serialize(container);
+        assertTrue("Serialized form should be compact: " + bytes.length
+                + " bytes", bytes.length < 1024);
+
+        MockupContainer restored = (MockupContainer) deserialize(bytes);
+        assertEquals(100000, restored.getItemCount());
+        assertEquals(container.getContainerFilters().size(), restored
+                .getContainerFilters().size());
+        assertSameContents(container, restored);
+
+        restored.removeAllContainerFilters();
+        container.removeAllContainerFilters();
+        assertEquals("modified",
+                restored.getContainerProperty(17, propertyId).getValue());
+        assertEquals(container.getItemIds(0, 1000),
+                restored.getItemIds(0, 1000));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testModifiedCellsSurviveInAllStorageModes() throws Exception {
+        for (StorageMode storageMode : StorageMode.values()) {
+            MockupContainer container = MockupFactory.getTypedContainer(300)
+                    .toBuilder().storageMode(storageMode).seed(4).build();
+            Object stringProperty = container.getPropertyId(0);
+            // a created but unmodified property is not written
+            container.getContainerProperty(2, stringProperty);
+            ((Property<Object>) container.getContainerProperty(5,
+                    stringProperty)).setValue("modified");
+            ((Property<Object>) container.getContainerProperty(6,
+                    MockupFactory.INTEGER_PROPERTY)).setValue(-3);
+            ((Property<Object>) container.getContainerProperty(7,
+                    stringProperty)).setValue(null);
+
+            MockupContainer restored = (MockupContainer) deserialize(serialize(container));
+            assertEquals(storageMode, restored.getStorageMode());
+            assertSameContents(container, restored);
+        }
+    }
+
+    @Test
+    public void testListenersAreRestoredWithTheContainer() throws Exception {
+        MockupContainer container = MockupContainer.builder().itemCount(50)
+                .seed(1).build();
+        CountingListener listener = new CountingListener(container);
+        container.addItemSetChangeListener(listener);
+
+        CountingListener restoredListener = (CountingListener) deserialize(serialize(listener));
+        assertNotNull(restoredListener.container);
+        restoredListener.container.setItemCount(20);
+        assertEquals(1, restoredListener.count);
+        assertSame(restoredListener.container, restoredListener.lastContainer);
+        assertEquals(20, restoredListener.container.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testOtherDataSetsAreSerializedInFull() throws Exception {
+        MockupContainer container = MockupContainer.builder().itemCount(500)
+                .dataSet(new CountingDataSet()).build();
+        ((Property<Object>) container.getContainerProperty(9,
+                container.getPropertyId(0))).setValue("modified");
+
+        MockupContainer restored = (MockupContainer) deserialize(serialize(container));
+        assertSameContents(container, restored);
+    }
+
+    private static class CountingListener implements
+            Container.ItemSetChangeListener {
+
+        private static final long serialVersionUID = 1L;
+
+        private final MockupContainer container;
+
+        private Container lastContainer;
+
+        private int count;
+
+        public CountingListener(MockupContainer container) {
+            this.container = container;
+        }
+
+        @Override
+        public void containerItemSetChange(ItemSetChangeEvent event) {
+            lastContainer = event.getContainer();
+            count++;
+        }
+    }
+
+    private static class CountingDataSet implements MockupDataSet {
+
+        private static final long serialVersionUID = 1L;
+
+        private int next;
+
+        @Override
+        public String nextId() {
+            return "id" + next++;
+        }
+
+        @Override
+        public String nextValue() {
+            return "value" + next++;
+        }
+    }
+}
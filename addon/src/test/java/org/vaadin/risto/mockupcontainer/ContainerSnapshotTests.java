@@ -0,0 +1,230 @@
+package org.vaadin.risto.mockupcontainer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.vaadin.data.Property;
+
+public class ContainerSnapshotTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSnapshotMatchesContainerInAllStorageModes()
+            throws IOException {
+        for (StorageMode storageMode : StorageMode.values()) {
+            MockupContainer container = MockupFactory.getTypedContainer(700)
+                    .toBuilder().storageMode(storageMode).seed(17).build();
+            Object stringProperty = container.getPropertyId(0);
+            if (storageMode != StorageMode.VIRTUAL) {
+                ((Property<Object>) container.getContainerProperty(3,
+                        stringProperty)).setValue("modified");
+                ((Property<Object>) container.getContainerProperty(4,
+                        MockupFactory.INTEGER_PROPERTY)).setValue(-5);
+            }
+            File file = folder.newFile();
+            container.saveSnapshot(file);
+
+            MockupContainer snapshot = MockupContainer.openSnapshot(file);
+            assertEquals(StorageMode.MAPPED, snapshot.getStorageMode());
+            assertEquals(
+                    new ArrayList<Object>(container.getContainerPropertyIds()),
+                    new ArrayList<Object>(snapshot.getContainerPropertyIds()));
+            assertEquals(container.size(), snapshot.size());
+            for (Object propertyId : container.getContainerPropertyIds()) {
+                assertEquals(container.getType(propertyId),
+                        snapshot.getType(propertyId));
+            }
+            for (int itemId = 0; itemId < 700; itemId++) {
+                assertEquals(container.getParent(itemId),
+                        snapshot.getParent(itemId));
+                assertEquals(container.hasChildren(itemId),
+                        snapshot.hasChildren(itemId));
+                for (Object propertyId : container.getContainerPropertyIds()) {
+                    assertEquals(
+                            container.getContainerProperty(itemId, propertyId)
+                                    .getValue(),
+                            snapshot.getContainerProperty(itemId, propertyId)
+                                    .getValue());
+                }
+            }
+            if (storageMode != StorageMode.VIRTUAL) {
+                assertEquals("modified",
+                        snapshot.getContainerProperty(3, stringProperty)
+                                .getValue());
+            }
+
+            Property<Object> property = (Property<Object>) snapshot
+                    .getContainerProperty(5, stringProperty);
+            assertTrue(property.isReadOnly());
+            try {
+                property.setValue("changed");
+                fail("Snapshot contents should be read-only");
+            } catch (Property.ReadOnlyException e) {
+                // expected
+            }
+
+            snapshot.sort(new Object[] { stringProperty },
+                    new boolean[] { true });
+            container.sort(new Object[] { stringProperty },
+                    new boolean[] { true });
+            assertEquals(container.getItemIds(), snapshot.getItemIds());
+        }
+    }
+
+    private static class LengthGenerator extends ValueGenerator<String> {
+
+        private static final long serialVersionUID = 1L;
+
+        LengthGenerator() {
+            super(String.class);
+        }
+
+        @Override
+        public String generate(long random) {
+            return String.valueOf(random & 0xff);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTypedColumnsAreMapped() throws Exception {
+        MockupContainer container = MockupFactory.getTypedContainer(300)
+                .toBuilder().seed(23)
+                .typedProperty("mode", ValueGenerators.enums(StorageMode.class))
+                .typedProperty("custom", new LengthGenerator()).build();
+        ((Property<Object>) container.getContainerProperty(7,
+                MockupFactory.DOUBLE_PROPERTY)).setValue(null);
+        File file = folder.newFile();
+        container.saveSnapshot(file);
+
+        MockupContainer snapshot = MockupContainer.openSnapshot(file);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(snapshot);
+        out.close();
+        MockupContainer copy = (MockupContainer) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        for (Object propertyId : container.getContainerPropertyIds()) {
+            int column = snapshot.indexOfProperty(propertyId);
+            if (snapshot.getGenerator(column) != null) {
+                assertEquals(!"custom".equals(propertyId),
+                        snapshot.getColumn(column) instanceof MappedColumn);
+            }
+            for (int itemId = 0; itemId < 300; itemId++) {
+                Object value = container.getContainerProperty(itemId,
+                        propertyId).getValue();
+                assertEquals(value,
+                        snapshot.getContainerProperty(itemId, propertyId)
+                                .getValue());
+                assertEquals(value,
+                        copy.getContainerProperty(itemId, propertyId)
+                                .getValue());
+            }
+        }
+        assertNull(snapshot.getContainerProperty(7,
+                MockupFactory.DOUBLE_PROPERTY).getValue());
+    }
+
+    @Test
+    public void testRemovedItemsAreSaved() throws IOException {
+        MockupContainer container = MockupContainer.builder().itemCount(200)
+                .numberOfChildren(3).seed(6).build();
+        container.addItem();
+        container.removeItem(1);
+        container.removeItem(130);
+        container.removeItem(200);
+        File file = folder.newFile();
+        container.saveSnapshot(file);
+
+        MockupContainer snapshot = MockupContainer.openSnapshot(file);
+        assertEquals(198, snapshot.size());
+        assertEquals(container.getItemIds(), snapshot.getItemIds());
+        assertEquals(new ArrayList<Object>(container.rootItemIds()),
+                new ArrayList<Object>(snapshot.rootItemIds()));
+        assertNull(snapshot.getItem(130));
+        assertEquals(131, snapshot.getIdByIndex(129));
+    }
+
+    @Test
+    public void testRegeneratingDiscardsSnapshot() throws IOException {
+        File file = folder.newFile();
+        MockupContainer.builder().itemCount(100).seed(2).build()
+                .saveSnapshot(file);
+        MockupContainer snapshot = MockupContainer.openSnapshot(file);
+
+        snapshot.setItemCount(50);
+        assertEquals(50, snapshot.size());
+        Property<?> property = snapshot.getContainerProperty(0,
+                snapshot.getPropertyId(0));
+        assertTrue(!property.isReadOnly());
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenRejectsInvalidCodeWidth() throws IOException {
+        File file = folder.newFile();
+        MockupContainer container = MockupContainer.builder().itemCount(100)
+                .propertyCount(4).seed(2).build();
+        container.saveSnapshot(file);
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            // the magic number and the version precede the header length
+            randomAccessFile.seek(8);
+            byte[] header = new byte[12 + randomAccessFile.readInt()];
+            randomAccessFile.seek(0);
+            randomAccessFile.readFully(header);
+            // the column description is the property id, the column kind
+            // and the code width
+            byte[] propertyId = container.getPropertyId(0).getBytes(
+                    StandardCharsets.UTF_8);
+            int widthPosition = lastIndexOf(header, propertyId)
+                    + propertyId.length + 1;
+            randomAccessFile.seek(widthPosition);
+            randomAccessFile.writeByte(3);
+        } finally {
+            randomAccessFile.close();
+        }
+        MockupContainer.openSnapshot(file);
+    }
+
+    private static int lastIndexOf(byte[] bytes, byte[] pattern) {
+        for (int i = bytes.length - pattern.length; i >= 0; i--) {
+            if (Arrays.equals(pattern,
+                    Arrays.copyOfRange(bytes, i, i + pattern.length))) {
+                return i;
+            }
+        }
+        throw new AssertionError("Pattern not found");
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenRejectsOtherFiles() throws IOException {
+        File file = folder.newFile();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13 });
+        out.close();
+        MockupContainer.openSnapshot(file);
+    }
+}
@@ -0,0 +1,186 @@
+package org.vaadin.risto.mockupcontainer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.vaadin.data.Container.ItemSetChangeEvent;
+import com.vaadin.data.Container.ItemSetChangeListener;
+import com.vaadin.data.Container.PropertySetChangeEvent;
+import com.vaadin.data.Container.PropertySetChangeListener;
+
+public class ContainerTransactionTests {
+
+    private static class RecordingListener implements ItemSetChangeListener,
+            PropertySetChangeListener {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Object> events = new ArrayList<Object>();
+
+        @Override
+        public void containerItemSetChange(ItemSetChangeEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void containerPropertySetChange(PropertySetChangeEvent event) {
+            events.add(event);
+        }
+    }
+
+    private static RecordingListener listen(MockupContainer container) {
+        RecordingListener listener = new RecordingListener();
+        container.addItemSetChangeListener(listener);
+        container.addPropertySetChangeListener(listener);
+        return listener;
+    }
+
+    @Test
+    public void testReconfigurationFiresOneEventOfEachType() {
+        MockupContainer container = MockupContainer.builder().itemCount(100)
+                .seed(3).build();
+        RecordingListener listener = listen(container);
+
+        container.beginTransaction();
+        container.setPropertyCount(8);
+        container.beginTransaction();
+        container.setNumberOfChildren(2);
+        container.setItemCount(500);
+        container.commitTransaction();
+        assertTrue(listener.events.isEmpty());
+        container.commitTransaction();
+
+        assertFalse(container.isInTransaction());
+        assertEquals(2, listener.events.size());
+        assertTrue(listener.events.get(0) instanceof PropertySetChangeEvent);
+        assertTrue(listener.events.get(1) instanceof ItemSetChangeEvent);
+        assertFalse(listener.events.get(1) instanceof ItemAddEvent);
+        assertEquals(500, container.size());
+    }
+
+    @Test
+    public void testConsecutiveAddsAreMerged() {
+        MockupContainer container = MockupContainer.builder().itemCount(10)
+                .seed(3).build();
+        RecordingListener listener = listen(container);
+
+        container.beginTransaction();
+        for (int i = 0; i < 5; i++) {
+            container.addItem();
+        }
+        container.commitTransaction();
+        assertEquals(1, listener.events.size());
+        ItemAddEvent added = (ItemAddEvent) listener.events.get(0);
+        assertEquals(10, added.getFirstItemId());
+        assertEquals(10, added.getFirstIndex());
+        assertEquals(5, added.getAddedItemsCount());
+
+        listener.events.clear();
+        container.beginTransaction();
+        container.addItem();
+        container.removeItem(3);
+        container.commitTransaction();
+        assertEquals(1, listener.events.size());
+        assertFalse(listener.events.get(0) instanceof ItemAddEvent);
+        assertFalse(listener.events.get(0) instanceof ItemRemoveEvent);
+    }
+
+    @Test
+    public void testListenerCanRemoveItselfWhileNotified() {
+        final MockupContainer container = MockupContainer.builder()
+                .itemCount(10).seed(3).build();
+        final List<ItemSetChangeEvent> events = new ArrayList<ItemSetChangeEvent>();
+        container.addItemSetChangeListener(new ItemSetChangeListener() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                container.removeItemSetChangeListener(this);
+            }
+        });
+        container.addItemSetChangeListener(new ItemSetChangeListener() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                events.add(event);
+            }
+        });
+
+        container.addItem();
+        container.addItem();
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    public void testConcurrentlyAddedListenersAreKept() throws Exception {
+        final MockupContainer container = MockupContainer.builder()
+                .itemCount(10).seed(3).build();
+        final AtomicInteger notified = new AtomicInteger();
+        final ItemSetChangeListener listener = new ItemSetChangeListener() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                notified.incrementAndGet();
+            }
+        };
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < 500; j++) {
+                        container.addItemSetChangeListener(listener);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        container.addItem();
+        assertEquals(threads.length * 500, notified.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCommitWithoutBeginFails() {
+        MockupContainer.builder().itemCount(10).build().commitTransaction();
+    }
+
+    @Test
+    public void testSimulatorCoalescesEventsPerWindow() throws Exception {
+        MockupContainer container = MockupContainer.builder().itemCount(1000)
+                .seed(4).storageMode(StorageMode.DICTIONARY).build();
+        RecordingListener listener = listen(container);
+        MutationSimulator simulator = new MutationSimulator(container);
+        simulator.setRate(5000);
+        simulator.setMix(1, 1, 0);
+        simulator.setCoalescingWindow(50, TimeUnit.MILLISECONDS);
+        simulator.start();
+        Thread.sleep(300);
+        simulator.stop();
+
+        MutationStatistics statistics = simulator.getStatistics();
+        assertFalse(container.isInTransaction());
+        assertTrue(statistics.getOperationCount() > statistics
+                .getDispatchCount());
+        assertTrue(listener.events.size() <= statistics.getDispatchCount());
+        assertEquals(1000 + statistics.getInsertCount()
+                - statistics.getRemoveCount(), container.size());
+    }
+}
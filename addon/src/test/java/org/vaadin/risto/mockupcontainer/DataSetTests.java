@@ -1,5 +1,6 @@
 package org.vaadin.risto.mockupcontainer;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import org.junit.Test;
@@ -22,4 +23,15 @@ public class DataSetTests {
         }
     }
 
+    @Test
+    public void testDeterministicValuesDependOnlyOnRandomBits() {
+        DefaultDataSet first = new DefaultDataSet();
+        DefaultDataSet second = new DefaultDataSet();
+        for (int i = 0; i < 100; i++) {
+            long random = MockupRandom.hash(7, i, 3);
+            assertEquals(first.getValue(random), second.getValue(random));
+            assertEquals(first.getId(random), second.getId(random));
+        }
+    }
+
 }
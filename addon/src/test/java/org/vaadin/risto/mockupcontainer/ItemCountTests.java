@@ -0,0 +1,142 @@
+package org.vaadin.risto.mockupcontainer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.vaadin.data.Container.ItemSetChangeEvent;
+import com.vaadin.data.Container.ItemSetChangeListener;
+import com.vaadin.data.Property;
+import com.vaadin.data.util.filter.Compare;
+
+public class ItemCountTests {
+
+    private static void assertSameContents(MockupContainer expected,
+            MockupContainer actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getItemIds(), actual.getItemIds());
+        for (Object itemId : expected.getItemIds()) {
+            assertEquals(expected.getParent(itemId), actual.getParent(itemId));
+            assertEquals(expected.getChildren(itemId),
+                    actual.getChildren(itemId));
+            for (Object propertyId : expected.getContainerPropertyIds()) {
+                assertEquals(
+                        expected.getContainerProperty(itemId, propertyId)
+                                .getValue(),
+                        actual.getContainerProperty(itemId, propertyId)
+                                .getValue());
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testResizedContainerMatchesGeneratedContainer() {
+        for (StorageMode storageMode : StorageMode.values()) {
+            MockupContainer.Builder builder = MockupFactory
+                    .getTypedContainer(100).toBuilder()
+                    .storageMode(storageMode).seed(6);
+            MockupContainer container = builder.build();
+            Object stringProperty = container.getPropertyId(0);
+
+            // nulls in the removed rows must not come back
+            for (int itemId = 40; itemId < 100; itemId++) {
+                ((Property<Object>) container.getContainerProperty(itemId,
+                        MockupFactory.INTEGER_PROPERTY)).setValue(null);
+            }
+            container.setItemCount(30);
+            container.setItemCount(250);
+            container.setItemCount(1000);
+            assertSameContents(builder.itemCount(1000).build(), container);
+
+            if (storageMode != StorageMode.VIRTUAL) {
+                ((Property<Object>) container.getContainerProperty(3,
+                        stringProperty)).setValue("modified");
+                container.setItemCount(1001);
+                assertEquals("modified",
+                        container.getContainerProperty(3, stringProperty)
+                                .getValue());
+            }
+        }
+    }
+
+    @Test
+    public void testTargetedEventsAreFired() {
+        MockupContainer container = MockupContainer.builder().itemCount(100)
+                .seed(3).build();
+        final List<ItemSetChangeEvent> events = new ArrayList<ItemSetChangeEvent>();
+        container.addItemSetChangeListener(new ItemSetChangeListener() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                events.add(event);
+            }
+        });
+
+        container.setItemCount(120);
+        container.setItemCount(90);
+        assertEquals(2, events.size());
+        ItemAddEvent added = (ItemAddEvent) events.get(0);
+        assertEquals(100, added.getFirstItemId());
+        assertEquals(100, added.getFirstIndex());
+        assertEquals(20, added.getAddedItemsCount());
+        ItemRemoveEvent removed = (ItemRemoveEvent) events.get(1);
+        assertEquals(90, removed.getFirstItemId());
+        assertEquals(30, removed.getRemovedItemsCount());
+        assertEquals(90, container.size());
+        assertFalse(container.containsId(90));
+
+        events.clear();
+        Object propertyId = container.getPropertyId(0);
+        container.sort(new Object[] { propertyId }, new boolean[] { true });
+        container.setItemCount(200);
+        assertEquals(2, events.size());
+        assertFalse(events.get(1) instanceof ItemAddEvent);
+
+        MockupContainer generated = container.toBuilder().build();
+        generated.sort(new Object[] { propertyId }, new boolean[] { true });
+        assertEquals(generated.getItemIds(), container.getItemIds());
+    }
+
+    @Test
+    public void testSmallStepsKeepSortOrderAndFilters() {
+        MockupContainer container = MockupFactory.getTypedContainer(1000)
+                .toBuilder().seed(12).build();
+        Object stringProperty = container.getPropertyId(0);
+        Object[] sortPropertyIds = { stringProperty,
+                MockupFactory.INTEGER_PROPERTY };
+        boolean[] ascending = { false, true };
+        container.sort(sortPropertyIds, ascending);
+        container.addContainerFilter(new Compare.Greater(
+                MockupFactory.INTEGER_PROPERTY, 0));
+        for (int step = 0; step < 20; step++) {
+            container.setItemCount(container.getItemCount() + 7);
+        }
+        container.setItemCount(1100);
+
+        MockupContainer generated = container.toBuilder().build();
+        generated.sort(sortPropertyIds, ascending);
+        generated.addContainerFilter(new Compare.Greater(
+                MockupFactory.INTEGER_PROPERTY, 0));
+        assertEquals(generated.getItemIds(), container.getItemIds());
+    }
+
+    @Test
+    public void testGrowingKeepsTouchedRows() {
+        MockupContainer container = MockupContainer.builder().itemCount(10)
+                .seed(3).metrics(true).build();
+        container.getItem(5);
+        container.setItemCount(1000);
+        container.getItem(900);
+        assertEquals(2, container.getMetrics().snapshot()
+                .getDistinctRowsTouched());
+        assertTrue(container.containsId(999));
+    }
+}
@@ -0,0 +1,109 @@
+package org.vaadin.risto.mockupcontainer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyModelTests {
+
+    @Test
+    public void testPercentilesModelMatchesPercentiles() {
+        LatencyModel model = LatencyModels.percentiles(2, 20,
+                TimeUnit.MILLISECONDS);
+        long[] delays = sample(model, 100000);
+
+        assertEquals(2000000, delays[delays.length / 2], 100000);
+        assertEquals(20000000, delays[delays.length * 99 / 100], 2000000);
+    }
+
+    @Test
+    public void testUniformModelStaysWithinBounds() {
+        long[] delays = sample(
+                LatencyModels.uniform(100, 200, TimeUnit.MICROSECONDS), 10000);
+
+        assertTrue(delays[0] >= 100000);
+        assertTrue(delays[delays.length - 1] < 200000);
+    }
+
+    @Test
+    public void testSpikesOccurWithGivenProbability() {
+        LatencyModel model = LatencyModels.withSpikes(
+                LatencyModels.constant(1, TimeUnit.MILLISECONDS), 0.01, 1,
+                TimeUnit.SECONDS);
+        long[] delays = sample(model, 100000);
+
+        int spikes = 0;
+        for (long delay : delays) {
+            if (delay > 1000000) {
+                assertEquals(1001000000, delay);
+                spikes++;
+            }
+        }
+        assertEquals(1000, spikes, 150);
+    }
+
+    @Test
+    public void testPageScopeChargesOncePerQuery() {
+        CountingModel model = new CountingModel();
+        MockupContainer container = MockupContainer.builder().itemCount(100)
+                .latencyModel(model).latencyScope(LatencyScope.PAGE).build();
+
+        for (Integer itemId : container.getItemIds(10, 20)) {
+            container.getItem(itemId);
+            container.getParent(itemId);
+        }
+        assertEquals(1, model.calls);
+
+        container.getItems(0, 50);
+        assertEquals(2, model.calls);
+
+        container.setLatencyScope(LatencyScope.ITEM);
+        container.getItemIds(10, 20);
+        container.getItem(10);
+        container.getItems(0, 50);
+        assertEquals(4, model.calls);
+    }
+
+    @Test
+    public void testDelayIsImposed() {
+        MockupContainer container = MockupContainer.builder()
+                .itemCount(10)
+                .latencyModel(
+                        LatencyModels.constant(500, TimeUnit.MICROSECONDS))
+                .build();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            container.getItem(i);
+        }
+        assertTrue(System.nanoTime() - start >= 5000000);
+    }
+
+    private long[] sample(LatencyModel model, int count) {
+        Random random = new Random(1);
+        long[] delays = new long[count];
+        for (int i = 0; i < count; i++) {
+            delays[i] = model.nextDelayNanos(random);
+        }
+        Arrays.sort(delays);
+        return delays;
+    }
+
+    private static class CountingModel implements LatencyModel {
+
+        private static final long serialVersionUID = 1L;
+
+        private int calls;
+
+        @Override
+        public long nextDelayNanos(Random random) {
+            calls++;
+            return 0;
+        }
+    }
+}
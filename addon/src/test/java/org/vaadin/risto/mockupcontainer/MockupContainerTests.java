@@ -0,0 +1,623 @@
+package org.vaadin.risto.mockupcontainer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.Container.ItemSetChangeEvent;
+import com.vaadin.data.Container.ItemSetChangeListener;
+import com.vaadin.data.Container.PropertySetChangeEvent;
+import com.vaadin.data.Container.PropertySetChangeListener;
+import com.vaadin.data.Item;
+import com.vaadin.data.Property;
+import com.vaadin.data.util.filter.And;
+import com.vaadin.data.util.filter.Compare;
+import com.vaadin.data.util.filter.Not;
+import com.vaadin.data.util.filter.Or;
+import com.vaadin.data.util.filter.SimpleStringFilter;
+
+public class MockupContainerTests {
+
+    @Test
+    public void testVirtualModeMaterializesItems() {
+        MockupContainer container = new MockupContainer(100, 5, 5);
+        container.setStorageMode(StorageMode.VIRTUAL);
+
+        assertEquals(100, container.size());
+        assertEquals(100, container.getItemIds().size());
+        for (Object itemId : container.getItemIds()) {
+            assertNotNull(container.getItem(itemId));
+            for (Object propertyId : container.getContainerPropertyIds()) {
+                assertNotNull(container.getContainerProperty(itemId,
+                        propertyId).getValue());
+            }
+        }
+        assertNull(container.getItem(100));
+    }
+
+    @Test
+    public void testHierarchyIsConsistent() {
+        MockupContainer container = new MockupContainer(137, 3, 4);
+
+        int reachable = container.rootItemIds().size();
+        for (int i = 0; i < 137; i++) {
+            Object parent = container.getParent(i);
+            assertEquals(parent == null, container.isRoot(i));
+            if (parent != null) {
+                assertTrue(container.getChildren(parent).contains(i));
+            }
+            assertEquals(!container.getChildren(i).isEmpty(),
+                    container.hasChildren(i));
+            reachable += container.getChildren(i).size();
+        }
+        assertEquals(137, reachable);
+        assertEquals(Arrays.asList(4, 5, 6, 7), container.getChildren(0));
+        assertEquals(Arrays.asList(136), container.getChildren(33));
+    }
+
+    @Test
+    public void testFlatHierarchyWithoutChildren() {
+        MockupContainer container = MockupContainer.builder().itemCount(10)
+                .numberOfChildren(0).build();
+
+        assertEquals(10, container.rootItemIds().size());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(container.isRoot(i));
+            assertFalse(container.hasChildren(i));
+        }
+    }
+
+    @Test
+    public void testItemIdNavigation() {
+        MockupContainer container = new MockupContainer(10, 2, 2);
+
+        assertEquals(0, container.firstItemId());
+        assertEquals(9, container.lastItemId());
+        assertTrue(container.isFirstId(0));
+        assertTrue(container.isLastId(9));
+        assertFalse(container.isLastId(8));
+        assertEquals(5, container.nextItemId(4));
+        assertEquals(3, container.prevItemId(4));
+        assertNull(container.nextItemId(9));
+        assertNull(container.prevItemId(0));
+    }
+
+    @Test
+    public void testEqualSeedsProduceEqualContents() {
+        MockupContainer first = new MockupContainer(50, 5, 5);
+        first.setSeed(42);
+        MockupContainer second = new MockupContainer(50, 5, 5);
+        second.setSeed(42);
+        second.setStorageMode(StorageMode.VIRTUAL);
+
+        assertArrayEquals(first.getContainerPropertyIds().toArray(), second
+                .getContainerPropertyIds().toArray());
+
+        // access the containers in opposite orders
+        Object[] propertyIds = first.getContainerPropertyIds().toArray();
+        Object[][] firstValues = new Object[50][propertyIds.length];
+        Object[][] secondValues = new Object[50][propertyIds.length];
+        for (int i = 0; i < 50; i++) {
+            for (int p = 0; p < propertyIds.length; p++) {
+                firstValues[i][p] = first.getContainerProperty(i,
+                        propertyIds[p]).getValue();
+            }
+        }
+        for (int i = 49; i >= 0; i--) {
+            for (int p = propertyIds.length - 1; p >= 0; p--) {
+                secondValues[i][p] = second.getContainerProperty(i,
+                        propertyIds[p]).getValue();
+            }
+        }
+        assertArrayEquals(firstValues, secondValues);
+    }
+
+    @Test
+    public void testBuilderAppliesAllSettings() {
+        MockupContainer container = MockupContainer.builder().itemCount(30)
+                .propertyCount(4).numberOfChildren(3).seed(1)
+                .storageMode(StorageMode.VIRTUAL).itemDelay(0).build();
+
+        assertEquals(30, container.size());
+        assertEquals(4, container.getContainerPropertyIds().size());
+        assertEquals(3, container.rootItemIds().size());
+        assertEquals(1, container.getSeed());
+        assertEquals(StorageMode.VIRTUAL, container.getStorageMode());
+    }
+
+    @Test
+    public void testBuilderRejectsMoreChildrenThanItems() {
+        MockupContainer container = new MockupContainer(100, 2, 5);
+        try {
+            container.toBuilder().itemCount(3).applyTo(container);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals(100, container.size());
+            assertEquals(5, container.getNumberOfChildren());
+        }
+        try {
+            MockupContainer.builder().itemCount(3).numberOfChildren(4)
+                    .build();
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConfigureFiresOneEventOfEachType() {
+        MockupContainer container = new MockupContainer();
+        final int[] events = new int[2];
+        container.addItemSetChangeListener(new ItemSetChangeListener() {
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                events[0]++;
+            }
+        });
+        container.addPropertySetChangeListener(new PropertySetChangeListener() {
+            @Override
+            public void containerPropertySetChange(PropertySetChangeEvent event) {
+                events[1]++;
+            }
+        });
+
+        container.toBuilder().itemCount(40).propertyCount(3)
+                .numberOfChildren(2).seed(5).applyTo(container);
+        assertEquals(1, events[0]);
+        assertEquals(1, events[1]);
+        assertEquals(40, container.size());
+
+        container.toBuilder().itemDelay(1).applyTo(container);
+        assertEquals(1, events[0]);
+        assertEquals(1, container.getGetItemDelay());
+    }
+
+    @Test
+    public void testItemIdRanges() {
+        MockupContainer container = new MockupContainer(100, 2, 5);
+
+        List<Integer> ids = container.getItemIds();
+        assertTrue(ids instanceof RandomAccess);
+        assertTrue(ids.contains(99));
+        assertFalse(ids.contains(100));
+        assertFalse(ids.contains("1"));
+        assertEquals(42, ids.indexOf(42));
+
+        List<Integer> page = container.getItemIds(95, 10);
+        assertEquals(Arrays.asList(95, 96, 97, 98, 99), page);
+        assertEquals(2, page.indexOf(97));
+        assertEquals(-1, page.indexOf(94));
+        assertEquals(Arrays.asList(96, 97), page.subList(1, 3));
+        assertTrue(container.getItemIds(100, 10).isEmpty());
+        assertEquals(-1, container.indexOfId(100));
+    }
+
+    @Test
+    public void testColumnarModeMatchesStoredItems() {
+        MockupContainer stored = MockupContainer.builder().itemCount(60)
+                .seed(3).build();
+        MockupContainer columnar = MockupContainer.builder().itemCount(60)
+                .seed(3).storageMode(StorageMode.COLUMNAR).build();
+
+        for (int i = 0; i < 60; i++) {
+            for (Object propertyId : stored.getContainerPropertyIds()) {
+                assertEquals(stored.getContainerProperty(i, propertyId)
+                        .getValue(),
+                        columnar.getContainerProperty(i, propertyId)
+                                .getValue());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testColumnarModeRetainsModifications() {
+        MockupContainer container = MockupContainer.builder().itemCount(10)
+                .storageMode(StorageMode.COLUMNAR).build();
+        Object propertyId = container.getContainerPropertyIds().iterator()
+                .next();
+
+        Property<Object> property = (Property<Object>) container
+                .getContainerProperty(4, propertyId);
+        property.setValue("changed");
+        assertEquals("changed", container.getItem(4)
+                .getItemProperty(propertyId).getValue());
+        assertNull(container.getContainerProperty(4, "no such property"));
+    }
+
+    @Test
+    public void testDictionaryModesMatchStoredItems() {
+        assertCodedModeMatchesStoredItems(StorageMode.DICTIONARY);
+        assertCodedModeMatchesStoredItems(StorageMode.OFF_HEAP);
+        assertCodedModeMatchesStoredItems(StorageMode.MAPPED);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void assertCodedModeMatchesStoredItems(StorageMode storageMode) {
+        MockupContainer stored = MockupContainer.builder().itemCount(300)
+                .dataSet(new BaconDataSet()).seed(9).build();
+        MockupContainer coded = MockupContainer.builder().itemCount(300)
+                .dataSet(new BaconDataSet()).seed(9).storageMode(storageMode)
+                .build();
+
+        for (int i = 0; i < 300; i++) {
+            for (Object propertyId : stored.getContainerPropertyIds()) {
+                assertEquals(stored.getContainerProperty(i, propertyId)
+                        .getValue(), coded.getContainerProperty(i, propertyId)
+                        .getValue());
+            }
+        }
+
+        // values outside the vocabulary grow the dictionary
+        Object propertyId = coded.getContainerPropertyIds().iterator().next();
+        for (int i = 0; i < 300; i++) {
+            ((Property<Object>) coded.getContainerProperty(i, propertyId))
+                    .setValue("value " + i);
+        }
+        for (int i = 0; i < 300; i++) {
+            assertEquals("value " + i,
+                    coded.getContainerProperty(i, propertyId).getValue());
+        }
+    }
+
+    @Test
+    public void testParallelGenerationMatchesSequential() {
+        for (StorageMode storageMode : Arrays.asList(StorageMode.COLUMNAR,
+                StorageMode.DICTIONARY)) {
+            MockupContainer sequential = MockupContainer.builder()
+                    .itemCount(20000).seed(11).storageMode(storageMode)
+                    .parallelism(1).build();
+            MockupContainer parallel = MockupContainer.builder()
+                    .itemCount(20000).seed(11).storageMode(storageMode)
+                    .parallelism(4).build();
+
+            for (int i = 0; i < 20000; i++) {
+                for (Object propertyId : sequential.getContainerPropertyIds()) {
+                    assertEquals(sequential.getContainerProperty(i, propertyId)
+                            .getValue(),
+                            parallel.getContainerProperty(i, propertyId)
+                                    .getValue());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSortFollowsValueOrder() {
+        for (StorageMode storageMode : Arrays.asList(StorageMode.ITEMS,
+                StorageMode.COLUMNAR, StorageMode.DICTIONARY)) {
+            MockupContainer container = MockupContainer.builder()
+                    .itemCount(20000).seed(13).storageMode(storageMode)
+                    .parallelism(4).build();
+            Object[] propertyIds = container.getContainerPropertyIds()
+                    .toArray();
+
+            container.sort(new Object[] { propertyIds[0], propertyIds[1] },
+                    new boolean[] { true, false });
+
+            List<Integer> ids = container.getItemIds();
+            assertEquals(20000, ids.size());
+            for (int i = 1; i < ids.size(); i++) {
+                Integer previous = ids.get(i - 1);
+                Integer current = ids.get(i);
+                int first = compareValues(container, previous, current,
+                        propertyIds[0]);
+                assertTrue(first <= 0);
+                if (first == 0) {
+                    assertTrue(compareValues(container, previous, current,
+                            propertyIds[1]) >= 0);
+                }
+                assertEquals(current, container.getIdByIndex(i));
+                assertEquals(i, container.indexOfId(current));
+                assertEquals(current, container.nextItemId(previous));
+                assertEquals(i, ids.indexOf(current));
+            }
+            assertEquals(ids.get(0), container.firstItemId());
+            assertEquals(ids.subList(100, 110), container.getItemIds(100, 10));
+        }
+    }
+
+    @Test
+    public void testFiltersMatchItemScan() {
+        for (StorageMode storageMode : StorageMode.values()) {
+            MockupContainer container = MockupContainer.builder()
+                    .itemCount(5000).seed(17).storageMode(storageMode)
+                    .build();
+            Object[] propertyIds = container.getContainerPropertyIds()
+                    .toArray();
+            Object value = container.getContainerProperty(5, propertyIds[0])
+                    .getValue();
+            Filter filter = new Or(new Compare.Equal(propertyIds[0], value),
+                    new And(new SimpleStringFilter(propertyIds[1], "A", true,
+                            true), new Not(new SimpleStringFilter(
+                            propertyIds[2], "e", false, false))));
+
+            List<Integer> expected = new ArrayList<Integer>();
+            for (Integer itemId : container.getItemIds()) {
+                if (filter.passesFilter(itemId, container.getItem(itemId))) {
+                    expected.add(itemId);
+                }
+            }
+
+            container.addContainerFilter(filter);
+            assertEquals(expected, container.getItemIds());
+            assertEquals(expected.size(), container.size());
+            assertTrue(container.containsId(5));
+            assertTrue(expected.size() < 5000);
+
+            container.sort(new Object[] { propertyIds[3] },
+                    new boolean[] { true });
+            List<Integer> sorted = container.getItemIds();
+            assertEquals(expected.size(), sorted.size());
+            for (int i = 0; i < sorted.size(); i++) {
+                Integer itemId = sorted.get(i);
+                assertTrue(expected.contains(itemId));
+                assertEquals(i, container.indexOfId(itemId));
+                if (i > 0) {
+                    assertTrue(compareValues(container, sorted.get(i - 1),
+                            itemId, propertyIds[3]) <= 0);
+                }
+            }
+
+            container.removeContainerFilters(propertyIds[0]);
+            assertTrue(container.getContainerFilters().isEmpty());
+            assertEquals(5000, container.size());
+        }
+    }
+
+    @Test
+    public void testItemBatchMatchesSingleItems() {
+        for (StorageMode storageMode : StorageMode.values()) {
+            MockupContainer container = MockupContainer.builder()
+                    .itemCount(1000).seed(23).storageMode(storageMode)
+                    .build();
+            container.sort(new Object[] { container.getContainerPropertyIds()
+                    .iterator().next() }, new boolean[] { false });
+
+            ItemBatch batch = container.getItems(990, 20);
+            assertEquals(990, batch.getStartIndex());
+            assertEquals(10, batch.size());
+            assertEquals(container.getItemIds(990, 10), batch.getItemIds());
+            for (int i = 0; i < batch.size(); i++) {
+                Item item = container.getItem(batch.getItemId(i));
+                for (Object propertyId : container.getContainerPropertyIds()) {
+                    assertEquals(item.getItemProperty(propertyId).getValue(),
+                            batch.getItem(i).getItemProperty(propertyId)
+                                    .getValue());
+                }
+            }
+            assertEquals(0, container.getItems(1000, 5).size());
+        }
+    }
+
+    @Test
+    public void testConcurrentReadsAndWrites() throws Exception {
+        for (StorageMode storageMode : StorageMode.values()) {
+            final MockupContainer container = MockupContainer.builder()
+                    .itemCount(2000).propertyCount(4).seed(29)
+                    .storageMode(storageMode).build();
+            final MockupContainer reference = MockupContainer.builder()
+                    .itemCount(2000).propertyCount(4).seed(29).build();
+            final Object[] propertyIds = container.getContainerPropertyIds()
+                    .toArray();
+            final int threads = 8;
+            final CyclicBarrier start = new CyclicBarrier(threads);
+
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Future<Property<?>>> results = new ArrayList<Future<Property<?>>>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                results.add(executor.submit(new Callable<Property<?>>() {
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Property<?> call() throws Exception {
+                        start.await();
+                        for (int row = 0; row < 2000; row++) {
+                            Object propertyId = propertyIds[row % 4];
+                            if (row % threads == thread) {
+                                // new values force dictionary columns to widen
+                                ((Property<Object>) container
+                                        .getContainerProperty(row, propertyId))
+                                        .setValue("value " + row);
+                            } else {
+                                Object value = container.getContainerProperty(
+                                        row, propertyId).getValue();
+                                assertTrue(value.equals("value " + row)
+                                        || value.equals(reference
+                                                .getContainerProperty(row,
+                                                        propertyId).getValue()));
+                            }
+                        }
+                        return container.getContainerProperty(0,
+                                propertyIds[1]);
+                    }
+                }));
+            }
+
+            Property<?> first = results.get(0).get();
+            for (Future<Property<?>> result : results) {
+                if (storageMode == StorageMode.ITEMS) {
+                    assertTrue(first == result.get());
+                } else {
+                    assertEquals(first.getValue(), result.get().getValue());
+                }
+            }
+            executor.shutdown();
+            if (storageMode == StorageMode.VIRTUAL) {
+                // modifications are not retained
+                continue;
+            }
+            for (int row = 0; row < 2000; row++) {
+                assertEquals("value " + row, container.getContainerProperty(
+                        row, propertyIds[row % 4]).getValue());
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTypedPropertiesInAllStorageModes() {
+        MockupContainer.Builder builder = MockupFactory
+                .getTypedContainer(3000).toBuilder().seed(31)
+                .typedProperty("unit", ValueGenerators.enums(StorageMode.class));
+        MockupContainer reference = builder.build();
+        for (StorageMode storageMode : StorageMode.values()) {
+            MockupContainer container = builder.storageMode(storageMode)
+                    .build();
+            assertEquals(Integer.class,
+                    container.getType(MockupFactory.INTEGER_PROPERTY));
+            assertEquals(Double.class,
+                    container.getType(MockupFactory.DOUBLE_PROPERTY));
+            assertEquals(Date.class,
+                    container.getType(MockupFactory.DATE_PROPERTY));
+            assertEquals(StorageMode.class, container.getType("unit"));
+            assertEquals(11, container.getContainerPropertyIds().size());
+
+            for (int itemId = 0; itemId < 3000; itemId++) {
+                Integer value = (Integer) container.getContainerProperty(
+                        itemId, MockupFactory.INTEGER_PROPERTY).getValue();
+                assertTrue(value >= 0 && value < 1000);
+                for (Object propertyId : container.getContainerPropertyIds()) {
+                    assertEquals(
+                            reference.getContainerProperty(itemId, propertyId)
+                                    .getValue(),
+                            container.getContainerProperty(itemId, propertyId)
+                                    .getValue());
+                }
+            }
+
+            if (storageMode != StorageMode.VIRTUAL) {
+                ((Property<Object>) container.getContainerProperty(7,
+                        MockupFactory.DOUBLE_PROPERTY)).setValue(null);
+                ((Property<Object>) container.getContainerProperty(8,
+                        MockupFactory.DOUBLE_PROPERTY)).setValue(-1.5);
+            }
+            container.sort(new Object[] { MockupFactory.DOUBLE_PROPERTY },
+                    new boolean[] { true });
+            Double previous = null;
+            for (Integer itemId : container.getItemIds()) {
+                Double current = (Double) container.getContainerProperty(
+                        itemId, MockupFactory.DOUBLE_PROPERTY).getValue();
+                assertTrue(previous == null || current != null
+                        && previous <= current);
+                previous = current;
+            }
+            if (storageMode != StorageMode.VIRTUAL) {
+                assertEquals(7, container.getIdByIndex(0));
+                assertEquals(8, container.getIdByIndex(1));
+            }
+        }
+    }
+
+    @Test
+    public void testLongsCoverRangesWiderThanALong() {
+        ValueGenerator<Long> full = ValueGenerators.longs(Long.MIN_VALUE,
+                Long.MAX_VALUE);
+        ValueGenerator<Long> wide = ValueGenerators.longs(-3L << 61,
+                3L << 61);
+        int positive = 0;
+        int distinct = 0;
+        long previous = 0;
+        for (int row = 0; row < 100000; row++) {
+            long random = MockupRandom.hash(7, row, 0);
+            long value = full.generate(random);
+            if (value > 0) {
+                positive++;
+            }
+            if (value != previous) {
+                distinct++;
+            }
+            previous = value;
+            long wideValue = wide.generate(random);
+            assertTrue(wideValue >= -3L << 61 && wideValue < 3L << 61);
+        }
+        assertTrue(positive > 49000 && positive < 51000);
+        assertTrue(distinct > 99000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDoublesRejectInfiniteRange() {
+        ValueGenerators.doubles(-Double.MAX_VALUE, Double.MAX_VALUE);
+    }
+
+    @Test
+    public void testMetricsCountCallsAndDistinctRows() throws Exception {
+        MockupContainer container = MockupContainer.builder().itemCount(1000)
+                .propertyCount(3).metrics(true)
+                .latencyModel(LatencyModels.constant(1, TimeUnit.MILLISECONDS))
+                .build();
+        AccessMetrics metrics = container.getMetrics();
+        assertNotNull(metrics);
+
+        Object[] propertyIds = container.getContainerPropertyIds().toArray();
+        for (Integer itemId : container.getItemIds(0, 10)) {
+            container.getContainerProperty(itemId, propertyIds[0]);
+            container.getContainerProperty(itemId, propertyIds[1]);
+        }
+        container.getItem(5);
+        container.size();
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(1,
+                snapshot.getCallCount(ContainerOperation.GET_ITEM_IDS_RANGE));
+        assertEquals(20, snapshot
+                .getCallCount(ContainerOperation.GET_CONTAINER_PROPERTY));
+        assertEquals(1, snapshot.getCallCount(ContainerOperation.GET_ITEM));
+        assertEquals(1, snapshot.getCallCount(ContainerOperation.SIZE));
+        assertEquals(0, snapshot.getCallCount(ContainerOperation.INDEX_OF_ID));
+        assertEquals(1, snapshot
+                .getCallCount(ContainerOperation.GET_CONTAINER_PROPERTY_IDS));
+        assertEquals(24, snapshot.getTotalCallCount());
+        assertEquals(10, snapshot.getDistinctRowsTouched());
+        assertTrue(snapshot.getLatencyAtPercentile(
+                ContainerOperation.GET_CONTAINER_PROPERTY, 50) >= 900000);
+
+        ObjectName name = new ObjectName(
+                "org.vaadin.risto.mockupcontainer:type=AccessMetrics,name="
+                        + ObjectName.quote("test"));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        metrics.registerMBean("test");
+        assertEquals(24L, server.getAttribute(name, "TotalCallCount"));
+        container.setMetricsEnabled(false);
+        assertFalse(server.isRegistered(name));
+        assertNull(container.getMetrics());
+
+        container.setMetricsEnabled(true);
+        container.getItem(5);
+        assertEquals(1, container.getMetrics().getTotalCallCount());
+        assertEquals(1, container.getMetrics().getDistinctRowsTouched());
+    }
+
+    private int compareValues(MockupContainer container, Object firstId,
+            Object secondId, Object propertyId) {
+        String first = (String) container.getContainerProperty(firstId,
+                propertyId).getValue();
+        String second = (String) container.getContainerProperty(secondId,
+                propertyId).getValue();
+        return first.compareTo(second);
+    }
+}
@@ -0,0 +1,213 @@
+package org.vaadin.risto.mockupcontainer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.vaadin.data.Container.ItemSetChangeEvent;
+import com.vaadin.data.Container.ItemSetChangeListener;
+import com.vaadin.data.Property;
+import com.vaadin.data.util.filter.Compare;
+
+public class MutationTests {
+
+    private static List<ItemSetChangeEvent> listen(MockupContainer container) {
+        final List<ItemSetChangeEvent> events = new ArrayList<ItemSetChangeEvent>();
+        container.addItemSetChangeListener(new ItemSetChangeListener() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void containerItemSetChange(ItemSetChangeEvent event) {
+                events.add(event);
+            }
+        });
+        return events;
+    }
+
+    @Test
+    public void testRemovedItemsDisappear() {
+        MockupContainer container = MockupContainer.builder().itemCount(100)
+                .numberOfChildren(3).seed(5).build();
+        List<ItemSetChangeEvent> events = listen(container);
+
+        assertTrue(container.removeItem(10));
+        assertFalse(container.removeItem(10));
+        assertEquals(99, container.size());
+        assertFalse(container.containsId(10));
+        assertNull(container.getItem(10));
+        assertEquals(11, container.getIdByIndex(10));
+        assertEquals(10, container.indexOfId(11));
+
+        ItemRemoveEvent removed = (ItemRemoveEvent) events.get(0);
+        assertEquals(10, removed.getFirstItemId());
+        assertEquals(10, removed.getFirstIndex());
+        assertEquals(1, removed.getRemovedItemsCount());
+
+        assertEquals(100, container.addItem());
+        assertEquals(100, container.size());
+        ItemAddEvent added = (ItemAddEvent) events.get(1);
+        assertEquals(100, added.getFirstItemId());
+        assertEquals(99, added.getFirstIndex());
+    }
+
+    @Test
+    public void testChildrenOfRemovedItemsBecomeRoots() {
+        MockupContainer container = MockupContainer.builder().itemCount(40)
+                .numberOfChildren(3).seed(5).build();
+        // the children of 1 are 6, 7 and 8
+        container.removeItem(1);
+        container.removeItem(7);
+
+        assertEquals(Arrays.asList(0, 2, 6, 8, 24, 25, 26),
+                new ArrayList<Object>(container.rootItemIds()));
+        assertTrue(container.isRoot(6));
+        assertNull(container.getParent(6));
+        assertTrue(container.isRoot(25));
+        assertEquals(Arrays.asList(21, 22, 23), new ArrayList<Object>(
+                container.getChildren(6)));
+        assertFalse(container.hasChildren(7));
+        assertEquals(Arrays.asList(3, 4, 5),
+                new ArrayList<Object>(container.getChildren(0)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSortedInsertsMatchFullSort() {
+        MockupContainer container = MockupFactory.getTypedContainer(2000)
+                .toBuilder().seed(9).build();
+        Object stringProperty = container.getPropertyId(0);
+        container.sort(new Object[] { stringProperty,
+                MockupFactory.INTEGER_PROPERTY }, new boolean[] { false, true });
+        container.addContainerFilter(new Compare.Greater(
+                MockupFactory.INTEGER_PROPERTY, 0));
+        container.removeItem(container.getIdByIndex(3));
+        for (int i = 0; i < 50; i++) {
+            container.addItem();
+        }
+        container.setItemCount(2030);
+
+        List<Integer> incremental = new ArrayList<Integer>(
+                container.getItemIds());
+        container.sort(new Object[] { stringProperty,
+                MockupFactory.INTEGER_PROPERTY }, new boolean[] { false, true });
+        assertEquals(container.getItemIds(), incremental);
+        for (Object itemId : incremental) {
+            assertTrue((Integer) ((Property<Object>) container
+                    .getContainerProperty(itemId,
+                            MockupFactory.INTEGER_PROPERTY)).getValue() > 0);
+        }
+    }
+
+    @Test
+    public void testRemovalsKeepOrderAndEarlierViews() {
+        MockupContainer container = MockupFactory.getTypedContainer(3000)
+                .toBuilder().seed(12).build();
+        Object stringProperty = container.getPropertyId(0);
+        container.sort(new Object[] { stringProperty }, new boolean[] { true });
+        container.addContainerFilter(new Compare.Greater(
+                MockupFactory.INTEGER_PROPERTY, 0));
+        List<Integer> view = container.getItemIds();
+        List<Integer> before = new ArrayList<Integer>(view);
+
+        Random random = new Random(4);
+        for (int i = 0; i < 200; i++) {
+            Object itemId = container.getIdByIndex(random.nextInt(container
+                    .size()));
+            int index = container.indexOfId(itemId);
+            assertTrue(container.removeItem(itemId));
+            assertEquals(-1, container.indexOfId(itemId));
+            if (index < container.size()) {
+                assertEquals(index, container.indexOfId(container
+                        .getIdByIndex(index)));
+            }
+            if (i == 100) {
+                view = container.getItemIds();
+                before = new ArrayList<Integer>(view);
+            }
+        }
+        assertEquals(before, view);
+
+        List<Integer> incremental = new ArrayList<Integer>(
+                container.getItemIds());
+        container.sort(new Object[] { stringProperty }, new boolean[] { true });
+        container.removeAllContainerFilters();
+        container.addContainerFilter(new Compare.Greater(
+                MockupFactory.INTEGER_PROPERTY, 0));
+        assertEquals(container.getItemIds(), incremental);
+        assertEquals(before.size() - 99, incremental.size());
+    }
+
+    @Test
+    public void testRemovalsAreSerialized() throws Exception {
+        MockupContainer container = MockupContainer.builder().itemCount(500)
+                .seed(2).build();
+        container.removeItem(3);
+        container.removeItem(499);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(container);
+        out.close();
+        MockupContainer restored = (MockupContainer) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(498, restored.size());
+        assertEquals(container.getItemIds(), restored.getItemIds());
+    }
+
+    @Test
+    public void testSimulatorAppliesOperations() throws Exception {
+        MockupContainer container = MockupContainer.builder().itemCount(1000)
+                .seed(4).storageMode(StorageMode.DICTIONARY).build();
+        List<ItemSetChangeEvent> events = listen(container);
+        MutationSimulator simulator = new MutationSimulator(container);
+        simulator.setRate(2000);
+        simulator.setMix(2, 1, 1);
+        simulator.start();
+        Thread.sleep(200);
+        simulator.stop();
+
+        MutationStatistics statistics = simulator.getStatistics();
+        assertTrue(statistics.getOperationCount() > 0);
+        assertEquals(1000 + statistics.getInsertCount()
+                - statistics.getRemoveCount(), container.size());
+        assertEquals(statistics.getInsertCount()
+                + statistics.getRemoveCount(), events.size());
+        assertTrue(statistics.getDispatchLatencyAtPercentile(50) > 0);
+        assertTrue(statistics.getThroughput() > 0);
+    }
+
+    @Test
+    public void testSimulatorChoosesTargetsWithoutClientCalls()
+            throws Exception {
+        MockupContainer container = MockupContainer.builder().itemCount(1000)
+                .seed(4).metrics(true).build();
+        MutationSimulator simulator = new MutationSimulator(container);
+        simulator.setRate(2000);
+        simulator.setMix(1, 1, 2);
+        simulator.start();
+        Thread.sleep(200);
+        simulator.stop();
+
+        assertTrue(simulator.getStatistics().getUpdateCount() > 0);
+        MetricsSnapshot metrics = container.getMetrics().snapshot();
+        assertEquals(0, metrics.getCallCount(ContainerOperation.SIZE));
+        assertEquals(0,
+                metrics.getCallCount(ContainerOperation.GET_ID_BY_INDEX));
+        assertEquals(0, metrics
+                .getCallCount(ContainerOperation.GET_CONTAINER_PROPERTY));
+        assertEquals(0, metrics.getCallCount(ContainerOperation.GET_ITEM));
+    }
+}
@@ -0,0 +1,42 @@
+package org.vaadin.risto.mockupcontainer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vaadin.risto.mockupcontainer.MockupContainer;
+
+/**
+ * Benchmarks the construction of the {@link ContainerState containers},
+ * including the generation of their contents.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConstructionBenchmark {
+
+    @Param({ "default", "medium", "large", "gigantic" })
+    public String size;
+
+    @Param({ "default", "bacon" })
+    public String dataSet;
+
+    @Benchmark
+    public MockupContainer construct() {
+        return ContainerState.createContainer(size, dataSet);
+    }
+}
@@ -0,0 +1,81 @@
+package org.vaadin.risto.mockupcontainer.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.vaadin.data.Item;
+
+/**
+ * Benchmarks of the read operations of a {@link ContainerState container},
+ * reported both as throughput and as sampled latency. Run with
+ * <code>-prof gc</code> to also see the allocation rate.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContainerAccessBenchmark {
+
+    @Benchmark
+    public Item getItem(ContainerState state, ItemIdCursor cursor) {
+        cursor.next();
+        return state.container.getItem(cursor.itemId());
+    }
+
+    @Benchmark
+    public Object getContainerProperty(ContainerState state,
+            ItemIdCursor cursor) {
+        cursor.next();
+        return state.container.getContainerProperty(cursor.itemId(),
+                cursor.propertyId()).getValue();
+    }
+
+    @Benchmark
+    public Object getChildren(ContainerState state, ItemIdCursor cursor) {
+        cursor.next();
+        return state.container.getChildren(cursor.itemId());
+    }
+
+    @Benchmark
+    public Object getParent(ContainerState state, ItemIdCursor cursor) {
+        cursor.next();
+        return state.container.getParent(cursor.itemId());
+    }
+
+    /**
+     * Iterates over all the item ids, the way a component that isn't lazy
+     * does.
+     */
+    @Benchmark
+    public void iterateItemIds(ContainerState state, Blackhole blackhole) {
+        for (Object itemId : state.container.getItemIds()) {
+            blackhole.consume(itemId);
+        }
+    }
+
+    /**
+     * Walks through the container with nextItemId, starting from a random
+     * item, 100 items at a time.
+     */
+    @Benchmark
+    public Object nextItemId(ContainerState state, ItemIdCursor cursor) {
+        cursor.next();
+        Object itemId = cursor.itemId();
+        for (int i = 0; i < 100 && itemId != null; i++) {
+            itemId = state.container.nextItemId(itemId);
+        }
+        return itemId;
+    }
+}
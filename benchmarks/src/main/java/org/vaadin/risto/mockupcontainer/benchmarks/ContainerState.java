@@ -0,0 +1,71 @@
+package org.vaadin.risto.mockupcontainer.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.vaadin.risto.mockupcontainer.BaconDataSet;
+import org.vaadin.risto.mockupcontainer.DefaultDataSet;
+import org.vaadin.risto.mockupcontainer.MockupContainer;
+import org.vaadin.risto.mockupcontainer.MockupDataSet;
+import org.vaadin.risto.mockupcontainer.MockupFactory;
+
+/**
+ * A container of one of the {@link MockupFactory} sizes, shared by all the
+ * benchmark threads.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+@State(Scope.Benchmark)
+public class ContainerState {
+
+    /**
+     * The size of the container, one of the {@link MockupFactory} sizes.
+     */
+    @Param({ "default", "medium", "large", "gigantic" })
+    public String size;
+
+    /**
+     * The data set of the container, "default" or "bacon".
+     */
+    @Param({ "default", "bacon" })
+    public String dataSet;
+
+    public MockupContainer container;
+
+    @Setup
+    public void setUp() {
+        container = createContainer(size, dataSet);
+    }
+
+    /**
+     * @param size
+     *            default, medium, large or gigantic
+     * @param dataSet
+     *            default or bacon
+     * @return a new container created by {@link MockupFactory}
+     */
+    public static MockupContainer createContainer(String size, String dataSet) {
+        MockupFactory.setDefaultDataSet(createDataSet(dataSet));
+        if ("default".equals(size)) {
+            return MockupFactory.getDefaultContainer();
+        } else if ("medium".equals(size)) {
+            return MockupFactory.getMediumContainer();
+        } else if ("large".equals(size)) {
+            return MockupFactory.getLargeContainer();
+        } else if ("gigantic".equals(size)) {
+            return MockupFactory.getGiganticContainer();
+        }
+        throw new IllegalArgumentException("Unknown size: " + size);
+    }
+
+    private static MockupDataSet createDataSet(String dataSet) {
+        if ("default".equals(dataSet)) {
+            return new DefaultDataSet();
+        } else if ("bacon".equals(dataSet)) {
+            return new BaconDataSet();
+        }
+        throw new IllegalArgumentException("Unknown data set: " + dataSet);
+    }
+}
@@ -0,0 +1,53 @@
+package org.vaadin.risto.mockupcontainer.benchmarks;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A per-thread sequence of random item ids and property ids, drawn up front
+ * so that the benchmarks don't measure the random number generator.
+ * 
+ * @author Risto Yrjänä / Vaadin Ltd.
+ * 
+ */
+@State(Scope.Thread)
+public class ItemIdCursor {
+
+    private static final int IDS = 1 << 12;
+
+    private final Integer[] itemIds = new Integer[IDS];
+
+    private final Object[] propertyIds = new Object[IDS];
+
+    private int position;
+
+    @Setup
+    public void setUp(ContainerState state) {
+        Object[] properties = state.container.getContainerPropertyIds()
+                .toArray();
+        int size = state.container.size();
+        Random random = new Random(42);
+        for (int i = 0; i < IDS; i++) {
+            itemIds[i] = Integer.valueOf(random.nextInt(size));
+            propertyIds[i] = properties[random.nextInt(properties.length)];
+        }
+    }
+
+    /**
+     * Moves to the next item id and property id.
+     */
+    public void next() {
+        position = (position + 1) & (IDS - 1);
+    }
+
+    public Integer itemId() {
+        return itemIds[position];
+    }
+
+    public Object propertyId() {
+        return propertyIds[position];
+    }
+}
@@ -145,15 +145,14 @@ public class MockupContainerDemoUI extends UI {
             @Override
             public void buttonClick(ClickEvent event) {
                 Integer delay = Integer.valueOf((delayField.getValue()));
-                mockupContainer.setItemDelay(delay);
                 Integer itemCount = Integer.valueOf((itemCountField.getValue()));
-                mockupContainer.setItemCount(itemCount);
                 Integer propertyCount = Integer.valueOf((propertyCountField
                         .getValue()));
-                mockupContainer.setPropertyCount(propertyCount);
                 Integer childCount = Integer.valueOf((childCountField
                         .getValue()));
-                mockupContainer.setNumberOfChildren(childCount);
+                mockupContainer.toBuilder().itemDelay(delay)
+                        .itemCount(itemCount).propertyCount(propertyCount)
+                        .numberOfChildren(childCount).applyTo(mockupContainer);
 
                 table.setContainerDataSource(mockupContainer);
 